@@ -0,0 +1,74 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm;
+
+/**
+ * A parsed method descriptor, stored in the method descriptor cache of
+ * {@link Type}. The fields of this class are final so that its instances can
+ * be shared between threads without any synchronization.
+ */
+final class CachedMethodDescriptor {
+
+    /**
+     * The method descriptor.
+     */
+    final String desc;
+
+    /**
+     * The method type corresponding to {@link #desc desc}.
+     */
+    final Type type;
+
+    /**
+     * The argument types of the method. This array must not be modified.
+     */
+    final Type[] argumentTypes;
+
+    /**
+     * The return type of the method.
+     */
+    final Type returnType;
+
+    /**
+     * The size of the arguments and of the return value of the method, in
+     * the format used by {@link Type#getArgumentsAndReturnSizes
+     * getArgumentsAndReturnSizes}.
+     */
+    final int sizes;
+
+    CachedMethodDescriptor(final String desc, final Type type,
+            final Type[] argumentTypes, final Type returnType, final int sizes) {
+        this.desc = desc;
+        this.type = type;
+        this.argumentTypes = argumentTypes;
+        this.returnType = returnType;
+        this.sizes = sizes;
+    }
+}
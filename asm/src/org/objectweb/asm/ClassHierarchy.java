@@ -0,0 +1,144 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm;
+
+/**
+ * Provides information about the class hierarchy without loading classes. A
+ * {@link ClassWriter} consults its class hierarchy, if it has one, to compute
+ * the common super class of two types when it computes stack map frames (see
+ * {@link ClassWriter#getCommonSuperClass getCommonSuperClass}). Sub classes
+ * only need to implement the {@link #getSuperClass getSuperClass},
+ * {@link #getInterfaces getInterfaces} and {@link #isInterface isInterface}
+ * methods. Since a class hierarchy can be shared between several class
+ * writers, possibly used by several threads, these methods must be thread
+ * safe, and should cache their results.
+ * 
+ * @see ClassWriter#ClassWriter(int, ClassHierarchy)
+ */
+public abstract class ClassHierarchy {
+
+    /**
+     * Returns the super class of the given class.
+     * 
+     * @param type
+     *            the internal name of a class or interface.
+     * @return the internal name of the super class of the given class, or
+     *         <tt>null</tt> if the given class is java/lang/Object. For
+     *         interfaces this must be java/lang/Object.
+     * @throws RuntimeException
+     *             if the given class cannot be found.
+     */
+    public abstract String getSuperClass(String type);
+
+    /**
+     * Returns the interfaces directly implemented or extended by the given
+     * class.
+     * 
+     * @param type
+     *            the internal name of a class or interface.
+     * @return the internal names of the interfaces directly implemented or
+     *         extended by the given class. Must not be <tt>null</tt>.
+     * @throws RuntimeException
+     *             if the given class cannot be found.
+     */
+    public abstract String[] getInterfaces(String type);
+
+    /**
+     * Returns <tt>true</tt> if the given class is an interface.
+     * 
+     * @param type
+     *            the internal name of a class or interface.
+     * @return <tt>true</tt> if the given class is an interface.
+     * @throws RuntimeException
+     *             if the given class cannot be found.
+     */
+    public abstract boolean isInterface(String type);
+
+    /**
+     * Returns <tt>true</tt> if a value of type <tt>type2</tt> can be assigned
+     * to a variable of type <tt>type1</tt>, as defined in
+     * {@link Class#isAssignableFrom}. Array types are not supported.
+     * 
+     * @param type1
+     *            the internal name of a class or interface.
+     * @param type2
+     *            the internal name of another class or interface.
+     * @return <tt>true</tt> if <tt>type1</tt> is a super class or a super
+     *         interface of <tt>type2</tt>, or is equal to <tt>type2</tt>.
+     */
+    public boolean isAssignableFrom(final String type1, final String type2) {
+        if (type1.equals(type2) || "java/lang/Object".equals(type1)) {
+            return true;
+        }
+        String t = type2;
+        while (t != null && !"java/lang/Object".equals(t)) {
+            if (type1.equals(t)) {
+                return true;
+            }
+            String[] itfs = getInterfaces(t);
+            for (int i = 0; i < itfs.length; ++i) {
+                if (isAssignableFrom(type1, itfs[i])) {
+                    return true;
+                }
+            }
+            t = getSuperClass(t);
+        }
+        return false;
+    }
+
+    /**
+     * Returns the common super type of the two given types. This method
+     * follows the same algorithm as the default implementation of
+     * {@link ClassWriter#getCommonSuperClass}.
+     * 
+     * @param type1
+     *            the internal name of a class.
+     * @param type2
+     *            the internal name of another class.
+     * @return the internal name of the common super class of the two given
+     *         classes.
+     */
+    public String getCommonSuperClass(final String type1, final String type2) {
+        if (isAssignableFrom(type1, type2)) {
+            return type1;
+        }
+        if (isAssignableFrom(type2, type1)) {
+            return type2;
+        }
+        if (isInterface(type1) || isInterface(type2)) {
+            return "java/lang/Object";
+        }
+        String t = type1;
+        do {
+            t = getSuperClass(t);
+        } while (!isAssignableFrom(t, type2));
+        return t;
+    }
+}
@@ -114,8 +114,16 @@ public class ClassReader {
     /**
      * The start index of each constant pool item in {@link #b b}, plus one. The
      * one byte offset skips the constant pool item tag that indicates its type.
+     * This array can be larger than the number of constant pool items, when
+     * it is reused from another reader (see
+     * {@link #ClassReader(byte[],int,int,ClassReader)}).
      */
-    private final int[] items;
+    private int[] items;
+
+    /**
+     * The number of constant pool items in {@link #b b}.
+     */
+    private int itemCount;
 
     /**
      * The String objects corresponding to the CONSTANT_Utf8 items. This cache
@@ -125,13 +133,18 @@ public class ClassReader {
      * would not be so great for these items (because they are much less
      * expensive to parse than CONSTANT_Utf8 items).
      */
-    private final String[] strings;
+    private String[] strings;
 
     /**
      * Maximum length of the strings contained in the constant pool of the
      * class.
      */
-    private final int maxStringLength;
+    private int maxStringLength;
+
+    /**
+     * The cache of strings shared with other readers, or <tt>null</tt>.
+     */
+    private StringCache cache;
 
     /**
      * Start index of the class header information (access, name...) in
@@ -164,15 +177,74 @@ public class ClassReader {
      *            the length of the class data.
      */
     public ClassReader(final byte[] b, final int off, final int len) {
+        this(b, off, len, null);
+    }
+
+    /**
+     * Constructs a new {@link ClassReader} object that reuses the internal
+     * arrays of another reader, if they are large enough. This allows a
+     * program reading many classes to avoid allocating new arrays for each
+     * class. The other reader, as well as any {@link ClassWriter} that was
+     * constructed with it in order to copy its constant pool and unchanged
+     * methods, must not be used after this constructor is called (the
+     * writer can be {@link ClassWriter#reset(ClassReader) reset} instead).
+     * 
+     * @param b
+     *            the bytecode of the class to be read.
+     * @param off
+     *            the start offset of the class data.
+     * @param len
+     *            the length of the class data.
+     * @param cr
+     *            a reader that is no longer used, whose internal arrays can be
+     *            reused by the new reader. May be <tt>null</tt>.
+     */
+    public ClassReader(final byte[] b, final int off, final int len,
+            final ClassReader cr) {
         this.b = b;
         // checks the class version
         if (readShort(off + 6) > Opcodes.V1_7) {
             throw new IllegalArgumentException();
         }
-        // parses the constant pool
-        items = new int[readUnsignedShort(off + 8)];
-        int n = items.length;
-        strings = new String[n];
+        int n = readUnsignedShort(off + 8);
+        if (cr == null || n > cr.items.length) {
+            items = new int[n];
+            strings = new String[n];
+        } else {
+            items = cr.items;
+            strings = cr.strings;
+            for (int i = 0; i < cr.itemCount; ++i) {
+                strings[i] = null;
+            }
+        }
+        header = readConstantPool(off);
+    }
+
+    /**
+     * Sets the cache of strings used by this reader to decode CONSTANT_Utf8
+     * items. This cache can be shared with other readers, even if they are
+     * used concurrently.
+     * 
+     * @param cache
+     *            a string cache, or <tt>null</tt> to decode the CONSTANT_Utf8
+     *            items of each class independently of the other classes.
+     */
+    public void setStringCache(final StringCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Computes the start index of the constant pool items and the maximum
+     * string length.
+     * 
+     * @param off
+     *            the start offset of the class data.
+     * @return the start index of the class header.
+     */
+    private int readConstantPool(final int off) {
+        byte[] b = this.b;
+        int[] items = this.items;
+        int n = readUnsignedShort(off + 8);
         int max = 0;
         int index = off + 10;
         for (int i = 1; i < n; ++i) {
@@ -211,9 +283,10 @@ public class ClassReader {
             }
             index += size;
         }
+        itemCount = n;
         maxStringLength = max;
         // the class header information starts just after the constant pool
-        header = index;
+        return index;
     }
 
     /**
@@ -287,8 +360,7 @@ public class ClassReader {
      */
     void copyPool(final ClassWriter classWriter) {
         char[] buf = new char[maxStringLength];
-        int ll = items.length;
-        Item[] items2 = new Item[ll];
+        int ll = itemCount;
         for (int i = 1; i < ll; i++) {
             int index = items[i];
             int tag = b[index - 1];
@@ -324,7 +396,7 @@ public class ClassReader {
                 String s = strings[i];
                 if (s == null) {
                     index = items[i];
-                    s = strings[i] = readUTF(index + 2,
+                    s = strings[i] = readUTF(b, index + 2,
                             readUnsignedShort(index), buf);
                 }
                 item.set(tag, s, null, null);
@@ -340,7 +412,7 @@ public class ClassReader {
             }
             case ClassWriter.INDY:
                 if (classWriter.bootstrapMethods == null) {
-                    copyBootstrapMethods(classWriter, items2, buf);
+                    copyBootstrapMethods(classWriter, buf);
                 }
                 nameType = items[readUnsignedShort(index + 2)];
                 item.set(readUTF8(nameType, buf), readUTF8(nameType + 2, buf),
@@ -354,15 +426,11 @@ public class ClassReader {
                 break;
             }
 
-            int index2 = item.hashCode % items2.length;
-            item.next = items2[index2];
-            items2[index2] = item;
+            classWriter.put(item);
         }
 
         int off = items[1] - 1;
         classWriter.pool.putByteArray(b, off, header - off);
-        classWriter.items = items2;
-        classWriter.threshold = (int) (0.75d * ll);
         classWriter.index = ll;
     }
 
@@ -374,7 +442,7 @@ public class ClassReader {
      *            the {@link ClassWriter} to copy bootstrap methods into.
      */
     private void copyBootstrapMethods(final ClassWriter classWriter,
-            final Item[] items, final char[] c) {
+            final char[] c) {
         // finds the "BootstrapMethods" attribute
         int u = getAttributes();
         boolean found = false;
@@ -401,9 +469,7 @@ public class ClassReader {
             v += 4;
             Item item = new Item(j);
             item.set(position, hashCode & 0x7FFFFFFF);
-            int index = item.hashCode % items.length;
-            item.next = items[index];
-            items[index] = item;
+            classWriter.put(item);
         }
         int attrSize = readInt(u + 4);
         ByteVector bootstrapMethods = new ByteVector(attrSize + 62);
@@ -588,17 +654,12 @@ public class ClassReader {
                         | ClassWriter.ACC_SYNTHETIC_ATTRIBUTE;
             } else if ("SourceDebugExtension".equals(attrName)) {
                 int len = readInt(u + 4);
-                sourceDebug = readUTF(u + 8, len, new char[len]);
+                sourceDebug = readUTF(b, u + 8, len, new char[len]);
             } else if (ANNOTATIONS
                     && "RuntimeInvisibleAnnotations".equals(attrName)) {
                 ianns = u + 8;
             } else if ("BootstrapMethods".equals(attrName)) {
-                int[] bootstrapMethods = new int[readUnsignedShort(u + 8)];
-                for (int j = 0, v = u + 10; j < bootstrapMethods.length; j++) {
-                    bootstrapMethods[j] = v;
-                    v += 2 + readUnsignedShort(v + 2) << 1;
-                }
-                context.bootstrapMethods = bootstrapMethods;
+                context.bootstrapMethods = readBootstrapMethods(u);
             } else {
                 Attribute attr = readAttribute(attrs, attrName, u + 8,
                         readInt(u + 4), c, -1, null);
@@ -673,6 +734,112 @@ public class ClassReader {
         classVisitor.visitEnd();
     }
 
+    /**
+     * Returns the start offsets of the methods of the class in {@link #b b}.
+     * These offsets can be used to visit some methods of the class with
+     * {@link #acceptMethods acceptMethods}.
+     * 
+     * @return the start offsets of the method_info structures of the class, in
+     *         the order of the class file.
+     */
+    public int[] getMethodOffsets() {
+        // skips the header and the fields
+        int u = header + 8 + readUnsignedShort(header + 6) * 2;
+        for (int i = readUnsignedShort(u); i > 0; --i) {
+            for (int j = readUnsignedShort(u + 8); j > 0; --j) {
+                u += 6 + readInt(u + 12);
+            }
+            u += 8;
+        }
+        int[] offsets = new int[readUnsignedShort(u + 2)];
+        u += 4;
+        for (int i = 0; i < offsets.length; ++i) {
+            offsets[i] = u;
+            for (int j = readUnsignedShort(u + 6); j > 0; --j) {
+                u += 6 + readInt(u + 10);
+            }
+            u += 8;
+        }
+        return offsets;
+    }
+
+    /**
+     * Makes the given visitor visit some methods of the class. Only the
+     * {@link ClassVisitor#visitMethod visitMethod} method of the class visitor
+     * is called, once per visited method, and the methods are visited as with
+     * {@link #accept(ClassVisitor, Attribute[], int) accept}. The other methods
+     * are not parsed at all. This method can be called concurrently by several
+     * threads, with different visitors, in order to visit the methods of a
+     * large class in parallel.
+     * 
+     * @param classVisitor
+     *            the visitor that must visit the methods.
+     * @param offsets
+     *            the start offsets of the methods of the class, as returned
+     *            by {@link #getMethodOffsets getMethodOffsets}.
+     * @param start
+     *            the index in offsets of the first method to be visited.
+     * @param end
+     *            the index in offsets of the last method to be visited, plus
+     *            one.
+     * @param attrs
+     *            prototypes of the attributes that must be parsed during the
+     *            visit of the methods. See
+     *            {@link #accept(ClassVisitor, Attribute[], int) accept}.
+     * @param flags
+     *            option flags that can be used to modify the default behavior
+     *            of this method. See {@link #SKIP_DEBUG},
+     *            {@link #EXPAND_FRAMES}, {@link #SKIP_FRAMES},
+     *            {@link #SKIP_CODE}.
+     */
+    public void acceptMethods(final ClassVisitor classVisitor,
+            final int[] offsets, final int start, final int end,
+            final Attribute[] attrs, final int flags) {
+        if (start >= end) {
+            return;
+        }
+        char[] c = new char[maxStringLength]; // buffer used to read strings
+        Context context = new Context();
+        context.attrs = attrs;
+        context.flags = flags;
+        context.buffer = c;
+
+        // finds the bootstrap methods, in the attributes following the methods
+        int u = offsets[offsets.length - 1];
+        for (int j = readUnsignedShort(u + 6); j > 0; --j) {
+            u += 6 + readInt(u + 10);
+        }
+        u += 8;
+        for (int i = readUnsignedShort(u); i > 0; --i) {
+            if ("BootstrapMethods".equals(readUTF8(u + 2, c))) {
+                context.bootstrapMethods = readBootstrapMethods(u);
+                break;
+            }
+            u += 6 + readInt(u + 4);
+        }
+
+        // visits the methods
+        for (int i = start; i < end; ++i) {
+            readMethod(classVisitor, context, offsets[i]);
+        }
+    }
+
+    /**
+     * Reads the BootstrapMethods attribute of the class.
+     * 
+     * @param u
+     *            the start offset of this attribute, minus two.
+     * @return the start offsets of the bootstrap methods.
+     */
+    private int[] readBootstrapMethods(final int u) {
+        int[] bootstrapMethods = new int[readUnsignedShort(u + 8)];
+        for (int j = 0, v = u + 10; j < bootstrapMethods.length; j++) {
+            bootstrapMethods[j] = v;
+            v += 2 + readUnsignedShort(v + 2) << 1;
+        }
+        return bootstrapMethods;
+    }
+
     /**
      * Reads a field and makes the given visitor visit it.
      * 
@@ -1963,7 +2130,7 @@ public class ClassReader {
      * @return the number of constant pool items in {@link #b b}.
      */
     public int getItemCount() {
-        return items.length;
+        return itemCount;
     }
 
     /**
@@ -2085,12 +2252,28 @@ public class ClassReader {
             return s;
         }
         index = items[item];
-        return strings[item] = readUTF(index + 2, readUnsignedShort(index), buf);
+        int len = readUnsignedShort(index);
+        StringCache cache = this.cache;
+        int slot = cache == null ? -1 : cache.hash(b, index + 2, len);
+        if (slot == -1) {
+            return strings[item] = readUTF(b, index + 2, len, buf);
+        }
+        s = cache.get(slot, b, index + 2, len);
+        if (s == null) {
+            s = readUTF(b, index + 2, len, buf);
+            cache.put(slot, s);
+        }
+        return strings[item] = s;
     }
 
     /**
-     * Reads UTF8 string in {@link #b b}.
+     * Decodes a string in the modified UTF8 format used in class files. <i>This
+     * method is intended for tools which parse class files without a
+     * {@link ClassReader}, and is normally not needed by class generators or
+     * adapters.</i>
      * 
+     * @param b
+     *            a buffer containing a modified UTF8 string.
      * @param index
      *            start offset of the UTF8 string to be read.
      * @param utfLen
@@ -2100,9 +2283,9 @@ public class ClassReader {
      *            sufficiently large. It is not automatically resized.
      * @return the String corresponding to the specified UTF8 string.
      */
-    private String readUTF(int index, final int utfLen, final char[] buf) {
+    public static String readUTF(final byte[] b, int index, final int utfLen,
+            final char[] buf) {
         int endIndex = index + utfLen;
-        byte[] b = this.b;
         int strLen = 0;
         int c;
         int st = 0;
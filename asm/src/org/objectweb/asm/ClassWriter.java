@@ -65,6 +65,32 @@ public class ClassWriter extends ClassVisitor {
      */
     public static final int COMPUTE_FRAMES = 2;
 
+    /**
+     * Flag to reuse the existing stack map frames when computing frames with
+     * {@link #COMPUTE_FRAMES}. If this flag is set, the frames visited with
+     * {@link MethodVisitor#visitFrame visitFrame} (which must be in expanded
+     * form, see {@link ClassReader#EXPAND_FRAMES}) are used as the initial
+     * input frames of the basic blocks that begin at their position. The
+     * reference types of these frames are trusted: an incoming reference type
+     * is not merged with them, which avoids most of the
+     * {@link #getCommonSuperClass getCommonSuperClass} calls. The other
+     * incoming types that are not compatible with these frames (for instance
+     * because instructions that store different values in some local
+     * variables have been inserted) are merged as usual, so that the frames
+     * of the basic blocks whose incoming types have changed are recomputed.
+     * Since the frames computed from an incompatible visited frame must also
+     * be recomputed, each pass of the frame computation algorithm that finds
+     * incompatible frames is followed by another pass without them. The
+     * frames of new basic blocks, and the frames containing uninitialized
+     * types, are computed from scratch. This flag is intended for adapters
+     * that insert instructions in existing code: adapters that change the
+     * types expected by the existing instructions must not use it. It has no
+     * effect without {@link #COMPUTE_FRAMES}.
+     * 
+     * @see #ClassWriter(int)
+     */
+    public static final int REUSE_FRAMES = 4;
+
     /**
      * Pseudo access flag to distinguish between the synthetic attribute and the
      * synthetic access flag.
@@ -298,10 +324,23 @@ public class ClassWriter extends ClassVisitor {
     final ByteVector pool;
 
     /**
-     * The constant pool's hash table data.
+     * The constant pool's hash table data. This hash table uses open
+     * addressing with linear probing, and its length is a power of two.
      */
     Item[] items;
 
+    /**
+     * The hash codes of the items in {@link #items items}. These hash codes are
+     * compared before the items themselves, so that the items that cannot be
+     * equal to a searched item are not dereferenced.
+     */
+    int[] hashCodes;
+
+    /**
+     * The number of items in the constant pool's hash table.
+     */
+    int itemCount;
+
     /**
      * The threshold of the constant pool's hash table.
      */
@@ -345,6 +384,14 @@ public class ClassWriter extends ClassVisitor {
      */
     private short typeCount;
 
+    /**
+     * The class items of the constant pool, indexed by their constant pool
+     * index. This reverse index is only built if needed, by
+     * {@link #getClassName getClassName}, and is then kept up to date by
+     * {@link #newClassItem newClassItem}.
+     */
+    private Item[] classItems;
+
     /**
      * The access flags of this class.
      */
@@ -473,6 +520,13 @@ public class ClassWriter extends ClassVisitor {
      */
     MethodWriter lastMethod;
 
+    /**
+     * The option flags given to the constructor of this class writer. Used to
+     * restore {@link #computeMaxs}, {@link #computeFrames} and
+     * {@link #reuseFrames} in {@link #reset()}.
+     */
+    private final int flags;
+
     /**
      * <tt>true</tt> if the maximum stack size and number of local variables
      * must be automatically computed.
@@ -484,6 +538,12 @@ public class ClassWriter extends ClassVisitor {
      */
     private boolean computeFrames;
 
+    /**
+     * <tt>true</tt> to reuse the visited stack map frames when computing
+     * frames.
+     */
+    private boolean reuseFrames;
+
     /**
      * <tt>true</tt> if the stack map tables of this class are invalid. The
      * {@link MethodWriter#resizeInstructions} method cannot transform existing
@@ -494,6 +554,12 @@ public class ClassWriter extends ClassVisitor {
      */
     boolean invalidFrames;
 
+    /**
+     * The class hierarchy used by {@link #getCommonSuperClass}, or
+     * <tt>null</tt> to load classes.
+     */
+    private final ClassHierarchy hierarchy;
+
     // ------------------------------------------------------------------------
     // Static initializer
     // ------------------------------------------------------------------------
@@ -592,20 +658,43 @@ public class ClassWriter extends ClassVisitor {
      * @param flags
      *            option flags that can be used to modify the default behavior
      *            of this class. See {@link #COMPUTE_MAXS},
-     *            {@link #COMPUTE_FRAMES}.
+     *            {@link #COMPUTE_FRAMES}, {@link #REUSE_FRAMES}.
      */
     public ClassWriter(final int flags) {
+        this(flags, null);
+    }
+
+    /**
+     * Constructs a new {@link ClassWriter} object that uses the given class
+     * hierarchy, instead of loading classes, to compute the common super class
+     * of two types (see {@link #getCommonSuperClass getCommonSuperClass}).
+     * 
+     * @param flags
+     *            option flags that can be used to modify the default behavior
+     *            of this class. See {@link #COMPUTE_MAXS},
+     *            {@link #COMPUTE_FRAMES}, {@link #REUSE_FRAMES}.
+     * @param hierarchy
+     *            the class hierarchy to be used by
+     *            {@link #getCommonSuperClass getCommonSuperClass}, or
+     *            <tt>null</tt> to load classes. A class hierarchy can be shared
+     *            between several class writers.
+     */
+    public ClassWriter(final int flags, final ClassHierarchy hierarchy) {
         super(Opcodes.ASM4);
         index = 1;
         pool = new ByteVector();
         items = new Item[256];
-        threshold = (int) (0.75d * items.length);
+        hashCodes = new int[256];
+        threshold = items.length / 2;
         key = new Item();
         key2 = new Item();
         key3 = new Item();
         key4 = new Item();
+        this.flags = flags;
         this.computeMaxs = (flags & COMPUTE_MAXS) != 0;
         this.computeFrames = (flags & COMPUTE_FRAMES) != 0;
+        this.reuseFrames = (flags & REUSE_FRAMES) != 0;
+        this.hierarchy = hierarchy;
     }
 
     /**
@@ -638,10 +727,100 @@ public class ClassWriter extends ClassVisitor {
      *            that are copied as is in the new class. This means that the
      *            maximum stack size nor the stack frames will be computed for
      *            these methods</i>. See {@link #COMPUTE_MAXS},
-     *            {@link #COMPUTE_FRAMES}.
+     *            {@link #COMPUTE_FRAMES}, {@link #REUSE_FRAMES}.
      */
     public ClassWriter(final ClassReader classReader, final int flags) {
-        this(flags);
+        this(classReader, flags, null);
+    }
+
+    /**
+     * Constructs a new {@link ClassWriter} object, enables the optimizations
+     * described in {@link #ClassWriter(ClassReader, int)}, and uses the given
+     * class hierarchy instead of loading classes (see
+     * {@link #ClassWriter(int, ClassHierarchy)}).
+     * 
+     * @param classReader
+     *            the {@link ClassReader} used to read the original class.
+     * @param flags
+     *            option flags that can be used to modify the default behavior
+     *            of this class. See {@link #COMPUTE_MAXS},
+     *            {@link #COMPUTE_FRAMES}, {@link #REUSE_FRAMES}.
+     * @param hierarchy
+     *            the class hierarchy to be used by
+     *            {@link #getCommonSuperClass getCommonSuperClass}, or
+     *            <tt>null</tt> to load classes.
+     */
+    public ClassWriter(final ClassReader classReader, final int flags,
+            final ClassHierarchy hierarchy) {
+        this(flags, hierarchy);
+        classReader.copyPool(this);
+        this.cr = classReader;
+    }
+
+    /**
+     * Resets this {@link ClassWriter} so that it can be used to write another
+     * class, with the same option flags and class hierarchy. The content of
+     * the class that was written so far is discarded, but the internal hash
+     * table and byte vector of the constant pool are kept, in order to reuse
+     * them for the next class. The bytecode produced after a reset is the
+     * same as the bytecode produced with a new {@link ClassWriter}.
+     */
+    public void reset() {
+        cr = null;
+        version = 0;
+        index = 1;
+        pool.length = 0;
+        Item[] items = this.items;
+        for (int i = 0; i < items.length; ++i) {
+            items[i] = null;
+        }
+        itemCount = 0;
+        Item[] typeTable = this.typeTable;
+        for (int i = 1; i <= typeCount; ++i) {
+            typeTable[i] = null;
+        }
+        typeCount = 0;
+        classItems = null;
+        access = 0;
+        name = 0;
+        thisName = null;
+        signature = 0;
+        superName = 0;
+        interfaceCount = 0;
+        interfaces = null;
+        sourceFile = 0;
+        sourceDebug = null;
+        enclosingMethodOwner = 0;
+        enclosingMethod = 0;
+        anns = null;
+        ianns = null;
+        attrs = null;
+        innerClassesCount = 0;
+        innerClasses = null;
+        bootstrapMethodsCount = 0;
+        bootstrapMethods = null;
+        firstField = null;
+        lastField = null;
+        firstMethod = null;
+        lastMethod = null;
+        // toByteArray changes these flags if the frames were invalid
+        computeMaxs = (flags & COMPUTE_MAXS) != 0;
+        computeFrames = (flags & COMPUTE_FRAMES) != 0;
+        reuseFrames = (flags & REUSE_FRAMES) != 0;
+        invalidFrames = false;
+    }
+
+    /**
+     * Resets this {@link ClassWriter} so that it can be used to write another
+     * class, and enables the optimizations described in
+     * {@link #ClassWriter(ClassReader, int)} for this class. See
+     * {@link #reset()}.
+     * 
+     * @param classReader
+     *            the {@link ClassReader} used to read the original class.
+     */
+    public void reset(final ClassReader classReader) {
+        reset();
         classReader.copyPool(this);
         this.cr = classReader;
     }
@@ -739,7 +918,7 @@ public class ClassWriter extends ClassVisitor {
     public final MethodVisitor visitMethod(final int access, final String name,
             final String desc, final String signature, final String[] exceptions) {
         return new MethodWriter(this, access, name, desc, signature,
-                exceptions, computeMaxs, computeFrames);
+                exceptions, computeMaxs, computeFrames, reuseFrames);
     }
 
     @Override
@@ -1043,6 +1222,9 @@ public class ClassWriter extends ClassVisitor {
             pool.put12(CLASS, newUTF8(value));
             result = new Item(index++, key2);
             put(result);
+            if (classItems != null) {
+                addClassItem(result);
+            }
         }
         return result;
     }
@@ -1209,10 +1391,13 @@ public class ClassWriter extends ClassVisitor {
         byte[] data = bootstrapMethods.data;
         int length = (1 + 1 + argsLength) << 1; // (bsm + argCount + arguments)
         hashCode &= 0x7FFFFFFF;
-        Item result = items[hashCode % items.length];
-        loop: while (result != null) {
+        Item[] items = this.items;
+        int mask = items.length - 1;
+        int slot = (hashCode ^ (hashCode >>> 16)) & mask;
+        Item result;
+        loop: while ((result = items[slot]) != null) {
+            slot = (slot + 1) & mask;
             if (result.type != BSM || result.hashCode != hashCode) {
-                result = result.next;
                 continue;
             }
 
@@ -1221,7 +1406,6 @@ public class ClassWriter extends ClassVisitor {
             int resultPosition = result.intVal;
             for (int p = 0; p < length; p++) {
                 if (data[position + p] != data[resultPosition + p]) {
-                    result = result.next;
                     continue loop;
                 }
             }
@@ -1537,6 +1721,47 @@ public class ClassWriter extends ClassVisitor {
         return result.index;
     }
 
+    /**
+     * Returns the internal name of the class constant pool item whose index is
+     * given. The first call to this method builds a reverse index of the class
+     * items by scanning the whole constant pool hash table.
+     * 
+     * @param index
+     *            the index of a class constant pool item.
+     * @return the internal name of this class, or <tt>null</tt> if there is no
+     *         such class item.
+     */
+    String getClassName(final int index) {
+        if (classItems == null) {
+            classItems = new Item[this.index];
+            Item[] items = this.items;
+            for (int i = 0; i < items.length; ++i) {
+                Item item = items[i];
+                if (item != null && item.type == CLASS) {
+                    addClassItem(item);
+                }
+            }
+        }
+        Item item = index < classItems.length ? classItems[index] : null;
+        return item == null ? null : item.strVal1;
+    }
+
+    /**
+     * Adds the given class item to {@link #classItems}.
+     * 
+     * @param item
+     *            a class constant pool item.
+     */
+    private void addClassItem(final Item item) {
+        if (item.index >= classItems.length) {
+            Item[] newItems = new Item[Math.max(2 * classItems.length,
+                    item.index + 1)];
+            System.arraycopy(classItems, 0, newItems, 0, classItems.length);
+            classItems = newItems;
+        }
+        classItems[item.index] = item;
+    }
+
     /**
      * Adds the given Item to {@link #typeTable}.
      * 
@@ -1589,9 +1814,11 @@ public class ClassWriter extends ClassVisitor {
     }
 
     /**
-     * Returns the common super type of the two given types. The default
-     * implementation of this method <i>loads<i> the two given classes and uses
-     * the java.lang.Class methods to find the common super class. It can be
+     * Returns the common super type of the two given types. If this class
+     * writer has a {@link ClassHierarchy}, the default implementation of this
+     * method delegates to {@link ClassHierarchy#getCommonSuperClass}.
+     * Otherwise it <i>loads<i> the two given classes and uses the
+     * java.lang.Class methods to find the common super class. It can be
      * overridden to compute this common super type in other ways, in particular
      * without actually loading any class, or to take into account the class
      * that is currently being generated by this ClassWriter, which can of
@@ -1605,6 +1832,9 @@ public class ClassWriter extends ClassVisitor {
      *         classes.
      */
     protected String getCommonSuperClass(final String type1, final String type2) {
+        if (hierarchy != null) {
+            return hierarchy.getCommonSuperClass(type1, type2);
+        }
         Class<?> c, d;
         ClassLoader classLoader = getClass().getClassLoader();
         try {
@@ -1639,11 +1869,20 @@ public class ClassWriter extends ClassVisitor {
      *         item, or <tt>null</tt> if there is no such item.
      */
     private Item get(final Item key) {
-        Item i = items[key.hashCode % items.length];
-        while (i != null && (i.type != key.type || !key.isEqualTo(i))) {
-            i = i.next;
+        Item[] items = this.items;
+        int[] hashCodes = this.hashCodes;
+        int mask = items.length - 1;
+        int hashCode = key.hashCode;
+        int slot = (hashCode ^ (hashCode >>> 16)) & mask;
+        Item i;
+        while ((i = items[slot]) != null) {
+            if (hashCodes[slot] == hashCode && i.type == key.type
+                    && key.isEqualTo(i)) {
+                return i;
+            }
+            slot = (slot + 1) & mask;
         }
-        return i;
+        return null;
     }
 
     /**
@@ -1653,27 +1892,40 @@ public class ClassWriter extends ClassVisitor {
      * @param i
      *            the item to be added to the constant pool's hash table.
      */
-    private void put(final Item i) {
-        if (index + typeCount > threshold) {
-            int ll = items.length;
-            int nl = ll * 2 + 1;
+    void put(final Item i) {
+        if (itemCount >= threshold) {
+            Item[] items = this.items;
+            int[] hashCodes = this.hashCodes;
+            int nl = items.length * 2;
+            int mask = nl - 1;
             Item[] newItems = new Item[nl];
-            for (int l = ll - 1; l >= 0; --l) {
+            int[] newHashCodes = new int[nl];
+            for (int l = 0; l < items.length; ++l) {
                 Item j = items[l];
-                while (j != null) {
-                    int index = j.hashCode % newItems.length;
-                    Item k = j.next;
-                    j.next = newItems[index];
-                    newItems[index] = j;
-                    j = k;
+                if (j != null) {
+                    int hashCode = hashCodes[l];
+                    int slot = (hashCode ^ (hashCode >>> 16)) & mask;
+                    while (newItems[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    newItems[slot] = j;
+                    newHashCodes[slot] = hashCode;
                 }
             }
-            items = newItems;
-            threshold = (int) (nl * 0.75);
-        }
-        int index = i.hashCode % items.length;
-        i.next = items[index];
-        items[index] = i;
+            this.items = newItems;
+            this.hashCodes = newHashCodes;
+            threshold = nl / 2;
+        }
+        Item[] items = this.items;
+        int mask = items.length - 1;
+        int hashCode = i.hashCode;
+        int slot = (hashCode ^ (hashCode >>> 16)) & mask;
+        while (items[slot] != null) {
+            slot = (slot + 1) & mask;
+        }
+        items[slot] = i;
+        hashCodes[slot] = hashCode;
+        ++itemCount;
     }
 
     /**
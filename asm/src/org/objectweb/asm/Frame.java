@@ -833,6 +833,132 @@ final class Frame {
         }
     }
 
+    /**
+     * Initializes the input frame of this basic block from a frame visited
+     * with {@link MethodVisitor#visitFrame visitFrame}, in expanded form. The
+     * input local variables must then be completed with
+     * {@link #padInputFrame padInputFrame}, once the maximum number of local
+     * variables is known.
+     * 
+     * @param cw
+     *            the ClassWriter to which this label belongs.
+     * @param code
+     *            the bytecode of the method, used to find the type of the
+     *            uninitialized values.
+     * @param nLocal
+     *            the number of local variables in the visited frame.
+     * @param local
+     *            the local variable types in the visited frame.
+     * @param nStack
+     *            the number of operand stack elements in the visited frame.
+     * @param stack
+     *            the operand stack types in the visited frame.
+     * @return <tt>true</tt> if the input frame has been initialized, or
+     *         <tt>false</tt> if the visited frame contains uninitialized types
+     *         whose NEW instruction cannot be found (in which case the input
+     *         frame is left unchanged).
+     */
+    boolean initInputFrame(final ClassWriter cw, final byte[] code,
+            final int nLocal, final Object[] local, final int nStack,
+            final Object[] stack) {
+        int[] locals = types(cw, code, nLocal, local);
+        int[] stacks = types(cw, code, nStack, stack);
+        if (locals == null || stacks == null) {
+            return false;
+        }
+        inputLocals = locals;
+        inputStack = stacks;
+        return true;
+    }
+
+    /**
+     * Converts the given frame types into the format used by this class.
+     * 
+     * @param cw
+     *            the ClassWriter to which this label belongs.
+     * @param code
+     *            the bytecode of the method.
+     * @param n
+     *            the number of types to be converted.
+     * @param types
+     *            types in the format used by {@link MethodVisitor#visitFrame
+     *            visitFrame}.
+     * @return the converted types, or <tt>null</tt> if the given types
+     *         contain uninitialized types whose NEW instruction cannot be
+     *         found.
+     */
+    private static int[] types(final ClassWriter cw, final byte[] code,
+            final int n, final Object[] types) {
+        int size = n;
+        for (int i = 0; i < n; ++i) {
+            if (types[i] instanceof Integer) {
+                int t = BASE | ((Integer) types[i]).intValue();
+                if (t == LONG || t == DOUBLE) {
+                    ++size;
+                }
+            }
+        }
+        int[] result = new int[size];
+        int j = 0;
+        for (int i = 0; i < n; ++i) {
+            Object t = types[i];
+            if (t instanceof Integer) {
+                int v = BASE | ((Integer) t).intValue();
+                result[j++] = v;
+                if (v == LONG || v == DOUBLE) {
+                    result[j++] = TOP;
+                }
+            } else if (t instanceof String) {
+                String s = (String) t;
+                result[j++] = s.charAt(0) == '[' ? type(cw, s) : OBJECT
+                        | cw.addType(s);
+            } else {
+                // finds the type of the NEW instruction at the label offset
+                Label l = (Label) t;
+                if ((l.status & Label.RESOLVED) == 0
+                        || (code[l.position] & 0xFF) != Opcodes.NEW) {
+                    return null;
+                }
+                int offset = l.position;
+                String s = cw.getClassName(((code[offset + 1] & 0xFF) << 8)
+                        | (code[offset + 2] & 0xFF));
+                if (s == null) {
+                    return null;
+                }
+                result[j++] = UNINITIALIZED
+                        | cw.addUninitializedType(s, offset);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Completes an input frame initialized with
+     * {@link #initInputFrame(ClassWriter, byte[], int, Object[], int,
+     * Object[]) initInputFrame} by setting the missing local variables to
+     * {@link #TOP TOP}. If the input frame has more local variables than the
+     * given maximum, it is discarded and the label of this frame is no longer
+     * marked with {@link Label#HINT}.
+     * 
+     * @param maxLocals
+     *            the maximum number of local variables of this method.
+     */
+    void padInputFrame(final int maxLocals) {
+        int n = inputLocals.length;
+        if (n > maxLocals) {
+            inputLocals = null;
+            inputStack = null;
+            owner.status &= ~Label.HINT;
+        } else if (n < maxLocals) {
+            int[] locals = new int[maxLocals];
+            System.arraycopy(inputLocals, 0, locals, 0, n);
+            for (int i = n; i < maxLocals; ++i) {
+                locals[i] = TOP;
+            }
+            inputLocals = locals;
+        }
+    }
+
     /**
      * Simulates the action of the given instruction on the output stack frame.
      * 
@@ -1289,6 +1415,16 @@ final class Frame {
 
         int nLocal = inputLocals.length;
         int nStack = inputStack.length;
+        boolean hint = (frame.owner.status & Label.HINT) != 0;
+        if (hint) {
+            int n = edge > 0 ? 1 : nStack + owner.inputStackTop
+                    + outputStackTop;
+            if (frame.inputStack.length != n) {
+                // the visited frame is not compatible with the incoming stack
+                frame.owner.status &= ~Label.HINT;
+                return true;
+            }
+        }
         if (frame.inputLocals == null) {
             frame.inputLocals = new int[nLocal];
             changed = true;
@@ -1322,20 +1458,20 @@ final class Frame {
             if (initializations != null) {
                 t = init(cw, t);
             }
-            changed |= merge(cw, t, frame.inputLocals, i);
+            changed |= merge(cw, t, frame.inputLocals, i, hint);
         }
 
         if (edge > 0) {
             for (i = 0; i < nLocal; ++i) {
                 t = inputLocals[i];
-                changed |= merge(cw, t, frame.inputLocals, i);
+                changed |= merge(cw, t, frame.inputLocals, i, hint);
             }
             if (frame.inputStack == null) {
                 frame.inputStack = new int[1];
                 changed = true;
             }
-            changed |= merge(cw, edge, frame.inputStack, 0);
-            return changed;
+            changed |= merge(cw, edge, frame.inputStack, 0, hint);
+            return hint(frame, changed);
         }
 
         int nInputStack = inputStack.length + owner.inputStackTop;
@@ -1349,7 +1485,7 @@ final class Frame {
             if (initializations != null) {
                 t = init(cw, t);
             }
-            changed |= merge(cw, t, frame.inputStack, i);
+            changed |= merge(cw, t, frame.inputStack, i, hint);
         }
         for (i = 0; i < outputStackTop; ++i) {
             s = outputStack[i];
@@ -1371,7 +1507,28 @@ final class Frame {
             if (initializations != null) {
                 t = init(cw, t);
             }
-            changed |= merge(cw, t, frame.inputStack, nInputStack + i);
+            changed |= merge(cw, t, frame.inputStack, nInputStack + i,
+                    hint);
+        }
+        return hint(frame, changed);
+    }
+
+    /**
+     * Removes the {@link Label#HINT} flag of the label of the given frame if
+     * this frame has been changed by a merge. Indeed, in this case, the visited
+     * frame from which it has been initialized is not compatible with its
+     * incoming types, and must be recomputed from scratch.
+     * 
+     * @param frame
+     *            a frame that has been merged with another frame.
+     * @param changed
+     *            <tt>true</tt> if the given frame has been changed by the
+     *            merge.
+     * @return <tt>changed</tt>.
+     */
+    private static boolean hint(final Frame frame, final boolean changed) {
+        if (changed) {
+            frame.owner.status &= ~Label.HINT;
         }
         return changed;
     }
@@ -1389,16 +1546,26 @@ final class Frame {
      *            an array of types.
      * @param index
      *            the index of the type that must be merged in 'types'.
+     * @param hint
+     *            <tt>true</tt> if the reference types in 'types' come from a
+     *            visited frame and must be trusted (see
+     *            {@link ClassWriter#REUSE_FRAMES}).
      * @return <tt>true</tt> if the type array has been modified by this
      *         operation.
      */
     private static boolean merge(final ClassWriter cw, int t,
-            final int[] types, final int index) {
+            final int[] types, final int index, final boolean hint) {
         int u = types[index];
         if (u == t) {
             // if the types are equal, merge(u,t)=u, so there is no change
             return false;
         }
+        if (hint && ((u & BASE_KIND) == OBJECT || (u & DIM) != 0)
+                && ((t & BASE_KIND) == OBJECT || (t & DIM) != 0 || t == NULL)) {
+            // if u is a trusted reference type and t is a reference type, t
+            // is supposed to be assignable to u, so there is no change
+            return false;
+        }
         if ((t & ~DIM) == NULL) {
             if (u == NULL) {
                 return false;
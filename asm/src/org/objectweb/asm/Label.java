@@ -107,6 +107,13 @@ public class Label {
      */
     static final int VISITED2 = 2048;
 
+    /**
+     * Indicates if the input frame of this basic block has been initialized
+     * from a frame visited with {@link MethodVisitor#visitFrame visitFrame}
+     * (see {@link ClassWriter#REUSE_FRAMES}).
+     */
+    static final int HINT = 4096;
+
     /**
      * Field used to associate user information to a label. Warning: this field
      * is used by the ASM tree package. In order to use it with the ASM tree
@@ -348,6 +348,14 @@ class MethodWriter extends MethodVisitor {
      */
     private final int compute;
 
+    /**
+     * Indicates if the visited frames must be used as the initial input frames
+     * of their basic block, when the frames are recomputed.
+     * 
+     * @see ClassWriter#REUSE_FRAMES
+     */
+    private final boolean reuseFrames;
+
     /**
      * A list of labels. This list is the list of basic blocks in the method,
      * i.e. a list of Label objects linked to each other by their
@@ -411,11 +419,14 @@ class MethodWriter extends MethodVisitor {
      * @param computeFrames
      *            <tt>true</tt> if the stack map tables must be recomputed from
      *            scratch.
+     * @param reuseFrames
+     *            <tt>true</tt> if the visited frames must be reused when the
+     *            stack map tables are recomputed.
      */
     MethodWriter(final ClassWriter cw, final int access, final String name,
             final String desc, final String signature,
             final String[] exceptions, final boolean computeMaxs,
-            final boolean computeFrames) {
+            final boolean computeFrames, final boolean reuseFrames) {
         super(Opcodes.ASM4);
         if (cw.firstMethod == null) {
             cw.firstMethod = this;
@@ -442,6 +453,7 @@ class MethodWriter extends MethodVisitor {
             }
         }
         this.compute = computeFrames ? FRAMES : (computeMaxs ? MAXS : NOTHING);
+        this.reuseFrames = computeFrames && reuseFrames;
         if (computeMaxs || computeFrames) {
             // updates maxLocals
             int size = Type.getArgumentsAndReturnSizes(descriptor) >> 2;
@@ -540,7 +552,19 @@ class MethodWriter extends MethodVisitor {
     @Override
     public void visitFrame(final int type, final int nLocal,
             final Object[] local, final int nStack, final Object[] stack) {
-        if (!ClassReader.FRAMES || compute == FRAMES) {
+        if (!ClassReader.FRAMES) {
+            return;
+        }
+        if (compute == FRAMES) {
+            if (reuseFrames && type == Opcodes.F_NEW && currentBlock != null
+                    && currentBlock.position == code.length
+                    && currentBlock != labels) {
+                // uses this frame as the input frame of the current block
+                if (currentBlock.frame.initInputFrame(cw, code.data, nLocal,
+                        local, nStack, stack)) {
+                    currentBlock.status |= Label.HINT;
+                }
+            }
             return;
         }
 
@@ -1265,6 +1289,17 @@ class MethodWriter extends MethodVisitor {
                 handler = handler.next;
             }
 
+            // completes the input frames initialized from visited frames
+            if (reuseFrames) {
+                Label l = labels.successor;
+                while (l != null) {
+                    if ((l.status & Label.HINT) != 0) {
+                        l.frame.padInputFrame(this.maxLocals);
+                    }
+                    l = l.successor;
+                }
+            }
+
             // creates and visits the first (implicit) frame
             Frame f = labels.frame;
             Type[] args = Type.getArgumentTypes(descriptor);
@@ -1279,6 +1314,7 @@ class MethodWriter extends MethodVisitor {
              */
             int max = 0;
             Label changed = labels;
+            boolean restart = false;
             while (changed != null) {
                 // removes a basic block from the list of changed basic blocks
                 Label l = changed;
@@ -1300,7 +1336,23 @@ class MethodWriter extends MethodVisitor {
                 Edge e = l.successors;
                 while (e != null) {
                     Label n = e.successor.getFirst();
+                    int status = n.status & (Label.HINT | Label.REACHABLE);
                     boolean change = f.merge(cw, n.frame, e.info);
+                    if ((status & Label.HINT) != 0
+                            && (n.status & Label.HINT) == 0) {
+                        // the visited frame of n is not compatible with its
+                        // incoming types: n is recomputed from these types,
+                        // and the frames computed so far from the visited
+                        // frame are recomputed at the end of this pass
+                        n.frame.inputLocals = null;
+                        n.frame.inputStack = null;
+                        f.merge(cw, n.frame, e.info);
+                        change = true;
+                        restart = true;
+                    }
+                    // a block whose input frame was initialized from a visited
+                    // frame must be visited even if this frame is unchanged
+                    change |= status == Label.HINT;
                     if (change && n.next == null) {
                         // if n has changed and is not already in the 'changed'
                         // list, adds it to this list
@@ -1309,6 +1361,25 @@ class MethodWriter extends MethodVisitor {
                     }
                     e = e.next;
                 }
+                if (changed == null && restart) {
+                    // restarts the fix point algorithm with the remaining
+                    // visited frames, all the other frames being recomputed
+                    // from scratch
+                    Label k = labels;
+                    while (k != null) {
+                        k.status &= ~(Label.STORE | Label.REACHABLE);
+                        if ((k.status & Label.HINT) == 0) {
+                            k.frame.inputLocals = null;
+                            k.frame.inputStack = null;
+                        }
+                        k = k.successor;
+                    }
+                    labels.frame.initInputFrame(cw, access, args,
+                            this.maxLocals);
+                    max = 0;
+                    changed = labels;
+                    restart = false;
+                }
             }
 
             // visits all the frames that must be stored in the stack map
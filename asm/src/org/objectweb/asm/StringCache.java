@@ -0,0 +1,166 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm;
+
+/**
+ * A bounded cache of the strings decoded from CONSTANT_Utf8 items, which can
+ * be shared between several {@link ClassReader}s (see
+ * {@link ClassReader#setStringCache setStringCache}). Each {@link ClassReader}
+ * already decodes each CONSTANT_Utf8 item of its class at most once. With a
+ * shared cache, the strings which appear in many classes (such as
+ * "java/lang/Object", "()V" or "&lt;init&gt;") are also decoded at most once
+ * (modulo collisions), and the same {@link String} instance is returned for
+ * all the classes using it. This reduces the decoding work and, more
+ * importantly, the number of duplicate strings kept in memory by the class
+ * visitors.
+ * 
+ * <p>
+ * The strings are stored in a fixed size hash table, indexed by a hash of the
+ * modified UTF8 bytes of each string. A string replaces the previous string
+ * stored in its slot, if any, so that the size of the cache is bounded. The
+ * strings whose modified UTF8 form is longer than 256 bytes are not cached. A
+ * cached string is only returned after having been compared with the bytes
+ * to be decoded, so that this cache can be used concurrently by several
+ * threads without any synchronization.
+ */
+public class StringCache {
+
+    /**
+     * The maximum length of the modified UTF8 form of the cached strings.
+     */
+    private static final int MAX_LENGTH = 256;
+
+    /**
+     * The cached strings. The length of this array is a power of two.
+     */
+    private final String[] strings;
+
+    /**
+     * Constructs a new {@link StringCache} with 4096 slots.
+     */
+    public StringCache() {
+        this(4096);
+    }
+
+    /**
+     * Constructs a new {@link StringCache}.
+     * 
+     * @param size
+     *            the number of slots of this cache. This number is rounded up
+     *            to a power of two.
+     */
+    public StringCache(final int size) {
+        int n = 1;
+        while (n < size) {
+            n <<= 1;
+        }
+        strings = new String[n];
+    }
+
+    /**
+     * Computes the slot of a modified UTF8 string.
+     * 
+     * @param b
+     *            a byte array containing a modified UTF8 string.
+     * @param off
+     *            the start offset of this string in b.
+     * @param len
+     *            the length of this string in b.
+     * @return the index of the slot for this string, or -1 if it must not be
+     *         cached.
+     */
+    int hash(final byte[] b, final int off, final int len) {
+        if (len > MAX_LENGTH) {
+            return -1;
+        }
+        int h = len;
+        for (int i = off, end = off + len; i < end; ++i) {
+            h = 31 * h + b[i];
+        }
+        return (h ^ (h >>> 16)) & (strings.length - 1);
+    }
+
+    /**
+     * Returns the cached string equal to a modified UTF8 string. The cached
+     * string is encoded on the fly and compared with the given bytes, so a
+     * string whose bytes are not in the canonical modified UTF8 form is never
+     * found in this cache (it is then simply decoded again).
+     * 
+     * @param slot
+     *            the slot of this string, computed with {@link #hash hash}.
+     * @param b
+     *            a byte array containing a modified UTF8 string.
+     * @param off
+     *            the start offset of this string in b.
+     * @param len
+     *            the length of this string in b.
+     * @return the cached string equal to the given string, or <tt>null</tt>.
+     */
+    String get(final int slot, final byte[] b, final int off, final int len) {
+        String s = strings[slot];
+        if (s == null) {
+            return null;
+        }
+        int i = off;
+        int end = off + len;
+        for (int k = 0, n = s.length(); k < n; ++k) {
+            int c = s.charAt(k);
+            if (c >= 0x0001 && c <= 0x007F) {
+                if (i == end || b[i++] != c) {
+                    return null;
+                }
+            } else if (c > 0x07FF) {
+                if (end - i < 3 || b[i++] != (byte) (0xE0 | c >> 12 & 0xF)
+                        || b[i++] != (byte) (0x80 | c >> 6 & 0x3F)
+                        || b[i++] != (byte) (0x80 | c & 0x3F)) {
+                    return null;
+                }
+            } else {
+                if (end - i < 2 || b[i++] != (byte) (0xC0 | c >> 6 & 0x1F)
+                        || b[i++] != (byte) (0x80 | c & 0x3F)) {
+                    return null;
+                }
+            }
+        }
+        return i == end ? s : null;
+    }
+
+    /**
+     * Stores a string in this cache.
+     * 
+     * @param slot
+     *            the slot of this string, computed with {@link #hash hash}.
+     * @param s
+     *            the string to be stored.
+     */
+    void put(final int slot, final String s) {
+        strings[slot] = s;
+    }
+}
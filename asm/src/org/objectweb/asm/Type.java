@@ -183,6 +183,14 @@ public class Type {
      */
     private final int len;
 
+    /**
+     * The cache of the parsed method descriptors, shared by all threads, or
+     * <tt>null</tt> if this cache is disabled. The length of this array is a
+     * power of two. See {@link #setMethodDescriptorCacheSize
+     * setMethodDescriptorCacheSize}.
+     */
+    private static volatile CachedMethodDescriptor[] cache;
+
     // ------------------------------------------------------------------------
     // Constructors
     // ------------------------------------------------------------------------
@@ -238,6 +246,10 @@ public class Type {
      * @return the Java type corresponding to the given method descriptor.
      */
     public static Type getMethodType(final String methodDescriptor) {
+        CachedMethodDescriptor[] c = cache;
+        if (c != null) {
+            return getCachedMethodDescriptor(c, methodDescriptor).type;
+        }
         return getType(methodDescriptor.toCharArray(), 0);
     }
 
@@ -322,7 +334,24 @@ public class Type {
      *         method descriptor.
      */
     public static Type[] getArgumentTypes(final String methodDescriptor) {
-        char[] buf = methodDescriptor.toCharArray();
+        CachedMethodDescriptor[] c = cache;
+        if (c != null) {
+            return getCachedMethodDescriptor(c, methodDescriptor).argumentTypes
+                    .clone();
+        }
+        return getArgumentTypes(methodDescriptor.toCharArray());
+    }
+
+    /**
+     * Returns the Java types corresponding to the argument types of the given
+     * method descriptor.
+     * 
+     * @param buf
+     *            a buffer containing a method descriptor, and nothing else.
+     * @return the Java types corresponding to the argument types of the given
+     *         method descriptor.
+     */
+    private static Type[] getArgumentTypes(final char[] buf) {
         int off = 1;
         int size = 0;
         while (true) {
@@ -376,6 +405,10 @@ public class Type {
      *         method descriptor.
      */
     public static Type getReturnType(final String methodDescriptor) {
+        CachedMethodDescriptor[] c = cache;
+        if (c != null) {
+            return getCachedMethodDescriptor(c, methodDescriptor).returnType;
+        }
         char[] buf = methodDescriptor.toCharArray();
         return getType(buf, methodDescriptor.indexOf(')') + 1);
     }
@@ -405,6 +438,10 @@ public class Type {
      *         <tt>i >> 2</tt>, and retSize to <tt>i & 0x03</tt>).
      */
     public static int getArgumentsAndReturnSizes(final String desc) {
+        CachedMethodDescriptor[] cache = Type.cache;
+        if (cache != null) {
+            return getCachedMethodDescriptor(cache, desc).sizes;
+        }
         int n = 1;
         int c = 1;
         while (true) {
@@ -432,6 +469,72 @@ public class Type {
         }
     }
 
+    /**
+     * Enables, resizes or disables the cache of the parsed method descriptors.
+     * This cache is used by {@link #getMethodType(String) getMethodType},
+     * {@link #getArgumentTypes(String) getArgumentTypes},
+     * {@link #getReturnType(String) getReturnType} and
+     * {@link #getArgumentsAndReturnSizes getArgumentsAndReturnSizes}, and by
+     * the corresponding methods of the method types. It is shared by all the
+     * threads of the JVM, and is disabled by default. It is useful when the
+     * same descriptors are parsed many times, as in class adapters which call
+     * these methods for each method instruction they visit.
+     * 
+     * <p>
+     * The parsed descriptors are stored in a fixed size hash table, indexed by
+     * the hash code of each descriptor. A parsed descriptor replaces the
+     * previous one stored in its slot, if any, so that the size of the cache
+     * is bounded. The cached values are immutable (getArgumentTypes returns a
+     * copy of the cached array), so this cache can be used concurrently by
+     * several threads without any synchronization.
+     * 
+     * @param size
+     *            the number of slots of the cache, which is rounded up to a
+     *            power of two, or 0 to disable the cache.
+     */
+    public static void setMethodDescriptorCacheSize(final int size) {
+        if (size <= 0) {
+            cache = null;
+        } else {
+            int n = 1;
+            while (n < size) {
+                n <<= 1;
+            }
+            cache = new CachedMethodDescriptor[n];
+        }
+    }
+
+    /**
+     * Returns the parsed form of the given method descriptor, from the given
+     * cache if possible. Otherwise the descriptor is parsed and stored in the
+     * cache.
+     * 
+     * @param cache
+     *            the cache of the parsed method descriptors.
+     * @param desc
+     *            a method descriptor.
+     * @return the parsed form of the given method descriptor.
+     */
+    private static CachedMethodDescriptor getCachedMethodDescriptor(
+            final CachedMethodDescriptor[] cache, final String desc) {
+        int h = desc.hashCode();
+        int i = (h ^ (h >>> 16)) & (cache.length - 1);
+        CachedMethodDescriptor d = cache[i];
+        if (d == null || !d.desc.equals(desc)) {
+            char[] buf = desc.toCharArray();
+            Type[] args = getArgumentTypes(buf);
+            Type ret = getType(buf, desc.indexOf(')') + 1);
+            int n = 1;
+            for (int j = 0; j < args.length; ++j) {
+                n += args[j].getSize();
+            }
+            d = new CachedMethodDescriptor(desc, getType(buf, 0), args, ret,
+                    n << 2 | ret.getSize());
+            cache[i] = d;
+        }
+        return d;
+    }
+
     /**
      * Returns the Java type corresponding to the given type descriptor. For
      * method descriptors, buf is supposed to contain nothing more than the
@@ -0,0 +1,1054 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.commons;
+
+import java.util.HashMap;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.Attribute;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * A {@link ClassVisitor} that records the events it receives, in order to
+ * replay them to any number of other class visitors, without parsing the class
+ * again. The events are stored in an int array, with references to the
+ * strings and other constants of the class in an object array (in which each
+ * distinct constant is stored once). This representation is much more compact
+ * than a {@link org.objectweb.asm.tree.ClassNode ClassNode}, but cannot be
+ * modified. Once all the events have been recorded, i.e. after
+ * {@link #visitEnd visitEnd} has been called, the {@link #accept accept}
+ * method can be called concurrently by several threads. Note that the arrays
+ * passed to the visit methods (except the label and frame arrays) are shared
+ * between all the replays, and must therefore not be modified by the visitors.
+ */
+public class ClassEventBuffer extends ClassVisitor {
+
+    private static final int VISIT = 0;
+
+    private static final int SOURCE = 1;
+
+    private static final int OUTER_CLASS = 2;
+
+    private static final int CLASS_ANNOTATION = 3;
+
+    private static final int CLASS_ATTRIBUTE = 4;
+
+    private static final int INNER_CLASS = 5;
+
+    private static final int FIELD = 6;
+
+    private static final int METHOD = 7;
+
+    private static final int CLASS_END = 8;
+
+    private static final int FIELD_ANNOTATION = 9;
+
+    private static final int FIELD_ATTRIBUTE = 10;
+
+    private static final int FIELD_END = 11;
+
+    private static final int ANNOTATION_VALUE = 12;
+
+    private static final int ANNOTATION_ENUM = 13;
+
+    private static final int ANNOTATION_ANNOTATION = 14;
+
+    private static final int ANNOTATION_ARRAY = 15;
+
+    private static final int ANNOTATION_END = 16;
+
+    private static final int ANNOTATION_DEFAULT = 17;
+
+    private static final int METHOD_ANNOTATION = 18;
+
+    private static final int PARAMETER_ANNOTATION = 19;
+
+    private static final int METHOD_ATTRIBUTE = 20;
+
+    private static final int CODE = 21;
+
+    private static final int FRAME = 22;
+
+    private static final int INSN = 23;
+
+    private static final int INT_INSN = 24;
+
+    private static final int VAR_INSN = 25;
+
+    private static final int TYPE_INSN = 26;
+
+    private static final int FIELD_INSN = 27;
+
+    private static final int METHOD_INSN = 28;
+
+    private static final int INVOKE_DYNAMIC_INSN = 29;
+
+    private static final int JUMP_INSN = 30;
+
+    private static final int LABEL = 31;
+
+    private static final int LDC_INSN = 32;
+
+    private static final int IINC_INSN = 33;
+
+    private static final int TABLE_SWITCH_INSN = 34;
+
+    private static final int LOOKUP_SWITCH_INSN = 35;
+
+    private static final int MULTI_ANEW_ARRAY_INSN = 36;
+
+    private static final int TRY_CATCH_BLOCK = 37;
+
+    private static final int LOCAL_VARIABLE = 38;
+
+    private static final int LINE_NUMBER = 39;
+
+    private static final int MAXS = 40;
+
+    private static final int METHOD_END = 41;
+
+    /**
+     * The recorded events. Each event is made of its type, followed by its
+     * arguments. Booleans are stored as 0 or 1, objects as indexes in
+     * {@link #objects}, and labels as label numbers.
+     */
+    private int[] events;
+
+    /**
+     * Number of ints in {@link #events}.
+     */
+    private int length;
+
+    /**
+     * The objects referenced by the events. The first element is always
+     * <tt>null</tt>.
+     */
+    private Object[] objects;
+
+    /**
+     * Number of objects in {@link #objects}.
+     */
+    private int objectCount;
+
+    /**
+     * The indexes in {@link #objects} of the recorded constants. This map is
+     * only used while the events are recorded.
+     */
+    private HashMap<Object, Integer> objectIndexes;
+
+    /**
+     * The numbers of the labels of the method being recorded. The labels of
+     * each method are numbered from 0, in the order in which they are first
+     * referenced. This map is only used while the events are recorded.
+     */
+    private HashMap<Label, Integer> labelNumbers;
+
+    /**
+     * The visitor used to record the field events.
+     */
+    private final FieldVisitor fieldRecorder;
+
+    /**
+     * The visitor used to record the method events.
+     */
+    private final MethodVisitor methodRecorder;
+
+    /**
+     * The visitor used to record the annotation events.
+     */
+    private final AnnotationVisitor annotationRecorder;
+
+    /**
+     * Constructs a new {@link ClassEventBuffer}. <i>Subclasses must not use
+     * this constructor</i>. Instead, they must use the
+     * {@link #ClassEventBuffer(int)} version.
+     */
+    public ClassEventBuffer() {
+        this(Opcodes.ASM4);
+    }
+
+    /**
+     * Constructs a new {@link ClassEventBuffer}.
+     * 
+     * @param api
+     *            the ASM API version implemented by this visitor. Must be
+     *            {@link Opcodes#ASM4}.
+     */
+    protected ClassEventBuffer(final int api) {
+        super(api);
+        events = new int[256];
+        objects = new Object[64];
+        objectCount = 1;
+        objectIndexes = new HashMap<Object, Integer>();
+        labelNumbers = new HashMap<Label, Integer>();
+        fieldRecorder = new FieldRecorder(api);
+        methodRecorder = new MethodRecorder(api);
+        annotationRecorder = new AnnotationRecorder(api);
+    }
+
+    // ------------------------------------------------------------------------
+    // Recording
+    // ------------------------------------------------------------------------
+
+    private void put(final int i) {
+        if (length == events.length) {
+            int[] newEvents = new int[2 * length];
+            System.arraycopy(events, 0, newEvents, 0, length);
+            events = newEvents;
+        }
+        events[length++] = i;
+    }
+
+    private void put(final int i1, final int i2) {
+        put(i1);
+        put(i2);
+    }
+
+    private void put(final boolean b) {
+        put(b ? 1 : 0);
+    }
+
+    private void putObject(final Object o) {
+        put(o == null ? 0 : addObject(o));
+    }
+
+    private void putObjects(final Object o1, final Object o2) {
+        putObject(o1);
+        putObject(o2);
+    }
+
+    private void putArray(final Object array) {
+        put(array == null ? 0 : newObject(array));
+    }
+
+    private void putLabel(final Label label) {
+        Integer n = labelNumbers.get(label);
+        if (n == null) {
+            n = new Integer(labelNumbers.size());
+            labelNumbers.put(label, n);
+        }
+        put(n.intValue());
+    }
+
+    private int addObject(final Object o) {
+        Integer index = objectIndexes.get(o);
+        if (index == null) {
+            index = new Integer(newObject(o));
+            objectIndexes.put(o, index);
+        }
+        return index.intValue();
+    }
+
+    private int newObject(final Object o) {
+        if (objectCount == objects.length) {
+            Object[] newObjects = new Object[2 * objectCount];
+            System.arraycopy(objects, 0, newObjects, 0, objectCount);
+            objects = newObjects;
+        }
+        objects[objectCount] = o;
+        return objectCount++;
+    }
+
+    private void putFrameTypes(final int n, final Object[] types) {
+        // a null array is stored as the complement of its length
+        if (types == null) {
+            put(~n);
+            return;
+        }
+        put(n);
+        for (int i = 0; i < n; ++i) {
+            Object type = types[i];
+            if (type instanceof Integer) {
+                put(((Integer) type).intValue() << 2);
+            } else if (type instanceof Label) {
+                Integer label = labelNumbers.get(type);
+                if (label == null) {
+                    label = new Integer(labelNumbers.size());
+                    labelNumbers.put((Label) type, label);
+                }
+                put(label.intValue() << 2 | 2);
+            } else {
+                put(addObject(type) << 2 | 1);
+            }
+        }
+    }
+
+    @Override
+    public void visit(final int version, final int access, final String name,
+            final String signature, final String superName,
+            final String[] interfaces) {
+        put(VISIT);
+        put(version, access);
+        putObjects(name, signature);
+        putObject(superName);
+        putArray(interfaces);
+    }
+
+    @Override
+    public void visitSource(final String source, final String debug) {
+        put(SOURCE);
+        putObjects(source, debug);
+    }
+
+    @Override
+    public void visitOuterClass(final String owner, final String name,
+            final String desc) {
+        put(OUTER_CLASS);
+        putObjects(owner, name);
+        putObject(desc);
+    }
+
+    @Override
+    public AnnotationVisitor visitAnnotation(final String desc,
+            final boolean visible) {
+        put(CLASS_ANNOTATION);
+        putObject(desc);
+        put(visible);
+        return annotationRecorder;
+    }
+
+    @Override
+    public void visitAttribute(final Attribute attr) {
+        put(CLASS_ATTRIBUTE);
+        putArray(attr);
+    }
+
+    @Override
+    public void visitInnerClass(final String name, final String outerName,
+            final String innerName, final int access) {
+        put(INNER_CLASS);
+        putObjects(name, outerName);
+        putObject(innerName);
+        put(access);
+    }
+
+    @Override
+    public FieldVisitor visitField(final int access, final String name,
+            final String desc, final String signature, final Object value) {
+        put(FIELD);
+        put(access);
+        putObjects(name, desc);
+        putObjects(signature, value);
+        return fieldRecorder;
+    }
+
+    @Override
+    public MethodVisitor visitMethod(final int access, final String name,
+            final String desc, final String signature,
+            final String[] exceptions) {
+        put(METHOD);
+        put(access);
+        putObjects(name, desc);
+        putObject(signature);
+        putArray(exceptions);
+        labelNumbers.clear();
+        return methodRecorder;
+    }
+
+    @Override
+    public void visitEnd() {
+        put(CLASS_END);
+        int[] newEvents = new int[length];
+        System.arraycopy(events, 0, newEvents, 0, length);
+        events = newEvents;
+        Object[] newObjects = new Object[objectCount];
+        System.arraycopy(objects, 0, newObjects, 0, objectCount);
+        objects = newObjects;
+        objectIndexes = null;
+        labelNumbers = null;
+    }
+
+    private class FieldRecorder extends FieldVisitor {
+
+        FieldRecorder(final int api) {
+            super(api);
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(final String desc,
+                final boolean visible) {
+            put(FIELD_ANNOTATION);
+            putObject(desc);
+            put(visible);
+            return annotationRecorder;
+        }
+
+        @Override
+        public void visitAttribute(final Attribute attr) {
+            put(FIELD_ATTRIBUTE);
+            putArray(attr);
+        }
+
+        @Override
+        public void visitEnd() {
+            put(FIELD_END);
+        }
+    }
+
+    private class AnnotationRecorder extends AnnotationVisitor {
+
+        AnnotationRecorder(final int api) {
+            super(api);
+        }
+
+        @Override
+        public void visit(final String name, final Object value) {
+            put(ANNOTATION_VALUE);
+            putObject(name);
+            if (value.getClass().isArray()) {
+                putArray(value);
+            } else {
+                putObject(value);
+            }
+        }
+
+        @Override
+        public void visitEnum(final String name, final String desc,
+                final String value) {
+            put(ANNOTATION_ENUM);
+            putObjects(name, desc);
+            putObject(value);
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(final String name,
+                final String desc) {
+            put(ANNOTATION_ANNOTATION);
+            putObjects(name, desc);
+            return this;
+        }
+
+        @Override
+        public AnnotationVisitor visitArray(final String name) {
+            put(ANNOTATION_ARRAY);
+            putObject(name);
+            return this;
+        }
+
+        @Override
+        public void visitEnd() {
+            put(ANNOTATION_END);
+        }
+    }
+
+    private class MethodRecorder extends MethodVisitor {
+
+        MethodRecorder(final int api) {
+            super(api);
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotationDefault() {
+            put(ANNOTATION_DEFAULT);
+            return annotationRecorder;
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(final String desc,
+                final boolean visible) {
+            put(METHOD_ANNOTATION);
+            putObject(desc);
+            put(visible);
+            return annotationRecorder;
+        }
+
+        @Override
+        public AnnotationVisitor visitParameterAnnotation(final int parameter,
+                final String desc, final boolean visible) {
+            put(PARAMETER_ANNOTATION);
+            put(parameter);
+            putObject(desc);
+            put(visible);
+            return annotationRecorder;
+        }
+
+        @Override
+        public void visitAttribute(final Attribute attr) {
+            put(METHOD_ATTRIBUTE);
+            putArray(attr);
+        }
+
+        @Override
+        public void visitCode() {
+            put(CODE);
+        }
+
+        @Override
+        public void visitFrame(final int type, final int nLocal,
+                final Object[] local, final int nStack, final Object[] stack) {
+            put(FRAME);
+            put(type);
+            putFrameTypes(nLocal, local);
+            putFrameTypes(nStack, stack);
+        }
+
+        @Override
+        public void visitInsn(final int opcode) {
+            put(INSN);
+            put(opcode);
+        }
+
+        @Override
+        public void visitIntInsn(final int opcode, final int operand) {
+            put(INT_INSN);
+            put(opcode, operand);
+        }
+
+        @Override
+        public void visitVarInsn(final int opcode, final int var) {
+            put(VAR_INSN);
+            put(opcode, var);
+        }
+
+        @Override
+        public void visitTypeInsn(final int opcode, final String type) {
+            put(TYPE_INSN);
+            put(opcode);
+            putObject(type);
+        }
+
+        @Override
+        public void visitFieldInsn(final int opcode, final String owner,
+                final String name, final String desc) {
+            put(FIELD_INSN);
+            put(opcode);
+            putObjects(owner, name);
+            putObject(desc);
+        }
+
+        @Override
+        public void visitMethodInsn(final int opcode, final String owner,
+                final String name, final String desc) {
+            put(METHOD_INSN);
+            put(opcode);
+            putObjects(owner, name);
+            putObject(desc);
+        }
+
+        @Override
+        public void visitInvokeDynamicInsn(final String name,
+                final String desc, final Handle bsm, final Object... bsmArgs) {
+            put(INVOKE_DYNAMIC_INSN);
+            putObjects(name, desc);
+            putObject(bsm);
+            putArray(bsmArgs);
+        }
+
+        @Override
+        public void visitJumpInsn(final int opcode, final Label label) {
+            put(JUMP_INSN);
+            put(opcode);
+            putLabel(label);
+        }
+
+        @Override
+        public void visitLabel(final Label label) {
+            put(LABEL);
+            putLabel(label);
+        }
+
+        @Override
+        public void visitLdcInsn(final Object cst) {
+            put(LDC_INSN);
+            putObject(cst);
+        }
+
+        @Override
+        public void visitIincInsn(final int var, final int increment) {
+            put(IINC_INSN);
+            put(var, increment);
+        }
+
+        @Override
+        public void visitTableSwitchInsn(final int min, final int max,
+                final Label dflt, final Label... labels) {
+            put(TABLE_SWITCH_INSN);
+            put(min, max);
+            putLabel(dflt);
+            put(labels.length);
+            for (int i = 0; i < labels.length; ++i) {
+                putLabel(labels[i]);
+            }
+        }
+
+        @Override
+        public void visitLookupSwitchInsn(final Label dflt, final int[] keys,
+                final Label[] labels) {
+            put(LOOKUP_SWITCH_INSN);
+            putLabel(dflt);
+            put(labels.length);
+            for (int i = 0; i < labels.length; ++i) {
+                put(keys[i]);
+                putLabel(labels[i]);
+            }
+        }
+
+        @Override
+        public void visitMultiANewArrayInsn(final String desc, final int dims) {
+            put(MULTI_ANEW_ARRAY_INSN);
+            putObject(desc);
+            put(dims);
+        }
+
+        @Override
+        public void visitTryCatchBlock(final Label start, final Label end,
+                final Label handler, final String type) {
+            put(TRY_CATCH_BLOCK);
+            putLabel(start);
+            putLabel(end);
+            putLabel(handler);
+            putObject(type);
+        }
+
+        @Override
+        public void visitLocalVariable(final String name, final String desc,
+                final String signature, final Label start, final Label end,
+                final int index) {
+            put(LOCAL_VARIABLE);
+            putObjects(name, desc);
+            putObject(signature);
+            putLabel(start);
+            putLabel(end);
+            put(index);
+        }
+
+        @Override
+        public void visitLineNumber(final int line, final Label start) {
+            put(LINE_NUMBER);
+            put(line);
+            putLabel(start);
+        }
+
+        @Override
+        public void visitMaxs(final int maxStack, final int maxLocals) {
+            put(MAXS);
+            put(maxStack, maxLocals);
+        }
+
+        @Override
+        public void visitEnd() {
+            put(METHOD_END);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Replay
+    // ------------------------------------------------------------------------
+
+    /**
+     * Makes the given class visitor visit the recorded events. This method can
+     * be called several times, and concurrently, once all the events have been
+     * recorded.
+     * 
+     * @param cv
+     *            a class visitor.
+     */
+    public void accept(final ClassVisitor cv) {
+        int[] events = this.events;
+        Object[] objects = this.objects;
+        Label[] labels = new Label[16];
+        FieldVisitor fv = null;
+        MethodVisitor mv = null;
+        AnnotationVisitor[] avs = new AnnotationVisitor[8];
+        int depth = 0;
+        AnnotationVisitor av = null;
+        int i = 0;
+        while (i < length) {
+            AnnotationVisitor newAv = null;
+            switch (events[i++]) {
+            case VISIT:
+                cv.visit(events[i], events[i + 1],
+                        (String) objects[events[i + 2]],
+                        (String) objects[events[i + 3]],
+                        (String) objects[events[i + 4]],
+                        (String[]) objects[events[i + 5]]);
+                i += 6;
+                continue;
+            case SOURCE:
+                cv.visitSource((String) objects[events[i]],
+                        (String) objects[events[i + 1]]);
+                i += 2;
+                continue;
+            case OUTER_CLASS:
+                cv.visitOuterClass((String) objects[events[i]],
+                        (String) objects[events[i + 1]],
+                        (String) objects[events[i + 2]]);
+                i += 3;
+                continue;
+            case CLASS_ANNOTATION:
+                newAv = cv.visitAnnotation((String) objects[events[i]],
+                        events[i + 1] != 0);
+                i += 2;
+                break;
+            case CLASS_ATTRIBUTE:
+                cv.visitAttribute((Attribute) objects[events[i++]]);
+                continue;
+            case INNER_CLASS:
+                cv.visitInnerClass((String) objects[events[i]],
+                        (String) objects[events[i + 1]],
+                        (String) objects[events[i + 2]], events[i + 3]);
+                i += 4;
+                continue;
+            case FIELD:
+                fv = cv.visitField(events[i], (String) objects[events[i + 1]],
+                        (String) objects[events[i + 2]],
+                        (String) objects[events[i + 3]],
+                        objects[events[i + 4]]);
+                i += 5;
+                continue;
+            case METHOD:
+                mv = cv.visitMethod(events[i],
+                        (String) objects[events[i + 1]],
+                        (String) objects[events[i + 2]],
+                        (String) objects[events[i + 3]],
+                        (String[]) objects[events[i + 4]]);
+                i += 5;
+                // the labels of a method are created in the order of their
+                // numbers, so those of the previous method form a prefix
+                for (int j = 0; j < labels.length && labels[j] != null; ++j) {
+                    labels[j] = null;
+                }
+                continue;
+            case CLASS_END:
+                cv.visitEnd();
+                continue;
+            case FIELD_ANNOTATION:
+                if (fv != null) {
+                    newAv = fv.visitAnnotation((String) objects[events[i]],
+                            events[i + 1] != 0);
+                }
+                i += 2;
+                break;
+            case FIELD_ATTRIBUTE:
+                if (fv != null) {
+                    fv.visitAttribute((Attribute) objects[events[i]]);
+                }
+                ++i;
+                continue;
+            case FIELD_END:
+                if (fv != null) {
+                    fv.visitEnd();
+                }
+                continue;
+            case ANNOTATION_VALUE:
+                if (av != null) {
+                    av.visit((String) objects[events[i]],
+                            objects[events[i + 1]]);
+                }
+                i += 2;
+                continue;
+            case ANNOTATION_ENUM:
+                if (av != null) {
+                    av.visitEnum((String) objects[events[i]],
+                            (String) objects[events[i + 1]],
+                            (String) objects[events[i + 2]]);
+                }
+                i += 3;
+                continue;
+            case ANNOTATION_ANNOTATION:
+                if (av != null) {
+                    newAv = av.visitAnnotation((String) objects[events[i]],
+                            (String) objects[events[i + 1]]);
+                }
+                i += 2;
+                break;
+            case ANNOTATION_ARRAY:
+                if (av != null) {
+                    newAv = av.visitArray((String) objects[events[i]]);
+                }
+                ++i;
+                break;
+            case ANNOTATION_END:
+                if (av != null) {
+                    av.visitEnd();
+                }
+                av = avs[--depth];
+                continue;
+            case ANNOTATION_DEFAULT:
+                if (mv != null) {
+                    newAv = mv.visitAnnotationDefault();
+                }
+                break;
+            case METHOD_ANNOTATION:
+                if (mv != null) {
+                    newAv = mv.visitAnnotation((String) objects[events[i]],
+                            events[i + 1] != 0);
+                }
+                i += 2;
+                break;
+            case PARAMETER_ANNOTATION:
+                if (mv != null) {
+                    newAv = mv.visitParameterAnnotation(events[i],
+                            (String) objects[events[i + 1]],
+                            events[i + 2] != 0);
+                }
+                i += 3;
+                break;
+            case METHOD_ATTRIBUTE:
+                if (mv != null) {
+                    mv.visitAttribute((Attribute) objects[events[i]]);
+                }
+                ++i;
+                continue;
+            case CODE:
+                if (mv != null) {
+                    mv.visitCode();
+                }
+                continue;
+            case FRAME: {
+                int type = events[i++];
+                int nLocal = events[i++];
+                Object[] local = nLocal < 0 ? null : new Object[nLocal];
+                for (int j = 0; j < nLocal; ++j) {
+                    int t = events[i++];
+                    if ((t & 3) == 2) {
+                        labels = getLabels(labels, t >>> 2);
+                    }
+                    local[j] = getFrameType(t, labels);
+                }
+                int nStack = events[i++];
+                Object[] stack = nStack < 0 ? null : new Object[nStack];
+                for (int j = 0; j < nStack; ++j) {
+                    int t = events[i++];
+                    if ((t & 3) == 2) {
+                        labels = getLabels(labels, t >>> 2);
+                    }
+                    stack[j] = getFrameType(t, labels);
+                }
+                if (mv != null) {
+                    mv.visitFrame(type, local == null ? ~nLocal : nLocal,
+                            local, stack == null ? ~nStack : nStack, stack);
+                }
+                continue;
+            }
+            case INSN:
+                if (mv != null) {
+                    mv.visitInsn(events[i]);
+                }
+                ++i;
+                continue;
+            case INT_INSN:
+                if (mv != null) {
+                    mv.visitIntInsn(events[i], events[i + 1]);
+                }
+                i += 2;
+                continue;
+            case VAR_INSN:
+                if (mv != null) {
+                    mv.visitVarInsn(events[i], events[i + 1]);
+                }
+                i += 2;
+                continue;
+            case TYPE_INSN:
+                if (mv != null) {
+                    mv.visitTypeInsn(events[i],
+                            (String) objects[events[i + 1]]);
+                }
+                i += 2;
+                continue;
+            case FIELD_INSN:
+                if (mv != null) {
+                    mv.visitFieldInsn(events[i],
+                            (String) objects[events[i + 1]],
+                            (String) objects[events[i + 2]],
+                            (String) objects[events[i + 3]]);
+                }
+                i += 4;
+                continue;
+            case METHOD_INSN:
+                if (mv != null) {
+                    mv.visitMethodInsn(events[i],
+                            (String) objects[events[i + 1]],
+                            (String) objects[events[i + 2]],
+                            (String) objects[events[i + 3]]);
+                }
+                i += 4;
+                continue;
+            case INVOKE_DYNAMIC_INSN:
+                if (mv != null) {
+                    mv.visitInvokeDynamicInsn((String) objects[events[i]],
+                            (String) objects[events[i + 1]],
+                            (Handle) objects[events[i + 2]],
+                            (Object[]) objects[events[i + 3]]);
+                }
+                i += 4;
+                continue;
+            case JUMP_INSN:
+                labels = getLabels(labels, events[i + 1]);
+                if (mv != null) {
+                    mv.visitJumpInsn(events[i], labels[events[i + 1]]);
+                }
+                i += 2;
+                continue;
+            case LABEL:
+                labels = getLabels(labels, events[i]);
+                if (mv != null) {
+                    mv.visitLabel(labels[events[i]]);
+                }
+                ++i;
+                continue;
+            case LDC_INSN:
+                if (mv != null) {
+                    mv.visitLdcInsn(objects[events[i]]);
+                }
+                ++i;
+                continue;
+            case IINC_INSN:
+                if (mv != null) {
+                    mv.visitIincInsn(events[i], events[i + 1]);
+                }
+                i += 2;
+                continue;
+            case TABLE_SWITCH_INSN: {
+                int min = events[i++];
+                int max = events[i++];
+                labels = getLabels(labels, events[i]);
+                Label dflt = labels[events[i++]];
+                Label[] targets = new Label[events[i++]];
+                for (int j = 0; j < targets.length; ++j) {
+                    labels = getLabels(labels, events[i]);
+                    targets[j] = labels[events[i++]];
+                }
+                if (mv != null) {
+                    mv.visitTableSwitchInsn(min, max, dflt, targets);
+                }
+                continue;
+            }
+            case LOOKUP_SWITCH_INSN: {
+                labels = getLabels(labels, events[i]);
+                Label dflt = labels[events[i++]];
+                int[] keys = new int[events[i++]];
+                Label[] targets = new Label[keys.length];
+                for (int j = 0; j < keys.length; ++j) {
+                    keys[j] = events[i++];
+                    labels = getLabels(labels, events[i]);
+                    targets[j] = labels[events[i++]];
+                }
+                if (mv != null) {
+                    mv.visitLookupSwitchInsn(dflt, keys, targets);
+                }
+                continue;
+            }
+            case MULTI_ANEW_ARRAY_INSN:
+                if (mv != null) {
+                    mv.visitMultiANewArrayInsn((String) objects[events[i]],
+                            events[i + 1]);
+                }
+                i += 2;
+                continue;
+            case TRY_CATCH_BLOCK:
+                labels = getLabels(labels, events[i]);
+                labels = getLabels(labels, events[i + 1]);
+                labels = getLabels(labels, events[i + 2]);
+                if (mv != null) {
+                    mv.visitTryCatchBlock(labels[events[i]],
+                            labels[events[i + 1]], labels[events[i + 2]],
+                            (String) objects[events[i + 3]]);
+                }
+                i += 4;
+                continue;
+            case LOCAL_VARIABLE:
+                labels = getLabels(labels, events[i + 3]);
+                labels = getLabels(labels, events[i + 4]);
+                if (mv != null) {
+                    mv.visitLocalVariable((String) objects[events[i]],
+                            (String) objects[events[i + 1]],
+                            (String) objects[events[i + 2]],
+                            labels[events[i + 3]], labels[events[i + 4]],
+                            events[i + 5]);
+                }
+                i += 6;
+                continue;
+            case LINE_NUMBER:
+                labels = getLabels(labels, events[i + 1]);
+                if (mv != null) {
+                    mv.visitLineNumber(events[i], labels[events[i + 1]]);
+                }
+                i += 2;
+                continue;
+            case MAXS:
+                if (mv != null) {
+                    mv.visitMaxs(events[i], events[i + 1]);
+                }
+                i += 2;
+                continue;
+            default: // METHOD_END
+                if (mv != null) {
+                    mv.visitEnd();
+                }
+                continue;
+            }
+            // an annotation visitor has been opened: pushes the current one
+            if (depth == avs.length) {
+                AnnotationVisitor[] newAvs = new AnnotationVisitor[2 * depth];
+                System.arraycopy(avs, 0, newAvs, 0, depth);
+                avs = newAvs;
+            }
+            avs[depth++] = av;
+            av = newAv;
+        }
+    }
+
+    /**
+     * Returns the given label array, or a larger copy of it, after having
+     * created the label of the given number if necessary.
+     */
+    private static Label[] getLabels(Label[] labels, final int label) {
+        if (label >= labels.length) {
+            Label[] newLabels = new Label[Math.max(2 * labels.length,
+                    label + 1)];
+            System.arraycopy(labels, 0, newLabels, 0, labels.length);
+            labels = newLabels;
+        }
+        if (labels[label] == null) {
+            labels[label] = new Label();
+        }
+        return labels;
+    }
+
+    /**
+     * Returns the frame type corresponding to the given recorded value.
+     */
+    private Object getFrameType(final int type, final Label[] labels) {
+        switch (type & 3) {
+        case 0:
+            return new Integer(type >> 2);
+        case 1:
+            return objects[type >>> 2];
+        default:
+            return labels[type >>> 2];
+        }
+    }
+}
@@ -0,0 +1,250 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.commons;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * A lightweight parser for the header of a class, i.e. for its access flags,
+ * name, super class and interfaces. Unlike {@link ClassReader}, this class does
+ * not allocate a string cache for the whole constant pool, nor compute the
+ * maximum string length: the constructor only records the offset of each
+ * constant pool item, and the items are decoded on demand, when they are
+ * dereferenced by the getter methods. This class is intended for tools which
+ * must scan the header of many classes, such as class hierarchy indexes.
+ */
+public class ClassHeaderReader {
+
+    /**
+     * The class to be parsed. <i>The content of this array must not be
+     * modified.</i>
+     */
+    public final byte[] b;
+
+    /**
+     * The start index of each constant pool item in {@link #b b}, plus one.
+     */
+    private final int[] items;
+
+    /**
+     * Start index of the class header information (access, name...) in
+     * {@link #b b}.
+     */
+    public final int header;
+
+    /**
+     * Constructs a new {@link ClassHeaderReader} object.
+     * 
+     * @param b
+     *            the bytecode of the class to be read.
+     */
+    public ClassHeaderReader(final byte[] b) {
+        this(b, 0, b.length);
+    }
+
+    /**
+     * Constructs a new {@link ClassHeaderReader} object.
+     * 
+     * @param b
+     *            the bytecode of the class to be read.
+     * @param off
+     *            the start offset of the class data.
+     * @param len
+     *            the length of the class data.
+     */
+    public ClassHeaderReader(final byte[] b, final int off, final int len) {
+        this.b = b;
+        // checks the class version
+        if (readUnsignedShort(off + 6) > Opcodes.V1_7) {
+            throw new IllegalArgumentException();
+        }
+        // computes the offset of the constant pool items
+        int n = readUnsignedShort(off + 8);
+        int[] items = new int[n];
+        int index = off + 10;
+        for (int i = 1; i < n; ++i) {
+            items[i] = index + 1;
+            switch (b[index]) {
+            case 3: // CONSTANT_Integer
+            case 4: // CONSTANT_Float
+            case 9: // CONSTANT_Fieldref
+            case 10: // CONSTANT_Methodref
+            case 11: // CONSTANT_InterfaceMethodref
+            case 12: // CONSTANT_NameAndType
+            case 18: // CONSTANT_InvokeDynamic
+                index += 5;
+                break;
+            case 5: // CONSTANT_Long
+            case 6: // CONSTANT_Double
+                index += 9;
+                ++i;
+                break;
+            case 1: // CONSTANT_Utf8
+                index += 3 + readUnsignedShort(index + 1);
+                break;
+            case 15: // CONSTANT_MethodHandle
+                index += 4;
+                break;
+            // case 7: CONSTANT_Class
+            // case 8: CONSTANT_String
+            // case 16: CONSTANT_MethodType
+            default:
+                index += 3;
+                break;
+            }
+        }
+        this.items = items;
+        // the class header information starts just after the constant pool
+        header = index;
+    }
+
+    /**
+     * Constructs a new {@link ClassHeaderReader} object.
+     * 
+     * @param is
+     *            an input stream from which to read the class. This stream is
+     *            not closed by this constructor.
+     * @throws IOException
+     *             if a problem occurs during reading.
+     */
+    public ClassHeaderReader(final InputStream is) throws IOException {
+        this(readClass(is));
+    }
+
+    /**
+     * Reads the bytecode of a class.
+     * 
+     * @param is
+     *            an input stream from which to read the class.
+     * @return the bytecode read from the given input stream.
+     * @throws IOException
+     *             if a problem occurs during reading.
+     */
+    private static byte[] readClass(final InputStream is) throws IOException {
+        byte[] b = new byte[Math.max(is.available(), 1024)];
+        int len = 0;
+        int n;
+        while ((n = is.read(b, len, b.length - len)) != -1) {
+            len += n;
+            if (len == b.length) {
+                byte[] c = new byte[2 * len];
+                System.arraycopy(b, 0, c, 0, len);
+                b = c;
+            }
+        }
+        if (len < b.length) {
+            byte[] c = new byte[len];
+            System.arraycopy(b, 0, c, 0, len);
+            b = c;
+        }
+        return b;
+    }
+
+    /**
+     * Returns the class's access flags (see {@link Opcodes}).
+     * 
+     * @return the class access flags.
+     */
+    public int getAccess() {
+        return readUnsignedShort(header);
+    }
+
+    /**
+     * Returns the internal name of the class.
+     * 
+     * @return the internal class name.
+     */
+    public String getClassName() {
+        return readClass(header + 2);
+    }
+
+    /**
+     * Returns the internal of name of the super class.
+     * 
+     * @return the internal name of super class, or <tt>null</tt> for
+     *         {@link Object} class.
+     */
+    public String getSuperName() {
+        return readClass(header + 4);
+    }
+
+    /**
+     * Returns the internal names of the class's interfaces.
+     * 
+     * @return the array of internal names for all implemented interfaces.
+     */
+    public String[] getInterfaces() {
+        int index = header + 6;
+        int n = readUnsignedShort(index);
+        String[] interfaces = new String[n];
+        for (int i = 0; i < n; ++i) {
+            index += 2;
+            interfaces[i] = readClass(index);
+        }
+        return interfaces;
+    }
+
+    /**
+     * Reads an unsigned short value in {@link #b b}.
+     * 
+     * @param index
+     *            the start index of the value to be read in {@link #b b}.
+     * @return the read value.
+     */
+    public int readUnsignedShort(final int index) {
+        byte[] b = this.b;
+        return ((b[index] & 0xFF) << 8) | (b[index + 1] & 0xFF);
+    }
+
+    /**
+     * Reads a class constant pool item in {@link #b b}.
+     * 
+     * @param index
+     *            the start index of an unsigned short value in {@link #b b},
+     *            whose value is the index of a class constant pool item.
+     * @return the String corresponding to the specified class item, or
+     *         <tt>null</tt> if the item index is 0.
+     */
+    public String readClass(final int index) {
+        int item = readUnsignedShort(index);
+        if (item == 0) {
+            return null;
+        }
+        // reads the CONSTANT_Utf8 item designated by
+        // the first two bytes of the CONSTANT_Class item
+        int utf8 = items[readUnsignedShort(items[item])];
+        int len = readUnsignedShort(utf8);
+        return ClassReader.readUTF(b, utf8 + 2, len, new char[len]);
+    }
+}
@@ -0,0 +1,652 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.commons;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An index of the classes of a class path, created with a
+ * {@link ClassIndexBuilder}. This index gives the hierarchy and the members of
+ * the indexed classes, and the classes which reference a given class, field
+ * or method (in their constant pool). It is read directly from its serialized
+ * form, which can be mapped in memory with {@link #load load}. Each query
+ * only reads the parts of the index that it needs, so that its duration does
+ * not depend much on the size of the index. The queries can be performed
+ * concurrently by several threads.
+ * 
+ * <p>
+ * The serialized form contains a header (a magic number, a version number,
+ * and the number of strings, classes, member references, type references and
+ * super types), followed by five tables (the offsets of the strings sorted in
+ * lexicographic order, the offsets of the class records sorted by class name,
+ * the member references sorted by owner, name and descriptor, the type
+ * references sorted by type, and the super types sorted by name), followed by
+ * the strings, the class records, the lists of referencing classes and the
+ * lists of direct sub types. The super types are the super classes and
+ * interfaces of the indexed classes, which are not necessarily indexed
+ * themselves. Strings are designated by their index in
+ * the string table, and classes by their index in the class table. All values
+ * are stored as big endian ints, except the strings which are stored in
+ * modified UTF8 format with an unsigned short length prefix, as in class
+ * files.
+ */
+public class ClassIndex {
+
+    /**
+     * The magic number of serialized indexes.
+     */
+    static final int MAGIC = 0x41534D49;
+
+    /**
+     * The version of the serialized index format.
+     */
+    static final int VERSION = 2;
+
+    /**
+     * The size of the header of serialized indexes.
+     */
+    static final int HEADER_SIZE = 28;
+
+    /**
+     * The serialized index. Only the absolute get methods of this buffer are
+     * used.
+     */
+    private final ByteBuffer buf;
+
+    /**
+     * The number of strings in the index.
+     */
+    private final int stringCount;
+
+    /**
+     * The number of classes in the index.
+     */
+    private final int classCount;
+
+    /**
+     * The number of member references in the index.
+     */
+    private final int memberRefCount;
+
+    /**
+     * The number of type references in the index.
+     */
+    private final int typeRefCount;
+
+    /**
+     * The number of super types in the index.
+     */
+    private final int superTypeCount;
+
+    /**
+     * The offset of the string table.
+     */
+    private final int strings;
+
+    /**
+     * The offset of the class table.
+     */
+    private final int classes;
+
+    /**
+     * The offset of the member reference table. Each entry contains the owner,
+     * name and descriptor of a field or method, and the offset of the list of
+     * classes which reference it.
+     */
+    private final int memberRefs;
+
+    /**
+     * The offset of the type reference table. Each entry contains the internal
+     * name of a type, and the offset of the list of classes which reference
+     * it.
+     */
+    private final int typeRefs;
+
+    /**
+     * The offset of the super type table. Each entry contains the internal
+     * name of a super class or interface, and the offset of the list of
+     * classes which directly extend or implement it.
+     */
+    private final int superTypes;
+
+    /**
+     * Constructs a new {@link ClassIndex}.
+     * 
+     * @param buf
+     *            a buffer containing a serialized index, starting at offset
+     *            0. The content of this buffer must not be modified while this
+     *            index is used.
+     * @throws IllegalArgumentException
+     *             if the given buffer does not contain a serialized index in a
+     *             supported format.
+     */
+    public ClassIndex(final ByteBuffer buf) {
+        if (buf.limit() < HEADER_SIZE || buf.getInt(0) != MAGIC
+                || buf.getInt(4) != VERSION) {
+            throw new IllegalArgumentException();
+        }
+        this.buf = buf;
+        stringCount = buf.getInt(8);
+        classCount = buf.getInt(12);
+        memberRefCount = buf.getInt(16);
+        typeRefCount = buf.getInt(20);
+        superTypeCount = buf.getInt(24);
+        strings = HEADER_SIZE;
+        classes = strings + 4 * stringCount;
+        memberRefs = classes + 4 * classCount;
+        typeRefs = memberRefs + 16 * memberRefCount;
+        superTypes = typeRefs + 8 * typeRefCount;
+    }
+
+    /**
+     * Maps the given index file in memory and returns the corresponding index.
+     * 
+     * @param file
+     *            a file created with {@link ClassIndexBuilder#write(File)}.
+     * @return the index contained in the given file.
+     * @throws IOException
+     *             if the file cannot be mapped.
+     */
+    public static ClassIndex load(final File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel fc = raf.getChannel();
+            return new ClassIndex(fc.map(FileChannel.MapMode.READ_ONLY, 0, fc
+                    .size()));
+        } finally {
+            // the mapping remains valid after the channel is closed
+            raf.close();
+        }
+    }
+
+    /**
+     * Returns the number of classes in this index.
+     * 
+     * @return the number of classes in this index.
+     */
+    public int getClassCount() {
+        return classCount;
+    }
+
+    /**
+     * Returns the name of a class of this index.
+     * 
+     * @param index
+     *            the index of a class, between 0 (inclusive) and
+     *            {@link #getClassCount getClassCount} (exclusive). The classes
+     *            are sorted by name.
+     * @return the internal name of this class.
+     */
+    public String getClassName(final int index) {
+        return getString(buf.getInt(getClass(index)));
+    }
+
+    /**
+     * Returns <tt>true</tt> if the given class is in this index.
+     * 
+     * @param className
+     *            the internal name of a class.
+     * @return <tt>true</tt> if the given class is in this index.
+     */
+    public boolean contains(final String className) {
+        return findClass(className) >= 0;
+    }
+
+    /**
+     * Returns the access flags of the given class.
+     * 
+     * @param className
+     *            the internal name of a class.
+     * @return the access flags of the given class, or -1 if it is not in this
+     *         index.
+     */
+    public int getAccess(final String className) {
+        int c = findClass(className);
+        return c < 0 ? -1 : buf.getInt(getClass(c) + 4);
+    }
+
+    /**
+     * Returns the super class of the given class.
+     * 
+     * @param className
+     *            the internal name of a class.
+     * @return the internal name of the super class of the given class, or
+     *         <tt>null</tt> if it is not in this index, or if it is the
+     *         {@link Object} class.
+     */
+    public String getSuperName(final String className) {
+        int c = findClass(className);
+        return c < 0 ? null : getString(buf.getInt(getClass(c) + 8));
+    }
+
+    /**
+     * Returns the interfaces of the given class.
+     * 
+     * @param className
+     *            the internal name of a class.
+     * @return the internal names of the interfaces directly implemented by the
+     *         given class, or <tt>null</tt> if it is not in this index.
+     */
+    public String[] getInterfaces(final String className) {
+        int c = findClass(className);
+        if (c < 0) {
+            return null;
+        }
+        int u = getClass(c) + 12;
+        String[] interfaces = new String[buf.getInt(u)];
+        for (int i = 0; i < interfaces.length; ++i) {
+            interfaces[i] = getString(buf.getInt(u + 4 + 4 * i));
+        }
+        return interfaces;
+    }
+
+    /**
+     * Returns the fields of the given class.
+     * 
+     * @param className
+     *            the internal name of a class.
+     * @return the fields declared by the given class, or an empty list if it
+     *         is not in this index.
+     */
+    public List<Member> getFields(final String className) {
+        int c = findClass(className);
+        return c < 0 ? Collections.<Member> emptyList() : getMembers(
+                className, getFields(c));
+    }
+
+    /**
+     * Returns the methods of the given class.
+     * 
+     * @param className
+     *            the internal name of a class.
+     * @return the methods declared by the given class, or an empty list if it
+     *         is not in this index.
+     */
+    public List<Member> getMethods(final String className) {
+        int c = findClass(className);
+        return c < 0 ? Collections.<Member> emptyList() : getMembers(
+                className, getMethods(c));
+    }
+
+    /**
+     * Returns the direct sub types of the given class.
+     * 
+     * @param className
+     *            the internal name of a class or interface, which does not
+     *            need to be in this index.
+     * @return the internal names of the classes of this index which directly
+     *         extend or implement the given class or interface.
+     */
+    public List<String> getSubclasses(final String className) {
+        return getClassNames(superTypes, superTypeCount, className);
+    }
+
+    /**
+     * Returns the classes which reference the given field or method.
+     * 
+     * @param owner
+     *            the internal name of the class declaring the field or method,
+     *            as it appears in the field or method references (i.e. this
+     *            may also be a sub class of the declaring class).
+     * @param name
+     *            the field or method name.
+     * @param desc
+     *            the field or method descriptor.
+     * @return the internal names of the classes of this index which contain a
+     *         field or method reference to the given field or method.
+     */
+    public List<String> getReferencingClasses(final String owner,
+            final String name, final String desc) {
+        int o = findString(owner);
+        int n = findString(name);
+        int d = findString(desc);
+        if (o < 0 || n < 0 || d < 0) {
+            return Collections.<String> emptyList();
+        }
+        int low = 0;
+        int high = memberRefCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int u = memberRefs + 16 * mid;
+            int cmp = compare(buf.getInt(u), o);
+            if (cmp == 0) {
+                cmp = compare(buf.getInt(u + 4), n);
+                if (cmp == 0) {
+                    cmp = compare(buf.getInt(u + 8), d);
+                }
+            }
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return getClassNames(buf.getInt(u + 12));
+            }
+        }
+        return Collections.<String> emptyList();
+    }
+
+    /**
+     * Returns the classes which reference the given type.
+     * 
+     * @param type
+     *            the internal name of a class, or the descriptor of an array
+     *            type.
+     * @return the internal names of the classes of this index which contain a
+     *         class constant pool item designating the given type.
+     */
+    public List<String> getReferencingClasses(final String type) {
+        return getClassNames(typeRefs, typeRefCount, type);
+    }
+
+    // ------------------------------------------------------------------------
+    // Utility methods
+    // ------------------------------------------------------------------------
+
+    private static int compare(final int i, final int j) {
+        return i < j ? -1 : (i == j ? 0 : 1);
+    }
+
+    /**
+     * Returns the names of the classes associated with a type in a table
+     * sorted by type.
+     * 
+     * @param table
+     *            the offset of a table whose entries contain the index of a
+     *            type name in the string table, and the offset of a list of
+     *            classes.
+     * @param count
+     *            the number of entries of this table.
+     * @param type
+     *            the internal name of a type.
+     * @return the internal names of the classes associated with this type, or
+     *         an empty list if this type is not in the table.
+     */
+    private List<String> getClassNames(final int table, final int count,
+            final String type) {
+        int t = findString(type);
+        if (t < 0) {
+            return Collections.<String> emptyList();
+        }
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int u = table + 8 * mid;
+            int cmp = compare(buf.getInt(u), t);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return getClassNames(buf.getInt(u + 4));
+            }
+        }
+        return Collections.<String> emptyList();
+    }
+
+    /**
+     * Returns the offset of a class record.
+     */
+    private int getClass(final int index) {
+        if (index < 0 || index >= classCount) {
+            throw new IndexOutOfBoundsException();
+        }
+        return buf.getInt(classes + 4 * index);
+    }
+
+    /**
+     * Returns the offset of the field count of a class record.
+     */
+    private int getFields(final int index) {
+        int u = getClass(index) + 12;
+        return u + 4 + 4 * buf.getInt(u);
+    }
+
+    /**
+     * Returns the offset of the method count of a class record.
+     */
+    private int getMethods(final int index) {
+        int u = getFields(index);
+        return u + 4 + 12 * buf.getInt(u);
+    }
+
+    /**
+     * Returns the members stored at the given offset.
+     * 
+     * @param owner
+     *            the internal name of the class declaring the members.
+     * @param u
+     *            the offset of the member count, followed by the access,
+     *            name and descriptor of each member.
+     * @return the members stored at the given offset.
+     */
+    private List<Member> getMembers(final String owner, int u) {
+        int n = buf.getInt(u);
+        List<Member> members = new ArrayList<Member>(n);
+        for (int i = 0; i < n; ++i) {
+            u += 12;
+            members.add(new Member(buf.getInt(u - 8), owner, getString(buf
+                    .getInt(u - 4)), getString(buf.getInt(u))));
+        }
+        return members;
+    }
+
+    /**
+     * Returns the names of the classes stored at the given offset.
+     * 
+     * @param u
+     *            the offset of a class count, followed by class indexes.
+     * @return the internal names of these classes.
+     */
+    private List<String> getClassNames(final int u) {
+        int n = buf.getInt(u);
+        List<String> names = new ArrayList<String>(n);
+        for (int i = 0; i < n; ++i) {
+            names.add(getClassName(buf.getInt(u + 4 + 4 * i)));
+        }
+        return names;
+    }
+
+    /**
+     * Returns the index of the given class in the class table.
+     * 
+     * @param className
+     *            the internal name of a class.
+     * @return the index of this class in the class table, or -1 if it is not
+     *         in this index.
+     */
+    private int findClass(final String className) {
+        int s = findString(className);
+        if (s < 0) {
+            return -1;
+        }
+        int low = 0;
+        int high = classCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compare(buf.getInt(buf.getInt(classes + 4 * mid)), s);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the index of the given string in the string table.
+     * 
+     * @param s
+     *            a string.
+     * @return the index of this string in the string table, or -1 if it is
+     *         not in this index.
+     */
+    private int findString(final String s) {
+        int low = 0;
+        int high = stringCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = getString(mid).compareTo(s);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns a string of the string table.
+     * 
+     * @param index
+     *            the index of a string in the string table, or -1.
+     * @return the corresponding string, or <tt>null</tt> if index is -1.
+     */
+    private String getString(final int index) {
+        if (index < 0) {
+            return null;
+        }
+        int u = buf.getInt(strings + 4 * index);
+        int endIndex = u + 2 + (buf.getShort(u) & 0xFFFF);
+        char[] chars = new char[endIndex - u - 2];
+        int strLen = 0;
+        int st = 0;
+        char cc = 0;
+        for (u += 2; u < endIndex; ++u) {
+            int c = buf.get(u);
+            switch (st) {
+            case 0:
+                c = c & 0xFF;
+                if (c < 0x80) { // 0xxxxxxx
+                    chars[strLen++] = (char) c;
+                } else if (c < 0xE0 && c > 0xBF) { // 110x xxxx 10xx xxxx
+                    cc = (char) (c & 0x1F);
+                    st = 1;
+                } else { // 1110 xxxx 10xx xxxx 10xx xxxx
+                    cc = (char) (c & 0x0F);
+                    st = 2;
+                }
+                break;
+            case 1: // byte 2 of 2-byte char or byte 3 of 3-byte char
+                chars[strLen++] = (char) ((cc << 6) | (c & 0x3F));
+                st = 0;
+                break;
+            default: // byte 2 of 3-byte char
+                cc = (char) ((cc << 6) | (c & 0x3F));
+                st = 1;
+                break;
+            }
+        }
+        return new String(chars, 0, strLen);
+    }
+
+    /**
+     * A field or method, or a field or method reference.
+     */
+    public static class Member {
+
+        /**
+         * The access flags of the field or method. This is 0 for references.
+         */
+        public final int access;
+
+        /**
+         * The internal name of the class declaring the field or method, or of
+         * the class used in the reference.
+         */
+        public final String owner;
+
+        /**
+         * The name of the field or method.
+         */
+        public final String name;
+
+        /**
+         * The descriptor of the field or method.
+         */
+        public final String desc;
+
+        /**
+         * Constructs a new {@link Member}.
+         * 
+         * @param access
+         *            the access flags of the field or method.
+         * @param owner
+         *            the internal name of the class declaring the field or
+         *            method.
+         * @param name
+         *            the name of the field or method.
+         * @param desc
+         *            the descriptor of the field or method.
+         */
+        public Member(final int access, final String owner, final String name,
+                final String desc) {
+            this.access = access;
+            this.owner = owner;
+            this.name = name;
+            this.desc = desc;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (!(o instanceof Member)) {
+                return false;
+            }
+            Member m = (Member) o;
+            return access == m.access && owner.equals(m.owner)
+                    && name.equals(m.name) && desc.equals(m.desc);
+        }
+
+        @Override
+        public int hashCode() {
+            return access ^ owner.hashCode() ^ name.hashCode()
+                    ^ desc.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return owner + '.' + name + desc;
+        }
+    }
+}
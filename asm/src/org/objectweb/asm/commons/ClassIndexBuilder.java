@@ -0,0 +1,601 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.commons;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.commons.ClassIndex.Member;
+
+/**
+ * Builds a {@link ClassIndex}. The classes to be indexed are parsed in
+ * parallel, in a pool of worker threads, each class being parsed only once:
+ * its header, fields and methods are read with a {@link ClassReader} skipping
+ * the method bodies, and its references to other classes, fields and methods
+ * are read from its constant pool. If several classes with the same name are
+ * added, only the first one is indexed, as in a class path.
+ */
+public class ClassIndexBuilder {
+
+    /**
+     * The number of worker threads used to parse classes.
+     */
+    private final int threads;
+
+    /**
+     * The information extracted from the classes added so far, in the order
+     * in which they were added.
+     */
+    private final List<Entry> entries;
+
+    /**
+     * Constructs a new {@link ClassIndexBuilder} using one worker thread per
+     * available processor.
+     */
+    public ClassIndexBuilder() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a new {@link ClassIndexBuilder}.
+     * 
+     * @param threads
+     *            the number of worker threads used to parse classes.
+     */
+    public ClassIndexBuilder(final int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.threads = threads;
+        this.entries = new ArrayList<Entry>();
+    }
+
+    /**
+     * Adds a class to the index.
+     * 
+     * @param b
+     *            the bytecode of the class to be added.
+     */
+    public void add(final byte[] b) {
+        Entry e = parse(b);
+        synchronized (this) {
+            entries.add(e);
+        }
+    }
+
+    /**
+     * Adds the classes of a jar file or of a directory to the index. The
+     * classes are parsed in parallel, but are added in the order in which
+     * they appear in the jar file, or in the lexicographic order of the file
+     * names for directories.
+     * 
+     * @param file
+     *            a jar or zip file, a directory, or a class file.
+     * @throws IOException
+     *             if a problem occurs during reading, or if a class cannot be
+     *             parsed.
+     */
+    public void add(final File file) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            LinkedList<Future<Entry>> pending = new LinkedList<Future<Entry>>();
+            add(file, executor, pending);
+            while (!pending.isEmpty()) {
+                add(pending.removeFirst());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Builds an in memory index containing the classes added so far.
+     * 
+     * @return an index containing the classes added so far.
+     */
+    public ClassIndex build() {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try {
+            write(bos);
+        } catch (IOException e) {
+            // cannot happen with a ByteArrayOutputStream
+            throw new RuntimeException(e);
+        }
+        return new ClassIndex(ByteBuffer.wrap(bos.toByteArray()));
+    }
+
+    /**
+     * Writes an index containing the classes added so far in the given file.
+     * This file can then be loaded with {@link ClassIndex#load load}.
+     * 
+     * @param file
+     *            the file where the index must be written.
+     * @throws IOException
+     *             if a problem occurs during writing.
+     */
+    public void write(final File file) throws IOException {
+        OutputStream os = new BufferedOutputStream(new FileOutputStream(file));
+        try {
+            write(os);
+        } finally {
+            os.close();
+        }
+    }
+
+    /**
+     * Writes an index containing the classes added so far in the given
+     * stream. See {@link ClassIndex} for a description of the format.
+     * 
+     * @param os
+     *            the stream where the index must be written. This stream is
+     *            not closed by this method.
+     * @throws IOException
+     *             if a problem occurs during writing.
+     */
+    public void write(final OutputStream os) throws IOException {
+        // keeps the first class of each name, and sorts the classes by name
+        Map<String, Entry> map = new LinkedHashMap<String, Entry>();
+        synchronized (this) {
+            for (int i = 0; i < entries.size(); ++i) {
+                Entry e = entries.get(i);
+                if (!map.containsKey(e.name)) {
+                    map.put(e.name, e);
+                }
+            }
+        }
+        Entry[] classes = map.values().toArray(new Entry[map.size()]);
+        Arrays.sort(classes, new Comparator<Entry>() {
+            public int compare(final Entry e1, final Entry e2) {
+                return e1.name.compareTo(e2.name);
+            }
+        });
+
+        // computes the string table
+        TreeSet<String> stringSet = new TreeSet<String>();
+        for (int i = 0; i < classes.length; ++i) {
+            Entry e = classes[i];
+            stringSet.add(e.name);
+            if (e.superName != null) {
+                stringSet.add(e.superName);
+            }
+            stringSet.addAll(Arrays.asList(e.interfaces));
+            addStrings(e.fields, stringSet);
+            addStrings(e.methods, stringSet);
+            addStrings(e.memberRefs, stringSet);
+            stringSet.addAll(e.typeRefs);
+        }
+        String[] strings = stringSet.toArray(new String[stringSet.size()]);
+        Map<String, Integer> ids = new HashMap<String, Integer>();
+        for (int i = 0; i < strings.length; ++i) {
+            ids.put(strings[i], new Integer(i));
+        }
+
+        // computes the sub classes and the referencing classes (since the
+        // classes are visited in order, these lists are sorted)
+        Map<String, List<Integer>> subclasses;
+        subclasses = new HashMap<String, List<Integer>>();
+        Map<Member, List<Integer>> memberRefs;
+        memberRefs = new HashMap<Member, List<Integer>>();
+        Map<String, List<Integer>> typeRefs;
+        typeRefs = new HashMap<String, List<Integer>>();
+        for (int i = 0; i < classes.length; ++i) {
+            Entry e = classes[i];
+            Integer id = new Integer(i);
+            if (e.superName != null) {
+                addClass(e.superName, id, subclasses);
+            }
+            for (int j = 0; j < e.interfaces.length; ++j) {
+                addClass(e.interfaces[j], id, subclasses);
+            }
+            for (Member m : e.memberRefs) {
+                List<Integer> l = memberRefs.get(m);
+                if (l == null) {
+                    l = new ArrayList<Integer>();
+                    memberRefs.put(m, l);
+                }
+                l.add(id);
+            }
+            for (String t : e.typeRefs) {
+                addClass(t, id, typeRefs);
+            }
+        }
+        Member[] members = memberRefs.keySet().toArray(
+                new Member[memberRefs.size()]);
+        Arrays.sort(members, new Comparator<Member>() {
+            public int compare(final Member m1, final Member m2) {
+                int cmp = m1.owner.compareTo(m2.owner);
+                if (cmp == 0) {
+                    cmp = m1.name.compareTo(m2.name);
+                    if (cmp == 0) {
+                        cmp = m1.desc.compareTo(m2.desc);
+                    }
+                }
+                return cmp;
+            }
+        });
+        String[] types = typeRefs.keySet().toArray(new String[typeRefs.size()]);
+        Arrays.sort(types);
+        String[] superTypes = subclasses.keySet().toArray(
+                new String[subclasses.size()]);
+        Arrays.sort(superTypes);
+
+        // writes the strings, classes and lists, computing their offsets
+        int dataStart = ClassIndex.HEADER_SIZE + 4 * strings.length + 4
+                * classes.length + 16 * members.length + 8 * types.length + 8
+                * superTypes.length;
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(bos);
+        int[] stringOffsets = new int[strings.length];
+        for (int i = 0; i < strings.length; ++i) {
+            stringOffsets[i] = dataStart + data.size();
+            data.writeUTF(strings[i]);
+        }
+        int[] classOffsets = new int[classes.length];
+        for (int i = 0; i < classes.length; ++i) {
+            Entry e = classes[i];
+            classOffsets[i] = dataStart + data.size();
+            data.writeInt(getId(e.name, ids));
+            data.writeInt(e.access);
+            data.writeInt(getId(e.superName, ids));
+            data.writeInt(e.interfaces.length);
+            for (int j = 0; j < e.interfaces.length; ++j) {
+                data.writeInt(getId(e.interfaces[j], ids));
+            }
+            writeMembers(e.fields, ids, data);
+            writeMembers(e.methods, ids, data);
+        }
+        int[] memberOffsets = new int[members.length];
+        for (int i = 0; i < members.length; ++i) {
+            memberOffsets[i] = dataStart + data.size();
+            writeList(memberRefs.get(members[i]), data);
+        }
+        int[] typeOffsets = new int[types.length];
+        for (int i = 0; i < types.length; ++i) {
+            typeOffsets[i] = dataStart + data.size();
+            writeList(typeRefs.get(types[i]), data);
+        }
+        int[] superTypeOffsets = new int[superTypes.length];
+        for (int i = 0; i < superTypes.length; ++i) {
+            superTypeOffsets[i] = dataStart + data.size();
+            writeList(subclasses.get(superTypes[i]), data);
+        }
+        data.flush();
+
+        // writes the header, the tables and the data
+        DataOutputStream out = new DataOutputStream(os);
+        out.writeInt(ClassIndex.MAGIC);
+        out.writeInt(ClassIndex.VERSION);
+        out.writeInt(strings.length);
+        out.writeInt(classes.length);
+        out.writeInt(members.length);
+        out.writeInt(types.length);
+        out.writeInt(superTypes.length);
+        for (int i = 0; i < strings.length; ++i) {
+            out.writeInt(stringOffsets[i]);
+        }
+        for (int i = 0; i < classes.length; ++i) {
+            out.writeInt(classOffsets[i]);
+        }
+        for (int i = 0; i < members.length; ++i) {
+            Member m = members[i];
+            out.writeInt(getId(m.owner, ids));
+            out.writeInt(getId(m.name, ids));
+            out.writeInt(getId(m.desc, ids));
+            out.writeInt(memberOffsets[i]);
+        }
+        for (int i = 0; i < types.length; ++i) {
+            out.writeInt(getId(types[i], ids));
+            out.writeInt(typeOffsets[i]);
+        }
+        for (int i = 0; i < superTypes.length; ++i) {
+            out.writeInt(getId(superTypes[i], ids));
+            out.writeInt(superTypeOffsets[i]);
+        }
+        bos.writeTo(out);
+        out.flush();
+    }
+
+    // ------------------------------------------------------------------------
+    // Parsing
+    // ------------------------------------------------------------------------
+
+    /**
+     * Schedules the parsing of the classes of a jar file, of a directory or
+     * of a class file.
+     */
+    private void add(final File file, final ExecutorService executor,
+            final LinkedList<Future<Entry>> pending) throws IOException {
+        String name = file.getName();
+        if (file.isDirectory()) {
+            File[] files = file.listFiles();
+            if (files == null) {
+                throw new IOException("Cannot list directory " + file);
+            }
+            Arrays.sort(files);
+            for (int i = 0; i < files.length; ++i) {
+                add(files[i], executor, pending);
+            }
+        } else if (name.endsWith(".class")) {
+            InputStream is = new FileInputStream(file);
+            try {
+                submit(name, is, executor, pending);
+            } finally {
+                is.close();
+            }
+        } else if (name.endsWith(".jar") || name.endsWith(".zip")) {
+            ZipFile zf = new ZipFile(file);
+            try {
+                Enumeration<? extends ZipEntry> e = zf.entries();
+                while (e.hasMoreElements()) {
+                    ZipEntry ze = e.nextElement();
+                    if (ze.getName().endsWith(".class")) {
+                        InputStream is = zf.getInputStream(ze);
+                        try {
+                            submit(ze.getName(), is, executor, pending);
+                        } finally {
+                            is.close();
+                        }
+                    }
+                }
+            } finally {
+                zf.close();
+            }
+        }
+    }
+
+    /**
+     * Schedules the parsing of a class file, after having waited for the
+     * oldest pending classes if there are too many of them (so that the
+     * memory used does not depend on the size of the input).
+     */
+    private void submit(final String name, final InputStream is,
+            final ExecutorService executor,
+            final LinkedList<Future<Entry>> pending) throws IOException {
+        final byte[] b = readClass(is);
+        while (pending.size() >= 4 * threads) {
+            add(pending.removeFirst());
+        }
+        pending.addLast(executor.submit(new Callable<Entry>() {
+            public Entry call() throws Exception {
+                try {
+                    return parse(b);
+                } catch (RuntimeException e) {
+                    IOException ioe = new IOException("Cannot parse " + name);
+                    ioe.initCause(e);
+                    throw ioe;
+                }
+            }
+        }));
+    }
+
+    /**
+     * Waits for the parsing of a class, and adds the result to the entries.
+     */
+    private void add(final Future<Entry> future) throws IOException {
+        Entry e;
+        try {
+            e = future.get();
+        } catch (InterruptedException ie) {
+            IOException ioe = new IOException("Interrupted while indexing");
+            ioe.initCause(ie);
+            throw ioe;
+        } catch (ExecutionException ee) {
+            Throwable t = ee.getCause();
+            if (t instanceof IOException) {
+                throw (IOException) t;
+            }
+            if (t instanceof Error) {
+                throw (Error) t;
+            }
+            IOException ioe = new IOException("Cannot index class");
+            ioe.initCause(t);
+            throw ioe;
+        }
+        synchronized (this) {
+            entries.add(e);
+        }
+    }
+
+    private static byte[] readClass(final InputStream is) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        int n;
+        while ((n = is.read(buf, 0, buf.length)) != -1) {
+            bos.write(buf, 0, n);
+        }
+        return bos.toByteArray();
+    }
+
+    /**
+     * Extracts the information to be indexed from a class.
+     * 
+     * @param b
+     *            the bytecode of a class.
+     * @return the information to be indexed for this class.
+     */
+    static Entry parse(final byte[] b) {
+        final Entry e = new Entry();
+        ClassReader cr = new ClassReader(b);
+        cr.accept(new ClassVisitor(Opcodes.ASM4) {
+            @Override
+            public void visit(final int version, final int access,
+                    final String name, final String signature,
+                    final String superName, final String[] interfaces) {
+                e.name = name;
+                e.access = access;
+                e.superName = superName;
+                e.interfaces = interfaces == null ? new String[0] : interfaces;
+            }
+
+            @Override
+            public FieldVisitor visitField(final int access, final String name,
+                    final String desc, final String signature,
+                    final Object value) {
+                e.fields.add(new Member(access, e.name, name, desc));
+                return null;
+            }
+
+            @Override
+            public MethodVisitor visitMethod(final int access,
+                    final String name, final String desc,
+                    final String signature, final String[] exceptions) {
+                e.methods.add(new Member(access, e.name, name, desc));
+                return null;
+            }
+        }, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG
+                | ClassReader.SKIP_FRAMES);
+
+        char[] c = new char[cr.getMaxStringLength()];
+        for (int i = 1; i < cr.getItemCount(); ++i) {
+            int index = cr.getItem(i);
+            switch (cr.readByte(index - 1)) {
+            case 7: // CLASS
+                e.typeRefs.add(cr.readUTF8(index, c));
+                break;
+            case 9: // FIELD
+            case 10: // METH
+            case 11: { // IMETH
+                String owner = cr.readClass(index, c);
+                int nameType = cr.getItem(cr.readUnsignedShort(index + 2));
+                e.memberRefs.add(new Member(0, owner, cr.readUTF8(nameType,
+                        c), cr.readUTF8(nameType + 2, c)));
+                break;
+            }
+            case 5: // LONG
+            case 6: // DOUBLE
+                ++i;
+                break;
+            }
+        }
+        e.typeRefs.remove(e.name);
+        return e;
+    }
+
+    // ------------------------------------------------------------------------
+    // Utility methods
+    // ------------------------------------------------------------------------
+
+    private static void addStrings(final Iterable<Member> members,
+            final Set<String> strings) {
+        for (Member m : members) {
+            strings.add(m.owner);
+            strings.add(m.name);
+            strings.add(m.desc);
+        }
+    }
+
+    private static void addClass(final String type, final Integer id,
+            final Map<String, List<Integer>> classes) {
+        List<Integer> l = classes.get(type);
+        if (l == null) {
+            l = new ArrayList<Integer>();
+            classes.put(type, l);
+        }
+        l.add(id);
+    }
+
+    private static int getId(final String s, final Map<String, Integer> ids) {
+        return s == null ? -1 : ids.get(s).intValue();
+    }
+
+    private static void writeMembers(final List<Member> members,
+            final Map<String, Integer> ids, final DataOutputStream data)
+            throws IOException {
+        data.writeInt(members.size());
+        for (int i = 0; i < members.size(); ++i) {
+            Member m = members.get(i);
+            data.writeInt(m.access);
+            data.writeInt(getId(m.name, ids));
+            data.writeInt(getId(m.desc, ids));
+        }
+    }
+
+    private static void writeList(final List<Integer> list,
+            final DataOutputStream data) throws IOException {
+        data.writeInt(list.size());
+        for (int i = 0; i < list.size(); ++i) {
+            data.writeInt(list.get(i).intValue());
+        }
+    }
+
+    /**
+     * The information to be indexed for a class.
+     */
+    static class Entry {
+
+        String name;
+
+        int access;
+
+        String superName;
+
+        String[] interfaces;
+
+        final List<Member> fields = new ArrayList<Member>();
+
+        final List<Member> methods = new ArrayList<Member>();
+
+        final Set<Member> memberRefs = new LinkedHashSet<Member>();
+
+        final Set<String> typeRefs = new LinkedHashSet<String>();
+    }
+}
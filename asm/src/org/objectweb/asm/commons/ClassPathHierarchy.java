@@ -0,0 +1,240 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.commons;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.objectweb.asm.ClassHierarchy;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * A {@link ClassHierarchy} that reads the super class and interfaces of
+ * classes directly from their class files, without loading them. The class
+ * files are searched in a list of jar files and directories, and then, if a
+ * class loader is specified, in the resources of this class loader. The
+ * results are cached in a concurrent map, so that an instance of this class
+ * can be shared between many {@link org.objectweb.asm.ClassWriter} instances
+ * used concurrently.
+ */
+public class ClassPathHierarchy extends ClassHierarchy {
+
+    /**
+     * The jar files (as {@link ZipFile} objects) and directories (as
+     * {@link File} objects) where class files are searched.
+     */
+    private final Object[] path;
+
+    /**
+     * The class loader whose resources are searched for class files that are
+     * not found in {@link #path}, or <tt>null</tt>.
+     */
+    private final ClassLoader loader;
+
+    /**
+     * The classes whose hierarchy information has already been read, indexed
+     * by their internal name.
+     */
+    private final ConcurrentHashMap<String, ClassInfo> classes;
+
+    /**
+     * Constructs a new {@link ClassPathHierarchy} which searches class files
+     * in the resources of the given class loader. Note that getting a resource
+     * does not load any class.
+     * 
+     * @param loader
+     *            the class loader used to find class files.
+     */
+    public ClassPathHierarchy(final ClassLoader loader) {
+        this.path = new Object[0];
+        this.loader = loader;
+        this.classes = new ConcurrentHashMap<String, ClassInfo>();
+    }
+
+    /**
+     * Constructs a new {@link ClassPathHierarchy}.
+     * 
+     * @param path
+     *            the jar files and directories where class files must be
+     *            searched, in this order.
+     * @param loader
+     *            the class loader whose resources are searched for class files
+     *            that are not found in <tt>path</tt>, or <tt>null</tt>. This
+     *            is typically used to find the JDK classes.
+     * @throws IOException
+     *             if a jar file cannot be opened.
+     */
+    public ClassPathHierarchy(final File[] path, final ClassLoader loader)
+            throws IOException {
+        this.path = new Object[path.length];
+        for (int i = 0; i < path.length; ++i) {
+            if (path[i].isDirectory()) {
+                this.path[i] = path[i];
+            } else {
+                this.path[i] = new ZipFile(path[i]);
+            }
+        }
+        this.loader = loader;
+        this.classes = new ConcurrentHashMap<String, ClassInfo>();
+    }
+
+    /**
+     * Adds the given class to this class hierarchy. This can be used for
+     * classes that are not in the class path, such as generated classes.
+     * 
+     * @param cr
+     *            a class reader containing the class to be added.
+     */
+    public void addClass(final ClassReader cr) {
+        classes.put(cr.getClassName(), new ClassInfo(cr.getAccess(), cr
+                .getSuperName(), cr.getInterfaces()));
+    }
+
+    /**
+     * Closes the jar files of this class hierarchy.
+     * 
+     * @throws IOException
+     *             if a jar file cannot be closed.
+     */
+    public void close() throws IOException {
+        for (int i = 0; i < path.length; ++i) {
+            if (path[i] instanceof ZipFile) {
+                ((ZipFile) path[i]).close();
+            }
+        }
+    }
+
+    @Override
+    public String getSuperClass(final String type) {
+        return getClassInfo(type).superName;
+    }
+
+    @Override
+    public String[] getInterfaces(final String type) {
+        return getClassInfo(type).interfaces;
+    }
+
+    @Override
+    public boolean isInterface(final String type) {
+        return (getClassInfo(type).access & Opcodes.ACC_INTERFACE) != 0;
+    }
+
+    /**
+     * Returns the hierarchy information of the given class, reading its class
+     * file if necessary.
+     */
+    private ClassInfo getClassInfo(final String type) {
+        ClassInfo info = classes.get(type);
+        if (info == null) {
+            InputStream is = null;
+            try {
+                is = getClassFile(type);
+                if (is == null) {
+                    throw new RuntimeException("Class not found: " + type);
+                }
+                ClassHeaderReader hr = new ClassHeaderReader(is);
+                info = new ClassInfo(hr.getAccess(), hr.getSuperName(), hr
+                        .getInterfaces());
+            } catch (IOException e) {
+                throw new RuntimeException(e.toString());
+            } finally {
+                if (is != null) {
+                    try {
+                        is.close();
+                    } catch (IOException e) {
+                        // ignored
+                    }
+                }
+            }
+            ClassInfo previous = classes.putIfAbsent(type, info);
+            if (previous != null) {
+                info = previous;
+            }
+        }
+        return info;
+    }
+
+    /**
+     * Returns the content of the class file of the given class.
+     * 
+     * @param type
+     *            the internal name of a class.
+     * @return the content of the class file of the given class, or
+     *         <tt>null</tt> if it cannot be found.
+     * @throws IOException
+     *             if the class file cannot be opened.
+     */
+    protected InputStream getClassFile(final String type) throws IOException {
+        String name = type + ".class";
+        for (int i = 0; i < path.length; ++i) {
+            if (path[i] instanceof ZipFile) {
+                ZipFile zf = (ZipFile) path[i];
+                ZipEntry ze = zf.getEntry(name);
+                if (ze != null) {
+                    return zf.getInputStream(ze);
+                }
+            } else {
+                File f = new File((File) path[i], name);
+                if (f.isFile()) {
+                    return new FileInputStream(f);
+                }
+            }
+        }
+        if (loader != null) {
+            return loader.getResourceAsStream(name);
+        }
+        return null;
+    }
+
+    /**
+     * The hierarchy information of a class.
+     */
+    private static class ClassInfo {
+
+        final int access;
+
+        final String superName;
+
+        final String[] interfaces;
+
+        ClassInfo(final int access, final String superName,
+                final String[] interfaces) {
+            this.access = access;
+            this.superName = superName;
+            this.interfaces = interfaces;
+        }
+    }
+}
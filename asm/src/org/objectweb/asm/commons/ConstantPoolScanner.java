@@ -0,0 +1,562 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.commons;
+
+import java.util.BitSet;
+
+import org.objectweb.asm.ClassReader;
+
+/**
+ * Finds the references to some classes, fields or methods in the constant
+ * pool of classes, without visiting them. This can be used to quickly find
+ * the classes which must be transformed, among many classes, before parsing
+ * them completely.
+ * 
+ * <p>
+ * The patterns to be searched are added with {@link #addClass addClass},
+ * {@link #addField addField} and {@link #addMethod addMethod}. They are
+ * compiled into a hash table of modified UTF8 strings, which is used to find
+ * the UTF8 constant pool items of a class which are used in the patterns,
+ * without decoding these items. Only the class, field and method constant
+ * pool items which use these UTF8 items are then checked against the
+ * patterns. In particular the other items are not checked at all if no UTF8
+ * item is used in the patterns, which is the most frequent case. Once all the
+ * patterns have been added, {@link #scan scan} and {@link #matches matches}
+ * can be called concurrently by several threads.
+ */
+public class ConstantPoolScanner {
+
+    /**
+     * The kind of patterns designating classes.
+     */
+    private static final int CLASS = 7;
+
+    /**
+     * The kind of patterns designating fields.
+     */
+    private static final int FIELD = 9;
+
+    /**
+     * The kind of patterns designating methods.
+     */
+    private static final int METHOD = 10;
+
+    /**
+     * The strings used in the patterns, in modified UTF8 format (without
+     * length prefix), in an open addressing hash table. Unused slots are
+     * <tt>null</tt>.
+     */
+    private byte[][] strings;
+
+    /**
+     * The identifiers of the strings in {@link #strings}.
+     */
+    private int[] stringIds;
+
+    /**
+     * The number of distinct strings used in the patterns.
+     */
+    private int stringCount;
+
+    /**
+     * The patterns. Each pattern is stored as three ints: its kind (CLASS,
+     * FIELD or METHOD), the identifier of its name (or -1 for any name), and
+     * the identifier of its descriptor (or -1 for any descriptor).
+     */
+    private int[] patterns;
+
+    /**
+     * The number of patterns.
+     */
+    private int patternCount;
+
+    /**
+     * The owner prefix of each pattern, or <tt>null</tt> for exact owners.
+     */
+    private byte[][] prefixes;
+
+    /**
+     * The indexes of the patterns whose owner is the string of identifier i,
+     * for each string identifier i. May contain <tt>null</tt> elements.
+     */
+    private int[][] patternsByOwner;
+
+    /**
+     * The indexes of the patterns whose owner is a prefix.
+     */
+    private int[] prefixPatterns;
+
+    /**
+     * Constructs a new {@link ConstantPoolScanner} without any pattern.
+     */
+    public ConstantPoolScanner() {
+        strings = new byte[64][];
+        stringIds = new int[64];
+        patterns = new int[48];
+        prefixes = new byte[16][];
+        patternsByOwner = new int[16][];
+        prefixPatterns = new int[0];
+    }
+
+    /**
+     * Adds a pattern matching class constant pool items, i.e. references to a
+     * class which can be used as a super class, an implemented interface, an
+     * exception, an inner class, the owner of a field or method reference, or
+     * as the type operand of an instruction.
+     * 
+     * @param owner
+     *            the internal name of a class, or an array type descriptor.
+     *            If this name ends with '*', the pattern matches all the
+     *            classes whose name starts with the characters before '*'.
+     * @return the index of the added pattern.
+     */
+    public int addClass(final String owner) {
+        return add(CLASS, owner, null, null);
+    }
+
+    /**
+     * Adds a pattern matching field reference constant pool items.
+     * 
+     * @param owner
+     *            the internal name of the class used in the field reference.
+     *            If this name ends with '*', the pattern matches all the
+     *            classes whose name starts with the characters before '*'.
+     * @param name
+     *            the field name, or <tt>null</tt> to match all names.
+     * @param desc
+     *            the field descriptor, or <tt>null</tt> to match all
+     *            descriptors.
+     * @return the index of the added pattern.
+     */
+    public int addField(final String owner, final String name,
+            final String desc) {
+        return add(FIELD, owner, name, desc);
+    }
+
+    /**
+     * Adds a pattern matching method and interface method reference constant
+     * pool items.
+     * 
+     * @param owner
+     *            the internal name of the class used in the method reference.
+     *            If this name ends with '*', the pattern matches all the
+     *            classes whose name starts with the characters before '*'.
+     * @param name
+     *            the method name, or <tt>null</tt> to match all names.
+     * @param desc
+     *            the method descriptor, or <tt>null</tt> to match all
+     *            descriptors.
+     * @return the index of the added pattern.
+     */
+    public int addMethod(final String owner, final String name,
+            final String desc) {
+        return add(METHOD, owner, name, desc);
+    }
+
+    /**
+     * Returns <tt>true</tt> if the constant pool of the given class matches
+     * at least one pattern.
+     * 
+     * @param cr
+     *            the class to be scanned.
+     * @return <tt>true</tt> if the constant pool of the given class matches at
+     *         least one pattern.
+     */
+    public boolean matches(final ClassReader cr) {
+        return scan(cr, null);
+    }
+
+    /**
+     * Returns the patterns matched by the constant pool of the given class.
+     * 
+     * @param cr
+     *            the class to be scanned.
+     * @return the indexes of the patterns matched by the constant pool of the
+     *         given class.
+     */
+    public BitSet scan(final ClassReader cr) {
+        BitSet hits = new BitSet();
+        scan(cr, hits);
+        return hits;
+    }
+
+    /**
+     * Scans the constant pool of the given class.
+     * 
+     * @param cr
+     *            the class to be scanned.
+     * @param hits
+     *            where the indexes of the matched patterns must be stored, or
+     *            <tt>null</tt> to stop at the first match.
+     * @return <tt>true</tt> if at least one pattern is matched.
+     */
+    private boolean scan(final ClassReader cr, final BitSet hits) {
+        byte[] b = cr.b;
+        int n = cr.getItemCount();
+        // finds the UTF8 items used in the patterns (the identifier of
+        // their string plus one is stored in ids)
+        int[] ids = new int[n];
+        boolean found = prefixPatterns.length > 0;
+        for (int i = 1; i < n; ++i) {
+            int index = cr.getItem(i);
+            switch (b[index - 1]) {
+            case 1: { // UTF8
+                int id = getId(b, index + 2, cr.readUnsignedShort(index));
+                if (id >= 0) {
+                    ids[i] = id + 1;
+                    found = true;
+                }
+                break;
+            }
+            case 5: // LONG
+            case 6: // DOUBLE
+                ++i;
+                break;
+            }
+        }
+        if (!found) {
+            return false;
+        }
+        // checks the class, field and method items using these UTF8 items
+        boolean match = false;
+        for (int i = 1; i < n; ++i) {
+            int index = cr.getItem(i);
+            int kind = b[index - 1];
+            int owner;
+            int nameType = 0;
+            switch (kind) {
+            case CLASS:
+                owner = cr.readUnsignedShort(index);
+                break;
+            case FIELD:
+            case METHOD:
+            case 11: // IMETH
+                owner = cr.readUnsignedShort(cr.getItem(cr
+                        .readUnsignedShort(index)));
+                nameType = cr.getItem(cr.readUnsignedShort(index + 2));
+                if (kind == 11) {
+                    // interface methods are matched by the method patterns
+                    kind = METHOD;
+                }
+                break;
+            case 5: // LONG
+            case 6: // DOUBLE
+                ++i;
+                continue;
+            default:
+                continue;
+            }
+            int[] candidates = ids[owner] == 0 ? null
+                    : patternsByOwner[ids[owner] - 1];
+            if (candidates != null
+                    && check(candidates, -1, kind, nameType, cr, ids, hits)) {
+                if (hits == null) {
+                    return true;
+                }
+                match = true;
+            }
+            if (prefixPatterns.length > 0
+                    && check(prefixPatterns, owner, kind, nameType, cr, ids,
+                            hits)) {
+                if (hits == null) {
+                    return true;
+                }
+                match = true;
+            }
+        }
+        return match;
+    }
+
+    /**
+     * Checks a constant pool item against some patterns.
+     * 
+     * @param candidates
+     *            the indexes of the patterns to be checked.
+     * @param owner
+     *            the index of the UTF8 item containing the owner of the
+     *            constant pool item, if the candidates have an owner prefix,
+     *            or -1 if they have the same owner as this item.
+     * @param kind
+     *            the kind of the constant pool item.
+     * @param nameType
+     *            the start index of the NameAndType item of the constant pool
+     *            item, or 0 for class items.
+     * @param cr
+     *            the class being scanned.
+     * @param ids
+     *            the string identifiers (plus one) of the UTF8 items.
+     * @param hits
+     *            where the indexes of the matched patterns must be stored, or
+     *            <tt>null</tt> to stop at the first match.
+     * @return <tt>true</tt> if at least one pattern is matched.
+     */
+    private boolean check(final int[] candidates, final int owner,
+            final int kind, final int nameType, final ClassReader cr,
+            final int[] ids, final BitSet hits) {
+        boolean match = false;
+        for (int i = 0; i < candidates.length; ++i) {
+            int p = candidates[i];
+            if (check(p, kind, nameType, cr, ids)
+                    && (owner == -1 || startsWith(cr, owner, prefixes[p]))) {
+                if (hits == null) {
+                    return true;
+                }
+                hits.set(p);
+                match = true;
+            }
+        }
+        return match;
+    }
+
+    /**
+     * Returns <tt>true</tt> if an UTF8 item starts with the given prefix.
+     */
+    private static boolean startsWith(final ClassReader cr, final int item,
+            final byte[] prefix) {
+        byte[] b = cr.b;
+        int index = cr.getItem(item);
+        if (cr.readUnsignedShort(index) < prefix.length) {
+            return false;
+        }
+        index += 2;
+        for (int i = 0; i < prefix.length; ++i) {
+            if (prefix[i] != b[index + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks the kind, name and descriptor of a constant pool item against a
+     * pattern.
+     * 
+     * @param p
+     *            the index of a pattern.
+     * @param kind
+     *            the kind of the constant pool item.
+     * @param nameType
+     *            the start index of the NameAndType item of the constant pool
+     *            item, or 0 for class items.
+     * @param cr
+     *            the class being scanned.
+     * @param ids
+     *            the string identifiers (plus one) of the UTF8 items.
+     * @return <tt>true</tt> if the item matches the pattern.
+     */
+    private boolean check(final int p, final int kind, final int nameType,
+            final ClassReader cr, final int[] ids) {
+        int[] patterns = this.patterns;
+        if (patterns[3 * p] != kind) {
+            return false;
+        }
+        int name = patterns[3 * p + 1];
+        int desc = patterns[3 * p + 2];
+        return (name == -1 || ids[cr.readUnsignedShort(nameType)] == name + 1)
+                && (desc == -1 || ids[cr.readUnsignedShort(nameType + 2)]
+                        == desc + 1);
+    }
+
+    // ------------------------------------------------------------------------
+    // Pattern compilation
+    // ------------------------------------------------------------------------
+
+    /**
+     * Adds a pattern.
+     */
+    private int add(final int kind, final String owner, final String name,
+            final String desc) {
+        int p = patternCount++;
+        if (3 * patternCount > patterns.length) {
+            int[] newPatterns = new int[2 * patterns.length];
+            System.arraycopy(patterns, 0, newPatterns, 0, 3 * p);
+            patterns = newPatterns;
+            byte[][] newPrefixes = new byte[2 * prefixes.length][];
+            System.arraycopy(prefixes, 0, newPrefixes, 0, p);
+            prefixes = newPrefixes;
+        }
+        patterns[3 * p] = kind;
+        patterns[3 * p + 1] = name == null ? -1 : addString(name);
+        patterns[3 * p + 2] = desc == null ? -1 : addString(desc);
+        if (owner.endsWith("*")) {
+            prefixes[p] = encode(owner.substring(0, owner.length() - 1));
+            prefixPatterns = append(prefixPatterns, p);
+        } else {
+            int id = addString(owner);
+            patternsByOwner[id] = append(patternsByOwner[id], p);
+        }
+        return p;
+    }
+
+    /**
+     * Appends an int to an array.
+     * 
+     * @param a
+     *            an array, or <tt>null</tt>.
+     * @param i
+     *            the int to be appended.
+     * @return a copy of the given array, with the given int appended.
+     */
+    private static int[] append(final int[] a, final int i) {
+        if (a == null) {
+            return new int[] { i };
+        }
+        int[] b = new int[a.length + 1];
+        System.arraycopy(a, 0, b, 0, a.length);
+        b[a.length] = i;
+        return b;
+    }
+
+    /**
+     * Adds a string to the hash table of strings, if it is not already there.
+     * 
+     * @param s
+     *            a string.
+     * @return the identifier of this string.
+     */
+    private int addString(final String s) {
+        byte[] key = encode(s);
+        int id = getId(key, 0, key.length);
+        if (id >= 0) {
+            return id;
+        }
+        if (2 * (stringCount + 1) > strings.length) {
+            byte[][] oldStrings = strings;
+            int[] oldIds = stringIds;
+            strings = new byte[2 * oldStrings.length][];
+            stringIds = new int[strings.length];
+            for (int i = 0; i < oldStrings.length; ++i) {
+                if (oldStrings[i] != null) {
+                    put(oldStrings[i], oldIds[i]);
+                }
+            }
+        }
+        id = stringCount++;
+        put(key, id);
+        if (id == patternsByOwner.length) {
+            int[][] newPatternsByOwner = new int[2 * id][];
+            System.arraycopy(patternsByOwner, 0, newPatternsByOwner, 0, id);
+            patternsByOwner = newPatternsByOwner;
+        }
+        return id;
+    }
+
+    /**
+     * Puts a string in the hash table of strings, without resizing it.
+     */
+    private void put(final byte[] key, final int id) {
+        int mask = strings.length - 1;
+        int i = hash(key, 0, key.length) & mask;
+        while (strings[i] != null) {
+            i = (i + 1) & mask;
+        }
+        strings[i] = key;
+        stringIds[i] = id;
+    }
+
+    /**
+     * Returns the identifier of the given string.
+     * 
+     * @param b
+     *            a byte array containing a string in modified UTF8 format.
+     * @param off
+     *            the start offset of the string in b.
+     * @param len
+     *            the length of the string in b.
+     * @return the identifier of this string, or -1 if it is not used in the
+     *         patterns.
+     */
+    private int getId(final byte[] b, final int off, final int len) {
+        byte[][] strings = this.strings;
+        int mask = strings.length - 1;
+        int i = hash(b, off, len) & mask;
+        byte[] key;
+        while ((key = strings[i]) != null) {
+            if (key.length == len) {
+                int j = 0;
+                while (j < len && key[j] == b[off + j]) {
+                    ++j;
+                }
+                if (j == len) {
+                    return stringIds[i];
+                }
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    private static int hash(final byte[] b, final int off, final int len) {
+        int h = len;
+        for (int i = 0; i < len; ++i) {
+            h = 31 * h + b[off + i];
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Encodes a string in modified UTF8 format.
+     * 
+     * @param s
+     *            a string.
+     * @return the modified UTF8 encoding of this string, without length
+     *         prefix.
+     */
+    private static byte[] encode(final String s) {
+        int len = s.length();
+        int byteLength = 0;
+        for (int i = 0; i < len; ++i) {
+            char c = s.charAt(i);
+            if (c >= '\001' && c <= '\177') {
+                byteLength++;
+            } else if (c > '\u07FF') {
+                byteLength += 3;
+            } else {
+                byteLength += 2;
+            }
+        }
+        byte[] b = new byte[byteLength];
+        int j = 0;
+        for (int i = 0; i < len; ++i) {
+            char c = s.charAt(i);
+            if (c >= '\001' && c <= '\177') {
+                b[j++] = (byte) c;
+            } else if (c > '\u07FF') {
+                b[j++] = (byte) (0xE0 | c >> 12 & 0xF);
+                b[j++] = (byte) (0x80 | c >> 6 & 0x3F);
+                b[j++] = (byte) (0x80 | c & 0x3F);
+            } else {
+                b[j++] = (byte) (0xC0 | c >> 6 & 0x1F);
+                b[j++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        return b;
+    }
+}
@@ -0,0 +1,321 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.commons;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A {@link Remapper} for large mappings. Like {@link SimpleRemapper}, it can
+ * be constructed from a {@link Map} whose keys are internal class names,
+ * <tt>owner + '.' + name</tt> field keys and <tt>owner + '.' + name +
+ * desc</tt> method keys, but these keys are parsed once, into a class map and
+ * into per owner member tables. Member names are then looked up without
+ * building any key string. The results of {@link #mapDesc mapDesc},
+ * {@link #mapMethodDesc mapMethodDesc} and {@link #mapSignature mapSignature}
+ * are also memoized, in caches which can be used concurrently. A
+ * {@link IndexedRemapper} can therefore be shared between several threads,
+ * provided its mapping is not modified while it is used.
+ */
+public class IndexedRemapper extends Remapper {
+
+    /**
+     * The class mapping.
+     */
+    private final Map<String, String> classes;
+
+    /**
+     * The field and method mappings, indexed by owner.
+     */
+    private final Map<String, Members> members;
+
+    /**
+     * The memoized results of {@link #mapDesc mapDesc}.
+     */
+    private final Map<String, String> descs;
+
+    /**
+     * The memoized results of {@link #mapMethodDesc mapMethodDesc}.
+     */
+    private final Map<String, String> methodDescs;
+
+    /**
+     * The memoized results of {@link #mapSignature mapSignature} for type
+     * signatures.
+     */
+    private final Map<String, String> typeSignatures;
+
+    /**
+     * The memoized results of {@link #mapSignature mapSignature} for class
+     * and method signatures.
+     */
+    private final Map<String, String> signatures;
+
+    /**
+     * Constructs a new {@link IndexedRemapper} with an empty mapping.
+     */
+    public IndexedRemapper() {
+        classes = new HashMap<String, String>();
+        members = new HashMap<String, Members>();
+        descs = new ConcurrentHashMap<String, String>();
+        methodDescs = new ConcurrentHashMap<String, String>();
+        typeSignatures = new ConcurrentHashMap<String, String>();
+        signatures = new ConcurrentHashMap<String, String>();
+    }
+
+    /**
+     * Constructs a new {@link IndexedRemapper}.
+     * 
+     * @param mapping
+     *            a mapping in the format used by {@link SimpleRemapper}.
+     */
+    public IndexedRemapper(final Map<String, String> mapping) {
+        this();
+        Iterator<Map.Entry<String, String>> i = mapping.entrySet().iterator();
+        while (i.hasNext()) {
+            Map.Entry<String, String> e = i.next();
+            String key = e.getKey();
+            int dot = key.indexOf('.');
+            if (dot == -1) {
+                addClass(key, e.getValue());
+                continue;
+            }
+            String owner = key.substring(0, dot);
+            int paren = key.indexOf('(', dot);
+            if (paren == -1) {
+                addField(owner, key.substring(dot + 1), e.getValue());
+            } else {
+                addMethod(owner, key.substring(dot + 1, paren), key
+                        .substring(paren), e.getValue());
+            }
+        }
+    }
+
+    /**
+     * Adds a class mapping. This method must not be called while this
+     * remapper is used by other threads.
+     * 
+     * @param name
+     *            the internal name of a class.
+     * @param newName
+     *            the new internal name of this class.
+     */
+    public void addClass(final String name, final String newName) {
+        classes.put(name, newName);
+        descs.clear();
+        methodDescs.clear();
+        typeSignatures.clear();
+        signatures.clear();
+    }
+
+    /**
+     * Adds a field mapping. This method must not be called while this
+     * remapper is used by other threads.
+     * 
+     * @param owner
+     *            the internal name of the class declaring the field.
+     * @param name
+     *            the name of the field.
+     * @param newName
+     *            the new name of the field.
+     */
+    public void addField(final String owner, final String name,
+            final String newName) {
+        getMembers(owner).put(name, null, newName);
+    }
+
+    /**
+     * Adds a method mapping. This method must not be called while this
+     * remapper is used by other threads.
+     * 
+     * @param owner
+     *            the internal name of the class declaring the method.
+     * @param name
+     *            the name of the method.
+     * @param desc
+     *            the descriptor of the method.
+     * @param newName
+     *            the new name of the method.
+     */
+    public void addMethod(final String owner, final String name,
+            final String desc, final String newName) {
+        getMembers(owner).put(name, desc, newName);
+    }
+
+    private Members getMembers(final String owner) {
+        Members m = members.get(owner);
+        if (m == null) {
+            m = new Members();
+            members.put(owner, m);
+        }
+        return m;
+    }
+
+    @Override
+    public String mapMethodName(final String owner, final String name,
+            final String desc) {
+        Members m = members.get(owner);
+        String s = m == null ? null : m.get(name, desc);
+        return s == null ? name : s;
+    }
+
+    @Override
+    public String mapFieldName(final String owner, final String name,
+            final String desc) {
+        Members m = members.get(owner);
+        String s = m == null ? null : m.get(name, null);
+        return s == null ? name : s;
+    }
+
+    @Override
+    public String map(final String key) {
+        return classes.get(key);
+    }
+
+    @Override
+    public String mapDesc(final String desc) {
+        String s = descs.get(desc);
+        if (s == null) {
+            s = super.mapDesc(desc);
+            descs.put(desc, s);
+        }
+        return s;
+    }
+
+    @Override
+    public String mapMethodDesc(final String desc) {
+        String s = methodDescs.get(desc);
+        if (s == null) {
+            s = super.mapMethodDesc(desc);
+            methodDescs.put(desc, s);
+        }
+        return s;
+    }
+
+    @Override
+    public String mapSignature(final String signature,
+            final boolean typeSignature) {
+        if (signature == null) {
+            return null;
+        }
+        Map<String, String> cache = typeSignature ? typeSignatures
+                : signatures;
+        String s = cache.get(signature);
+        if (s == null) {
+            s = super.mapSignature(signature, typeSignature);
+            cache.put(signature, s);
+        }
+        return s;
+    }
+
+    /**
+     * The field and method mappings of a class. Fields and methods are stored
+     * in an open addressing hash table, fields having a <tt>null</tt>
+     * descriptor.
+     */
+    private static final class Members {
+
+        /**
+         * The names of the fields and methods.
+         */
+        private String[] names = new String[8];
+
+        /**
+         * The descriptors of the methods, or <tt>null</tt> for fields.
+         */
+        private String[] descs = new String[8];
+
+        /**
+         * The new names of the fields and methods.
+         */
+        private String[] newNames = new String[8];
+
+        /**
+         * The number of fields and methods in this table.
+         */
+        private int size;
+
+        private static int hash(final String name, final String desc) {
+            int h = name.hashCode() * 31
+                    + (desc == null ? 0 : desc.hashCode());
+            return h ^ (h >>> 16);
+        }
+
+        String get(final String name, final String desc) {
+            int mask = names.length - 1;
+            int i = hash(name, desc) & mask;
+            String n;
+            while ((n = names[i]) != null) {
+                if (n.equals(name)
+                        && (desc == null ? descs[i] == null : desc
+                                .equals(descs[i]))) {
+                    return newNames[i];
+                }
+                i = (i + 1) & mask;
+            }
+            return null;
+        }
+
+        void put(final String name, final String desc, final String newName) {
+            if (2 * (size + 1) > names.length) {
+                String[] oldNames = names;
+                String[] oldDescs = descs;
+                String[] oldNewNames = newNames;
+                names = new String[2 * oldNames.length];
+                descs = new String[names.length];
+                newNames = new String[names.length];
+                size = 0;
+                for (int i = 0; i < oldNames.length; ++i) {
+                    if (oldNames[i] != null) {
+                        put(oldNames[i], oldDescs[i], oldNewNames[i]);
+                    }
+                }
+            }
+            int mask = names.length - 1;
+            int i = hash(name, desc) & mask;
+            String n;
+            while ((n = names[i]) != null) {
+                if (n.equals(name)
+                        && (desc == null ? descs[i] == null : desc
+                                .equals(descs[i]))) {
+                    newNames[i] = newName;
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            names[i] = name;
+            descs[i] = desc;
+            newNames[i] = newName;
+            ++size;
+        }
+    }
+}
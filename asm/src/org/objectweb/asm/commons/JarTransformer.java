@@ -0,0 +1,416 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.commons;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+
+/**
+ * Transforms all the classes of a jar file or of a directory in parallel. Each
+ * class is parsed with a {@link ClassReader}, transformed by the class visitor
+ * chain returned by {@link #getClassVisitor getClassVisitor}, and serialized
+ * with a {@link ClassWriter}, in a pool of worker threads. The input entries
+ * are read, and the output entries are written, by the calling thread, in the
+ * order of the input. At most {@link #window} entries are pending at any given
+ * time, so that the memory used does not depend on the size of the input.
+ * Other entries are copied unchanged.
+ * 
+ * <p>
+ * The {@link #getClassVisitor getClassVisitor} and {@link #getClassWriter
+ * getClassWriter} methods are called once per class, in the worker threads.
+ * They must therefore return new visitor instances, or at least instances that
+ * can be used concurrently.
+ */
+public class JarTransformer {
+
+    /**
+     * The flags used to read the classes. See {@link ClassReader#accept
+     * ClassReader.accept}.
+     */
+    protected final int readerFlags;
+
+    /**
+     * The flags used to write the classes. See
+     * {@link ClassWriter#ClassWriter(int) ClassWriter}.
+     */
+    protected final int writerFlags;
+
+    /**
+     * The number of worker threads used to transform classes.
+     */
+    protected final int threads;
+
+    /**
+     * The maximum number of entries whose transformation may be pending at any
+     * given time.
+     */
+    protected final int window;
+
+    /**
+     * Constructs a new {@link JarTransformer} using one worker thread per
+     * available processor.
+     * 
+     * @param readerFlags
+     *            the flags used to read the classes.
+     * @param writerFlags
+     *            the flags used to write the classes.
+     */
+    public JarTransformer(final int readerFlags, final int writerFlags) {
+        this(readerFlags, writerFlags, Runtime.getRuntime()
+                .availableProcessors());
+    }
+
+    /**
+     * Constructs a new {@link JarTransformer}.
+     * 
+     * @param readerFlags
+     *            the flags used to read the classes.
+     * @param writerFlags
+     *            the flags used to write the classes.
+     * @param threads
+     *            the number of worker threads used to transform classes.
+     */
+    public JarTransformer(final int readerFlags, final int writerFlags,
+            final int threads) {
+        this(readerFlags, writerFlags, threads, 4 * threads);
+    }
+
+    /**
+     * Constructs a new {@link JarTransformer}.
+     * 
+     * @param readerFlags
+     *            the flags used to read the classes.
+     * @param writerFlags
+     *            the flags used to write the classes.
+     * @param threads
+     *            the number of worker threads used to transform classes.
+     * @param window
+     *            the maximum number of entries whose transformation may be
+     *            pending at any given time. Must be greater than or equal to
+     *            <tt>threads</tt> to keep all the worker threads busy.
+     */
+    public JarTransformer(final int readerFlags, final int writerFlags,
+            final int threads, final int window) {
+        if (threads < 1 || window < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.readerFlags = readerFlags;
+        this.writerFlags = writerFlags;
+        this.threads = threads;
+        this.window = window;
+    }
+
+    /**
+     * Returns the class visitor chain that must be used to transform a class.
+     * The default implementation returns the given class visitor, i.e. classes
+     * are simply copied.
+     * 
+     * @param cv
+     *            the class visitor to which the transformed class must be
+     *            sent. This visitor is the {@link ClassWriter} returned by
+     *            {@link #getClassWriter getClassWriter}.
+     * @return the class visitor that must visit the original class.
+     */
+    protected ClassVisitor getClassVisitor(final ClassVisitor cv) {
+        return cv;
+    }
+
+    /**
+     * Returns the class writer that must be used to write a transformed class.
+     * This method can be overridden to return a class writer whose
+     * {@link ClassWriter#getCommonSuperClass getCommonSuperClass} method does
+     * not load classes, for instance.
+     * 
+     * @param cr
+     *            the class reader used to read the original class.
+     * @return a new class writer.
+     */
+    protected ClassWriter getClassWriter(final ClassReader cr) {
+        return new ClassWriter(writerFlags);
+    }
+
+    /**
+     * Transforms a single class.
+     * 
+     * @param b
+     *            the bytecode of the class to be transformed.
+     * @return the bytecode of the transformed class.
+     */
+    public byte[] transform(final byte[] b) {
+        ClassReader cr = new ClassReader(b);
+        ClassWriter cw = getClassWriter(cr);
+        cr.accept(getClassVisitor(cw), readerFlags);
+        return cw.toByteArray();
+    }
+
+    /**
+     * Transforms a jar file or a directory. If <tt>in</tt> is a directory, the
+     * transformed files are stored in the <tt>out</tt> directory, with the
+     * same relative paths. Otherwise <tt>in</tt> is considered as a zip file,
+     * and the transformed entries are stored in the <tt>out</tt> zip file.
+     * 
+     * @param in
+     *            the jar file or directory to be transformed.
+     * @param out
+     *            the file or directory where the result must be stored.
+     * @throws IOException
+     *             if a problem occurs during reading or writing, or if the
+     *             transformation of a class fails.
+     */
+    public void transform(final File in, final File out) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            if (in.isDirectory()) {
+                LinkedList<Pending> pending = new LinkedList<Pending>();
+                transform(in, out, executor, pending);
+                while (!pending.isEmpty()) {
+                    pending.removeFirst().write(null);
+                }
+            } else {
+                InputStream is = new FileInputStream(in);
+                try {
+                    OutputStream os = new FileOutputStream(out);
+                    try {
+                        transform(is, os, executor);
+                    } finally {
+                        os.close();
+                    }
+                } finally {
+                    is.close();
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Transforms a zip stream. The entries of the input stream are written to
+     * the output stream in the same order.
+     * 
+     * @param in
+     *            a stream containing a zip file.
+     * @param out
+     *            the stream where the transformed zip file must be written.
+     *            This stream is not closed by this method.
+     * @throws IOException
+     *             if a problem occurs during reading or writing, or if the
+     *             transformation of a class fails.
+     */
+    public void transform(final InputStream in, final OutputStream out)
+            throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            transform(in, out, executor);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void transform(final InputStream in, final OutputStream out,
+            final ExecutorService executor) throws IOException {
+        ZipInputStream zis = new ZipInputStream(in);
+        ZipOutputStream zos = new ZipOutputStream(out);
+        LinkedList<Pending> pending = new LinkedList<Pending>();
+        ZipEntry ze;
+        while ((ze = zis.getNextEntry()) != null) {
+            Pending p;
+            if (ze.isDirectory()) {
+                p = new Pending(ze.getName(), null);
+            } else {
+                p = submit(ze.getName(), readEntry(zis), executor);
+            }
+            p.time = ze.getTime();
+            add(p, pending, zos);
+        }
+        while (!pending.isEmpty()) {
+            pending.removeFirst().write(zos);
+        }
+        zos.finish();
+    }
+
+    private void transform(final File in, final File out,
+            final ExecutorService executor, final LinkedList<Pending> pending)
+            throws IOException {
+        File[] files = in.listFiles();
+        if (files == null) {
+            throw new IOException("Cannot list directory " + in);
+        }
+        Arrays.sort(files);
+        for (int i = 0; i < files.length; ++i) {
+            File f = files[i];
+            File g = new File(out, f.getName());
+            if (f.isDirectory()) {
+                transform(f, g, executor, pending);
+            } else {
+                InputStream is = new FileInputStream(f);
+                byte[] b;
+                try {
+                    b = readEntry(is);
+                } finally {
+                    is.close();
+                }
+                Pending p = submit(f.getName(), b, executor);
+                p.file = g;
+                add(p, pending, null);
+            }
+        }
+    }
+
+    /**
+     * Schedules the transformation of an entry, if it is a class.
+     */
+    private Pending submit(final String name, final byte[] b,
+            final ExecutorService executor) {
+        Pending p = new Pending(name, b);
+        if (name.endsWith(".class")) {
+            p.future = executor.submit(new Callable<byte[]>() {
+                public byte[] call() throws Exception {
+                    return transform(b);
+                }
+            });
+        }
+        return p;
+    }
+
+    /**
+     * Appends an entry to the pending queue, after having written the oldest
+     * pending entries if the queue is full.
+     */
+    private void add(final Pending p, final LinkedList<Pending> pending,
+            final ZipOutputStream zos) throws IOException {
+        while (pending.size() >= window) {
+            pending.removeFirst().write(zos);
+        }
+        pending.addLast(p);
+    }
+
+    private static byte[] readEntry(final InputStream is) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        int n;
+        while ((n = is.read(buf, 0, buf.length)) != -1) {
+            bos.write(buf, 0, n);
+        }
+        return bos.toByteArray();
+    }
+
+    /**
+     * An entry whose transformation may be pending.
+     */
+    private static class Pending {
+
+        final String name;
+
+        final byte[] b;
+
+        Future<byte[]> future;
+
+        long time = -1;
+
+        File file;
+
+        Pending(final String name, final byte[] b) {
+            this.name = name;
+            this.b = b;
+        }
+
+        /**
+         * Waits for the transformation of this entry, and writes the result
+         * either in the given zip stream or in {@link #file}.
+         */
+        void write(final ZipOutputStream zos) throws IOException {
+            byte[] result = b;
+            if (future != null) {
+                try {
+                    result = future.get();
+                } catch (InterruptedException e) {
+                    IOException ioe = new IOException("Interrupted while "
+                            + "transforming " + name);
+                    ioe.initCause(e);
+                    throw ioe;
+                } catch (ExecutionException e) {
+                    Throwable t = e.getCause();
+                    if (t instanceof RuntimeException) {
+                        throw (RuntimeException) t;
+                    }
+                    if (t instanceof Error) {
+                        throw (Error) t;
+                    }
+                    IOException ioe = new IOException("Cannot transform "
+                            + name);
+                    ioe.initCause(t);
+                    throw ioe;
+                }
+            }
+            if (file != null) {
+                File d = file.getParentFile();
+                if (d != null && !d.exists() && !d.mkdirs()) {
+                    throw new IOException("Cannot create directory " + d);
+                }
+                OutputStream os = new FileOutputStream(file);
+                try {
+                    os.write(result);
+                } finally {
+                    os.close();
+                }
+            } else {
+                ZipEntry ze = new ZipEntry(name);
+                if (time != -1) {
+                    ze.setTime(time);
+                }
+                zos.putNextEntry(ze);
+                if (result != null) {
+                    zos.write(result);
+                }
+                zos.closeEntry();
+            }
+        }
+    }
+}
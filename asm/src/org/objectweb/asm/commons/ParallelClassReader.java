@@ -0,0 +1,233 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.commons;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.objectweb.asm.Attribute;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.MethodNode;
+
+/**
+ * A {@link ClassReader} that decodes the methods of a class in parallel. The
+ * class is first parsed without its methods, in the calling thread, and its
+ * events are recorded in a {@link ClassEventBuffer}. The methods are then
+ * split into contiguous ranges, and each range is decoded into
+ * {@link MethodNode}s by a task submitted to an {@link ExecutorService}. Each
+ * task only parses its own methods, starting directly at their offsets (see
+ * {@link ClassReader#acceptMethods acceptMethods}).
+ * Finally the recorded class events are sent to the class visitor, in the
+ * calling thread and in their original order, each method being sent as soon
+ * as it has been decoded. The class visitor and the method visitors it
+ * returns are therefore only used by the calling thread, as with a normal
+ * {@link ClassReader}. This reduces the latency of the {@link #accept(
+ * ClassVisitor, Attribute[], int) accept} method for large classes with many
+ * methods, but uses more memory (for the decoded methods which have not yet
+ * been sent to the class visitor), and more CPU time in total.
+ */
+public class ParallelClassReader extends ClassReader {
+
+    /**
+     * The executor used to decode the methods.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * The maximum number of tasks used to decode the methods of a class.
+     */
+    private final int tasks;
+
+    /**
+     * Constructs a new {@link ParallelClassReader} which decodes the methods
+     * of a class in at most four tasks per available processor.
+     * 
+     * @param b
+     *            the bytecode of the class to be read.
+     * @param executor
+     *            the executor used to decode the methods.
+     */
+    public ParallelClassReader(final byte[] b, final ExecutorService executor) {
+        this(b, 0, b.length, executor, 4 * Runtime.getRuntime()
+                .availableProcessors());
+    }
+
+    /**
+     * Constructs a new {@link ParallelClassReader}.
+     * 
+     * @param b
+     *            the bytecode of the class to be read.
+     * @param off
+     *            the start offset of the class data.
+     * @param len
+     *            the length of the class data.
+     * @param executor
+     *            the executor used to decode the methods.
+     * @param tasks
+     *            the maximum number of tasks used to decode the methods of the
+     *            class.
+     */
+    public ParallelClassReader(final byte[] b, final int off, final int len,
+            final ExecutorService executor, final int tasks) {
+        super(b, off, len);
+        if (tasks < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.executor = executor;
+        this.tasks = tasks;
+    }
+
+    @Override
+    public void accept(final ClassVisitor classVisitor,
+            final Attribute[] attrs, final int flags) {
+        // records the class events, without the method bodies
+        final ClassEventBuffer events = new ClassEventBuffer();
+        super.accept(new ClassVisitor(Opcodes.ASM4, events) {
+            @Override
+            public MethodVisitor visitMethod(final int access,
+                    final String name, final String desc,
+                    final String signature, final String[] exceptions) {
+                events.visitMethod(access, name, desc, signature, exceptions);
+                return null;
+            }
+        }, attrs, flags | SKIP_CODE);
+
+        // decodes the methods in parallel
+        final int[] offsets = getMethodOffsets();
+        final int n = offsets.length;
+        final int t = Math.min(n, tasks);
+        final MethodNode[] methods = new MethodNode[n];
+        final List<Future<Object>> futures = new ArrayList<Future<Object>>(t);
+        for (int i = 0; i < t; ++i) {
+            final int start = i * n / t;
+            final int end = (i + 1) * n / t;
+            futures.add(executor.submit(new Callable<Object>() {
+                public Object call() {
+                    decode(offsets, start, end, methods, attrs, flags);
+                    return null;
+                }
+            }));
+        }
+
+        // sends the class events, and the methods as soon as they are decoded
+        try {
+            events.accept(new ClassVisitor(Opcodes.ASM4, classVisitor) {
+
+                private int method;
+
+                private int task;
+
+                @Override
+                public MethodVisitor visitMethod(final int access,
+                        final String name, final String desc,
+                        final String signature, final String[] exceptions) {
+                    int i = method++;
+                    while (i >= (task + 1) * n / t) {
+                        ++task;
+                    }
+                    get(futures.get(task));
+                    methods[i].accept(classVisitor);
+                    methods[i] = null;
+                    return null;
+                }
+            });
+        } finally {
+            for (int i = 0; i < futures.size(); ++i) {
+                futures.get(i).cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Decodes a range of methods.
+     * 
+     * @param offsets
+     *            the start offsets of the methods of the class.
+     * @param start
+     *            the index of the first method to be decoded.
+     * @param end
+     *            the index of the last method to be decoded, plus one.
+     * @param methods
+     *            where the decoded methods must be stored.
+     * @param attrs
+     *            prototypes of the attributes that must be parsed during the
+     *            visit of the class.
+     * @param flags
+     *            option flags that can be used to modify the default behavior
+     *            of this class.
+     */
+    private void decode(final int[] offsets, final int start, final int end,
+            final MethodNode[] methods, final Attribute[] attrs,
+            final int flags) {
+        acceptMethods(new ClassVisitor(Opcodes.ASM4) {
+
+            private int method = start;
+
+            @Override
+            public MethodVisitor visitMethod(final int access,
+                    final String name, final String desc,
+                    final String signature, final String[] exceptions) {
+                return methods[method++] = new MethodNode(access, name, desc,
+                        signature, exceptions);
+            }
+        }, offsets, start, end, attrs, flags);
+    }
+
+    /**
+     * Waits for the completion of a task.
+     * 
+     * @param future
+     *            the result of a task.
+     */
+    private static void get(final Future<Object> future) {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            Throwable t = e.getCause();
+            if (t instanceof RuntimeException) {
+                throw (RuntimeException) t;
+            }
+            if (t instanceof Error) {
+                throw (Error) t;
+            }
+            throw new RuntimeException(t);
+        }
+    }
+}
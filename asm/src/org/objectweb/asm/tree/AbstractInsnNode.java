@@ -139,9 +139,10 @@ public abstract class AbstractInsnNode {
 
     /**
      * Index of this instruction in the list to which it belongs. The value of
-     * this field is correct only when {@link InsnList#cache} is not null. A
-     * value of -1 indicates that this instruction does not belong to any
-     * {@link InsnList}.
+     * this field is correct only when {@link InsnList#cache} is not null. In
+     * an indexed {@link InsnList}, this field is the position of this
+     * instruction in the gap buffer of the list instead. A value of -1
+     * indicates that this instruction does not belong to any {@link InsnList}.
      */
     int index;
 
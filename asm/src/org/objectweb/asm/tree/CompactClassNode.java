@@ -0,0 +1,511 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.tree;
+
+import java.nio.ByteBuffer;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * A read only node that represents a class stored in a
+ * {@link CompactClassPool}. Unlike a {@link ClassNode}, this node does not
+ * contain the class elements: they are decoded on demand from the class file,
+ * which is stored in a buffer of the pool. The instructions of a method can be
+ * read with an {@link InsnCursor}, without creating any object per
+ * instruction, and {@link MethodNode}s or {@link ClassNode}s can be created
+ * when needed with {@link #getMethodNode getMethodNode} or {@link #accept
+ * accept}. The methods of this class can be called concurrently by several
+ * threads.
+ */
+public class CompactClassNode {
+
+    /**
+     * The access flags added by {@link ClassReader} for a Synthetic
+     * attribute: {@link Opcodes#ACC_SYNTHETIC ACC_SYNTHETIC} and the
+     * ACC_SYNTHETIC_ATTRIBUTE pseudo flag of ClassWriter.
+     */
+    private static final int SYNTHETIC_ATTRIBUTE_FLAGS = Opcodes.ACC_SYNTHETIC
+            | 0x40000;
+
+    /**
+     * The buffer containing the class file. Only the absolute get methods of
+     * this buffer must be used, so that its position can be changed
+     * concurrently by the pool.
+     */
+    private final ByteBuffer buf;
+
+    /**
+     * The absolute offset of the class file in {@link #buf buf}.
+     */
+    private final int offset;
+
+    /**
+     * The length of the class file.
+     */
+    private final int length;
+
+    /**
+     * The absolute offset in {@link #buf buf} of the table containing the
+     * absolute offsets of the constant pool items. This table contains one int
+     * per item, which is the offset of the byte following the item tag.
+     */
+    private final int items;
+
+    /**
+     * The absolute offset of the access_flags field of the class.
+     */
+    private final int header;
+
+    /**
+     * The absolute offset in {@link #buf buf} of the table containing the
+     * absolute offsets of the methods. This table contains two ints per
+     * method: the offset of the method_info structure, and the offset of its
+     * code, or 0 if the method has no code.
+     */
+    private final int methods;
+
+    /**
+     * The number of methods of the class.
+     */
+    private final int methodCount;
+
+    /**
+     * Constructs a new {@link CompactClassNode}.
+     * 
+     * @param buf
+     *            the buffer containing the class file and its tables.
+     * @param offset
+     *            the absolute offset of the class file in buf.
+     * @param length
+     *            the length of the class file.
+     * @param items
+     *            the absolute offset of the constant pool items table.
+     * @param header
+     *            the absolute offset of the access_flags field of the class.
+     * @param methods
+     *            the absolute offset of the methods table.
+     * @param methodCount
+     *            the number of methods of the class.
+     */
+    CompactClassNode(final ByteBuffer buf, final int offset, final int length,
+            final int items, final int header, final int methods,
+            final int methodCount) {
+        this.buf = buf;
+        this.offset = offset;
+        this.length = length;
+        this.items = items;
+        this.header = header;
+        this.methods = methods;
+        this.methodCount = methodCount;
+    }
+
+    /**
+     * Returns the class version.
+     * 
+     * @return the class version.
+     */
+    public int getVersion() {
+        return buf.getInt(offset + 4);
+    }
+
+    /**
+     * Returns the class's access flags (see {@link Opcodes}). As in
+     * {@link ClassReader}, these flags include the
+     * {@link Opcodes#ACC_DEPRECATED ACC_DEPRECATED} and
+     * {@link Opcodes#ACC_SYNTHETIC ACC_SYNTHETIC} pseudo flags if the class
+     * has a Deprecated or Synthetic attribute.
+     * 
+     * @return the class access flags.
+     */
+    public int getAccess() {
+        int u = header + 8 + 2 * readUnsignedShort(header + 6);
+        for (int i = 0; i < 2; ++i) { // skips the fields, then the methods
+            int n = readUnsignedShort(u);
+            u += 2;
+            for (; n > 0; --n) {
+                u = skipAttributes(u + 6);
+            }
+        }
+        return readUnsignedShort(header) | readAttributeFlags(u);
+    }
+
+    /**
+     * Returns the internal name of the class (see
+     * {@link Type#getInternalName() getInternalName}).
+     * 
+     * @return the internal class name.
+     */
+    public String getName() {
+        return readClass(header + 2);
+    }
+
+    /**
+     * Returns the internal of name of the super class (see
+     * {@link Type#getInternalName() getInternalName}).
+     * 
+     * @return the internal name of super class, or <tt>null</tt> for
+     *         {@link Object} class.
+     */
+    public String getSuperName() {
+        return readClass(header + 4);
+    }
+
+    /**
+     * Returns the internal names of the class's interfaces (see
+     * {@link Type#getInternalName() getInternalName}).
+     * 
+     * @return the array of internal names for all implemented interfaces.
+     */
+    public String[] getInterfaces() {
+        String[] interfaces = new String[readUnsignedShort(header + 6)];
+        for (int i = 0; i < interfaces.length; ++i) {
+            interfaces[i] = readClass(header + 8 + 2 * i);
+        }
+        return interfaces;
+    }
+
+    /**
+     * Returns the number of methods of the class.
+     * 
+     * @return the number of methods of the class.
+     */
+    public int getMethodCount() {
+        return methodCount;
+    }
+
+    /**
+     * Returns the access flags of a method of the class.
+     * 
+     * @param method
+     *            the index of a method, between 0 (inclusive) and
+     *            {@link #getMethodCount getMethodCount} (exclusive).
+     * @return the access flags of this method, including the
+     *         {@link Opcodes#ACC_DEPRECATED ACC_DEPRECATED} and
+     *         {@link Opcodes#ACC_SYNTHETIC ACC_SYNTHETIC} pseudo flags if this
+     *         method has a Deprecated or Synthetic attribute.
+     */
+    public int getMethodAccess(final int method) {
+        int u = getMethod(method);
+        return readUnsignedShort(u) | readAttributeFlags(u + 6);
+    }
+
+    /**
+     * Returns the name of a method of the class.
+     * 
+     * @param method
+     *            the index of a method, between 0 (inclusive) and
+     *            {@link #getMethodCount getMethodCount} (exclusive).
+     * @return the name of this method.
+     */
+    public String getMethodName(final int method) {
+        return readUTF8(getMethod(method) + 2);
+    }
+
+    /**
+     * Returns the descriptor of a method of the class.
+     * 
+     * @param method
+     *            the index of a method, between 0 (inclusive) and
+     *            {@link #getMethodCount getMethodCount} (exclusive).
+     * @return the descriptor of this method.
+     */
+    public String getMethodDesc(final int method) {
+        return readUTF8(getMethod(method) + 4);
+    }
+
+    /**
+     * Returns a cursor over the instructions of a method of the class.
+     * 
+     * @param method
+     *            the index of a method, between 0 (inclusive) and
+     *            {@link #getMethodCount getMethodCount} (exclusive).
+     * @return a cursor positioned before the first instruction of this method,
+     *         or <tt>null</tt> if this method is abstract or native.
+     */
+    public InsnCursor getInstructions(final int method) {
+        int code = buf.getInt(methods + 8 * method + 4);
+        if (code == 0) {
+            return null;
+        }
+        return new InsnCursor(this, code, buf.getInt(code - 4));
+    }
+
+    /**
+     * Creates a {@link MethodNode} for a method of the class.
+     * 
+     * @param method
+     *            the index of a method, between 0 (inclusive) and
+     *            {@link #getMethodCount getMethodCount} (exclusive).
+     * @param flags
+     *            option flags that can be used to modify the default behavior
+     *            of this method. See {@link ClassReader#accept(ClassVisitor,
+     *            int) ClassReader.accept}.
+     * @return a new method node containing all the elements of this method.
+     */
+    public MethodNode getMethodNode(final int method, final int flags) {
+        final String name = getMethodName(method);
+        final String desc = getMethodDesc(method);
+        final MethodNode[] mn = new MethodNode[1];
+        accept(new ClassVisitor(Opcodes.ASM4) {
+            @Override
+            public MethodVisitor visitMethod(final int access,
+                    final String n, final String d, final String signature,
+                    final String[] exceptions) {
+                if (n.equals(name) && d.equals(desc)) {
+                    mn[0] = new MethodNode(access, n, d, signature, exceptions);
+                    return mn[0];
+                }
+                return null;
+            }
+        }, flags);
+        return mn[0];
+    }
+
+    /**
+     * Makes the given visitor visit the class.
+     * 
+     * @param cv
+     *            the visitor that must visit this class.
+     * @param flags
+     *            option flags that can be used to modify the default behavior
+     *            of this method. See {@link ClassReader#accept(ClassVisitor,
+     *            int) ClassReader.accept}.
+     */
+    public void accept(final ClassVisitor cv, final int flags) {
+        new ClassReader(getBytes()).accept(cv, flags);
+    }
+
+    /**
+     * Returns the class file of the class.
+     * 
+     * @return a copy of the class file of the class.
+     */
+    public byte[] getBytes() {
+        byte[] b = new byte[length];
+        ByteBuffer in = buf.duplicate();
+        in.position(offset);
+        in.get(b);
+        return b;
+    }
+
+    // ------------------------------------------------------------------------
+    // Utility methods, used by InsnCursor
+    // ------------------------------------------------------------------------
+
+    /**
+     * Returns the absolute offset of a method_info structure.
+     * 
+     * @param method
+     *            the index of a method.
+     * @return the absolute offset of this method in {@link #buf buf}.
+     */
+    private int getMethod(final int method) {
+        if (method < 0 || method >= methodCount) {
+            throw new IndexOutOfBoundsException();
+        }
+        return buf.getInt(methods + 8 * method);
+    }
+
+    /**
+     * Skips an attributes table.
+     * 
+     * @param u
+     *            the absolute offset of the attributes_count field.
+     * @return the absolute offset of the byte following the table.
+     */
+    private int skipAttributes(int u) {
+        for (int n = readUnsignedShort(u); n > 0; --n) {
+            u += 6 + readInt(u + 4);
+        }
+        return u + 2;
+    }
+
+    /**
+     * Returns the pseudo access flags corresponding to the Deprecated and
+     * Synthetic attributes of an attributes table. The flags returned for the
+     * Synthetic attribute are the same as those added by {@link ClassReader}.
+     * 
+     * @param u
+     *            the absolute offset of the attributes_count field.
+     * @return the pseudo access flags of this attributes table.
+     */
+    private int readAttributeFlags(int u) {
+        int access = 0;
+        int n = readUnsignedShort(u);
+        for (u += 2; n > 0; --n) {
+            String attrName = readUTF8(u);
+            if ("Deprecated".equals(attrName)) {
+                access |= Opcodes.ACC_DEPRECATED;
+            } else if ("Synthetic".equals(attrName)) {
+                access |= SYNTHETIC_ATTRIBUTE_FLAGS;
+            }
+            u += 6 + readInt(u + 2);
+        }
+        return access;
+    }
+
+    /**
+     * Returns the absolute offset of a constant pool item.
+     * 
+     * @param item
+     *            the index of a constant pool item.
+     * @return the absolute offset in {@link #buf buf} of the byte following
+     *         the tag of this item.
+     */
+    int getItem(final int item) {
+        return buf.getInt(items + 4 * item);
+    }
+
+    /**
+     * Reads a byte value.
+     * 
+     * @param index
+     *            the absolute offset of the value to be read.
+     * @return the read value.
+     */
+    int readByte(final int index) {
+        return buf.get(index) & 0xFF;
+    }
+
+    /**
+     * Reads an unsigned short value.
+     * 
+     * @param index
+     *            the absolute offset of the value to be read.
+     * @return the read value.
+     */
+    int readUnsignedShort(final int index) {
+        return buf.getShort(index) & 0xFFFF;
+    }
+
+    /**
+     * Reads a signed short value.
+     * 
+     * @param index
+     *            the absolute offset of the value to be read.
+     * @return the read value.
+     */
+    short readShort(final int index) {
+        return buf.getShort(index);
+    }
+
+    /**
+     * Reads a signed int value.
+     * 
+     * @param index
+     *            the absolute offset of the value to be read.
+     * @return the read value.
+     */
+    int readInt(final int index) {
+        return buf.getInt(index);
+    }
+
+    /**
+     * Reads an UTF8 string constant pool item.
+     * 
+     * @param index
+     *            the absolute offset of an unsigned short value, whose value is
+     *            the index of an UTF8 constant pool item.
+     * @return the String corresponding to the specified UTF8 item, or
+     *         <tt>null</tt> if the item index is 0.
+     */
+    String readUTF8(final int index) {
+        int item = readUnsignedShort(index);
+        if (item == 0) {
+            return null;
+        }
+        int u = getItem(item);
+        int len = readUnsignedShort(u);
+        if (buf.hasArray()) {
+            return ClassReader.readUTF(buf.array(), buf.arrayOffset() + u + 2,
+                    len, new char[len]);
+        }
+        byte[] b = new byte[len];
+        ByteBuffer in = buf.duplicate();
+        in.position(u + 2);
+        in.get(b);
+        return ClassReader.readUTF(b, 0, len, new char[len]);
+    }
+
+    /**
+     * Reads a class constant pool item.
+     * 
+     * @param index
+     *            the absolute offset of an unsigned short value, whose value is
+     *            the index of a class constant pool item.
+     * @return the String corresponding to the specified class item, or
+     *         <tt>null</tt> if the item index is 0.
+     */
+    String readClass(final int index) {
+        int item = readUnsignedShort(index);
+        return item == 0 ? null : readUTF8(getItem(item));
+    }
+
+    /**
+     * Reads a numeric or string constant pool item.
+     * 
+     * @param item
+     *            the index of a constant pool item.
+     * @return the {@link Integer}, {@link Float}, {@link Long}, {@link Double},
+     *         {@link String}, {@link Type} or {@link Handle} corresponding to
+     *         the given constant pool item.
+     */
+    Object readConst(final int item) {
+        int index = getItem(item);
+        switch (buf.get(index - 1)) {
+        case 3: // INT
+            return new Integer(buf.getInt(index));
+        case 4: // FLOAT
+            return new Float(buf.getFloat(index));
+        case 5: // LONG
+            return new Long(buf.getLong(index));
+        case 6: // DOUBLE
+            return new Double(buf.getDouble(index));
+        case 7: // CLASS
+            return Type.getObjectType(readUTF8(index));
+        case 8: // STR
+            return readUTF8(index);
+        case 16: // MTYPE
+            return Type.getMethodType(readUTF8(index));
+        default: // HANDLE
+            int tag = readByte(index);
+            int cpIndex = getItem(readUnsignedShort(index + 1));
+            String owner = readClass(cpIndex);
+            cpIndex = getItem(readUnsignedShort(cpIndex + 2));
+            return new Handle(tag, owner, readUTF8(cpIndex),
+                    readUTF8(cpIndex + 2));
+        }
+    }
+}
@@ -0,0 +1,255 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.tree;
+
+import java.nio.ByteBuffer;
+
+import org.objectweb.asm.Opcodes;
+
+/**
+ * A store of class files, used to create {@link CompactClassNode}s. The class
+ * files are copied into large buffers, allocated outside the Java heap by
+ * default, together with the offsets of their constant pool items and of
+ * their methods. The only objects kept in the Java heap are these buffers and
+ * the {@link CompactClassNode}s themselves, whose size does not depend on the
+ * size of the corresponding classes. This makes it possible to keep a very
+ * large number of classes in memory, for instance to perform whole program
+ * analyses.
+ */
+public class CompactClassPool {
+
+    /**
+     * The default size of the buffers allocated by this pool.
+     */
+    private static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+    /**
+     * The size of the buffers allocated by this pool. Class files whose size
+     * (plus the size of their tables) is larger than this are stored in a
+     * dedicated buffer.
+     */
+    private final int chunkSize;
+
+    /**
+     * If the buffers of this pool must be allocated outside the Java heap.
+     */
+    private final boolean direct;
+
+    /**
+     * The buffer in which the next class files will be stored. The position of
+     * this buffer is the offset at which the next class file will be stored.
+     */
+    private ByteBuffer chunk;
+
+    /**
+     * Total number of bytes stored in this pool, including the tables.
+     */
+    private long size;
+
+    /**
+     * Constructs a new {@link CompactClassPool} using buffers allocated
+     * outside the Java heap.
+     */
+    public CompactClassPool() {
+        this(DEFAULT_CHUNK_SIZE, true);
+    }
+
+    /**
+     * Constructs a new {@link CompactClassPool}.
+     * 
+     * @param chunkSize
+     *            the size of the buffers to be allocated by this pool.
+     * @param direct
+     *            <tt>true</tt> to allocate these buffers outside the Java
+     *            heap, or <tt>false</tt> to allocate them in the heap.
+     */
+    public CompactClassPool(final int chunkSize, final boolean direct) {
+        this.chunkSize = chunkSize;
+        this.direct = direct;
+    }
+
+    /**
+     * Returns the number of bytes stored in this pool.
+     * 
+     * @return the total size of the class files and of the tables stored in
+     *         this pool.
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * Adds a class to this pool.
+     * 
+     * @param b
+     *            the bytecode of the class to be added.
+     * @return a node representing the added class.
+     */
+    public CompactClassNode add(final byte[] b) {
+        return add(ByteBuffer.wrap(b));
+    }
+
+    /**
+     * Adds a class to this pool. The class bytes are copied, and the given
+     * buffer can therefore be reused after this method returns. Its position
+     * is left unchanged.
+     * 
+     * @param buf
+     *            a buffer containing the class to be added between its
+     *            position and its limit.
+     * @return a node representing the added class.
+     */
+    public synchronized CompactClassNode add(final ByteBuffer buf) {
+        int off = buf.position();
+        int len = buf.remaining();
+        // checks the class version
+        if (buf.getShort(off + 6) > Opcodes.V1_7) {
+            throw new IllegalArgumentException();
+        }
+        // computes the offsets of the constant pool items
+        int itemCount = buf.getShort(off + 8) & 0xFFFF;
+        int[] items = new int[itemCount];
+        int index = off + 10;
+        for (int i = 1; i < itemCount; ++i) {
+            items[i] = index + 1 - off;
+            switch (buf.get(index)) {
+            case 3: // INT
+            case 4: // FLOAT
+            case 9: // FIELD
+            case 10: // METH
+            case 11: // IMETH
+            case 12: // NAME_TYPE
+            case 18: // INDY
+                index += 5;
+                break;
+            case 5: // LONG
+            case 6: // DOUBLE
+                index += 9;
+                ++i;
+                break;
+            case 1: // UTF8
+                index += 3 + (buf.getShort(index + 1) & 0xFFFF);
+                break;
+            case 15: // HANDLE
+                index += 4;
+                break;
+            // case 7: CLASS
+            // case 8: STR
+            // case 16: MTYPE
+            default:
+                index += 3;
+                break;
+            }
+        }
+        int header = index - off;
+        // skips the interfaces and the fields
+        index += 8 + 2 * (buf.getShort(index + 6) & 0xFFFF);
+        int n = buf.getShort(index) & 0xFFFF;
+        index += 2;
+        for (int i = 0; i < n; ++i) {
+            index = skipAttributes(buf, index + 6);
+        }
+        // computes the offsets of the methods and of their code
+        n = buf.getShort(index) & 0xFFFF;
+        index += 2;
+        int[] methods = new int[2 * n];
+        for (int i = 0; i < n; ++i) {
+            methods[2 * i] = index - off;
+            int attributeCount = buf.getShort(index + 6) & 0xFFFF;
+            index += 8;
+            for (int j = 0; j < attributeCount; ++j) {
+                int name = off + items[buf.getShort(index) & 0xFFFF];
+                if (buf.getShort(name) == 4 && buf.get(name + 2) == 'C'
+                        && buf.get(name + 3) == 'o'
+                        && buf.get(name + 4) == 'd'
+                        && buf.get(name + 5) == 'e') {
+                    // skips attribute_name_index, attribute_length,
+                    // max_stack, max_locals and code_length
+                    methods[2 * i + 1] = index + 14 - off;
+                }
+                index += 6 + buf.getInt(index + 2);
+            }
+        }
+
+        // copies the class and its tables in a buffer
+        int total = len + 4 * (itemCount + methods.length);
+        ByteBuffer dst;
+        if (total > chunkSize) {
+            dst = allocate(total);
+        } else {
+            if (chunk == null || chunk.remaining() < total) {
+                chunk = allocate(chunkSize);
+            }
+            dst = chunk;
+        }
+        int base = dst.position();
+        dst.put(buf.duplicate());
+        for (int i = 0; i < itemCount; ++i) {
+            dst.putInt(items[i] == 0 ? 0 : base + items[i]);
+        }
+        for (int i = 0; i < methods.length; ++i) {
+            dst.putInt(methods[i] == 0 ? 0 : base + methods[i]);
+        }
+        size += total;
+        return new CompactClassNode(dst, base, len, base + len, base + header,
+                base + len + 4 * itemCount, n);
+    }
+
+    /**
+     * Skips the attributes of a field or method.
+     * 
+     * @param buf
+     *            a buffer containing a class.
+     * @param index
+     *            the absolute offset of the attributes_count field of a field
+     *            or method in this buffer.
+     * @return the absolute offset of the byte following these attributes.
+     */
+    private static int skipAttributes(final ByteBuffer buf, int index) {
+        int n = buf.getShort(index) & 0xFFFF;
+        index += 2;
+        for (int i = 0; i < n; ++i) {
+            index += 6 + buf.getInt(index + 2);
+        }
+        return index;
+    }
+
+    /**
+     * Allocates a new buffer.
+     * 
+     * @param size
+     *            the size of the buffer to be allocated.
+     * @return a new buffer of the given size.
+     */
+    private ByteBuffer allocate(final int size) {
+        return direct ? ByteBuffer.allocateDirect(size) : ByteBuffer
+                .allocate(size);
+    }
+}
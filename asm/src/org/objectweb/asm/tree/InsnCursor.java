@@ -0,0 +1,505 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.tree;
+
+import org.objectweb.asm.Opcodes;
+
+/**
+ * A cursor over the instructions of a method of a {@link CompactClassNode}.
+ * The instructions are decoded directly from the class file, without creating
+ * any object per instruction. Instructions with several forms in the class
+ * file (such as ILOAD_0, WIDE ILOAD, LDC_W or GOTO_W) are normalized as in
+ * {@link MethodNode}, i.e. to ILOAD, LDC, GOTO, etc. The methods returning an
+ * instruction argument must only be called for the instructions which have
+ * this argument. Jump targets are returned as bytecode offsets, i.e. as
+ * offsets relative to the beginning of the method's code.
+ */
+public class InsnCursor {
+
+    private static final int NOARG_INSN = 0;
+
+    private static final int SBYTE_INSN = 1;
+
+    private static final int SHORT_INSN = 2;
+
+    private static final int VAR_INSN = 3;
+
+    private static final int IMPLVAR_INSN = 4;
+
+    private static final int TYPE_INSN = 5;
+
+    private static final int FIELDORMETH_INSN = 6;
+
+    private static final int ITFMETH_INSN = 7;
+
+    private static final int INDYMETH_INSN = 8;
+
+    private static final int LABEL_INSN = 9;
+
+    private static final int LABELW_INSN = 10;
+
+    private static final int LDC_INSN = 11;
+
+    private static final int LDCW_INSN = 12;
+
+    private static final int IINC_INSN = 13;
+
+    private static final int TABL_INSN = 14;
+
+    private static final int LOOK_INSN = 15;
+
+    private static final int WIDE_INSN = 17;
+
+    /**
+     * The instruction kinds of the JVM opcodes (see the same table in
+     * ClassWriter).
+     */
+    private static final byte[] KIND;
+
+    static {
+        String s = "AAAAAAAAAAAAAAAABCLMMDDDDDEEEEEEEEEEEEEEEEEEEEAAAAAAAADD"
+                + "DDDEEEEEEEEEEEEEEEEEEEEAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAA"
+                + "AAAAAAAAAAAAAAAAANAAAAAAAAAAAAAAAAAAAAJJJJJJJJJJJJJJJJDOPAA"
+                + "AAAAGGGGGGGHIFBFAAFFAARQJJKKJJJJJJJJJJJJJJJJJJ";
+        KIND = new byte[s.length()];
+        for (int i = 0; i < KIND.length; ++i) {
+            KIND[i] = (byte) (s.charAt(i) - 'A');
+        }
+    }
+
+    /**
+     * The class containing the instructions.
+     */
+    private final CompactClassNode cn;
+
+    /**
+     * The absolute offset of the first instruction.
+     */
+    private final int code;
+
+    /**
+     * The absolute offset of the end of the code.
+     */
+    private final int end;
+
+    /**
+     * The absolute offset of the current instruction.
+     */
+    private int u;
+
+    /**
+     * The absolute offset of the next instruction.
+     */
+    private int next;
+
+    /**
+     * The kind of the current instruction.
+     */
+    private int kind;
+
+    /**
+     * The normalized opcode of the current instruction.
+     */
+    private int opcode;
+
+    /**
+     * The type of the current instruction (see {@link #getType getType}).
+     */
+    private int type;
+
+    /**
+     * Constructs a new {@link InsnCursor}.
+     * 
+     * @param cn
+     *            the class containing the instructions.
+     * @param code
+     *            the absolute offset of the first instruction.
+     * @param codeLength
+     *            the length of the code.
+     */
+    InsnCursor(final CompactClassNode cn, final int code,
+            final int codeLength) {
+        this.cn = cn;
+        this.code = code;
+        this.end = code + codeLength;
+        reset();
+    }
+
+    /**
+     * Moves this cursor before the first instruction.
+     */
+    public void reset() {
+        u = -1;
+        next = code;
+    }
+
+    /**
+     * Returns the length of the method's code.
+     * 
+     * @return the length in bytes of the method's code.
+     */
+    public int getCodeLength() {
+        return end - code;
+    }
+
+    /**
+     * Moves this cursor to the next instruction.
+     * 
+     * @return <tt>true</tt> if there is a next instruction, or <tt>false</tt>
+     *         if the cursor is at the end of the code.
+     */
+    public boolean next() {
+        if (next >= end) {
+            u = end;
+            return false;
+        }
+        int u = next;
+        this.u = u;
+        int op = cn.readByte(u);
+        opcode = op;
+        kind = KIND[op];
+        switch (kind) {
+        case NOARG_INSN:
+            type = AbstractInsnNode.INSN;
+            next = u + 1;
+            break;
+        case IMPLVAR_INSN:
+            if (op > Opcodes.ISTORE) {
+                opcode = Opcodes.ISTORE + ((op - 59) >> 2); // ISTORE_0
+            } else {
+                opcode = Opcodes.ILOAD + ((op - 26) >> 2); // ILOAD_0
+            }
+            type = AbstractInsnNode.VAR_INSN;
+            next = u + 1;
+            break;
+        case LABEL_INSN:
+            type = AbstractInsnNode.JUMP_INSN;
+            next = u + 3;
+            break;
+        case LABELW_INSN:
+            opcode = op - 33;
+            type = AbstractInsnNode.JUMP_INSN;
+            next = u + 5;
+            break;
+        case WIDE_INSN:
+            opcode = cn.readByte(u + 1);
+            if (opcode == Opcodes.IINC) {
+                type = AbstractInsnNode.IINC_INSN;
+                next = u + 6;
+            } else {
+                type = AbstractInsnNode.VAR_INSN;
+                next = u + 4;
+            }
+            break;
+        case TABL_INSN: {
+            int p = getSwitchData();
+            type = AbstractInsnNode.TABLESWITCH_INSN;
+            next = p + 16 + 4 * (cn.readInt(p + 8) - cn.readInt(p + 4));
+            break;
+        }
+        case LOOK_INSN: {
+            int p = getSwitchData();
+            type = AbstractInsnNode.LOOKUPSWITCH_INSN;
+            next = p + 8 + 8 * cn.readInt(p + 4);
+            break;
+        }
+        case VAR_INSN:
+            type = AbstractInsnNode.VAR_INSN;
+            next = u + 2;
+            break;
+        case SBYTE_INSN:
+            type = AbstractInsnNode.INT_INSN;
+            next = u + 2;
+            break;
+        case SHORT_INSN:
+            type = AbstractInsnNode.INT_INSN;
+            next = u + 3;
+            break;
+        case LDC_INSN:
+            type = AbstractInsnNode.LDC_INSN;
+            next = u + 2;
+            break;
+        case LDCW_INSN:
+            opcode = Opcodes.LDC;
+            type = AbstractInsnNode.LDC_INSN;
+            next = u + 3;
+            break;
+        case FIELDORMETH_INSN:
+        case ITFMETH_INSN:
+            if (op < Opcodes.INVOKEVIRTUAL) {
+                type = AbstractInsnNode.FIELD_INSN;
+            } else {
+                type = AbstractInsnNode.METHOD_INSN;
+            }
+            next = u + (op == Opcodes.INVOKEINTERFACE ? 5 : 3);
+            break;
+        case INDYMETH_INSN:
+            type = AbstractInsnNode.INVOKE_DYNAMIC_INSN;
+            next = u + 5;
+            break;
+        case TYPE_INSN:
+            type = AbstractInsnNode.TYPE_INSN;
+            next = u + 3;
+            break;
+        case IINC_INSN:
+            type = AbstractInsnNode.IINC_INSN;
+            next = u + 3;
+            break;
+        // case MANA_INSN:
+        default:
+            type = AbstractInsnNode.MULTIANEWARRAY_INSN;
+            next = u + 4;
+            break;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the bytecode offset of the current instruction.
+     * 
+     * @return the offset of the current instruction, relative to the
+     *         beginning of the method's code.
+     */
+    public int getOffset() {
+        return u - code;
+    }
+
+    /**
+     * Returns the opcode of the current instruction.
+     * 
+     * @return the normalized opcode of the current instruction.
+     */
+    public int getOpcode() {
+        return opcode;
+    }
+
+    /**
+     * Returns the type of the current instruction.
+     * 
+     * @return the type of the current instruction, i.e. one of the
+     *         {@link AbstractInsnNode} constants (but never LABEL, FRAME or
+     *         LINE).
+     */
+    public int getType() {
+        return type;
+    }
+
+    /**
+     * Returns the operand of the current BIPUSH, SIPUSH or NEWARRAY
+     * instruction.
+     * 
+     * @return the operand of the current instruction.
+     */
+    public int getOperand() {
+        if (kind == SBYTE_INSN) {
+            return (byte) cn.readByte(u + 1);
+        }
+        return cn.readShort(u + 1);
+    }
+
+    /**
+     * Returns the local variable of the current variable or IINC instruction.
+     * 
+     * @return the index of the local variable loaded, stored or incremented
+     *         by the current instruction.
+     */
+    public int getVar() {
+        switch (kind) {
+        case IMPLVAR_INSN: {
+            int op = cn.readByte(u);
+            return (op - (op > Opcodes.ISTORE ? 59 : 26)) & 3;
+        }
+        case WIDE_INSN:
+            return cn.readUnsignedShort(u + 2);
+        default:
+            return cn.readByte(u + 1);
+        }
+    }
+
+    /**
+     * Returns the increment of the current IINC instruction.
+     * 
+     * @return the increment of the current instruction.
+     */
+    public int getIncrement() {
+        if (kind == WIDE_INSN) {
+            return cn.readShort(u + 4);
+        }
+        return (byte) cn.readByte(u + 2);
+    }
+
+    /**
+     * Returns the target of the current jump instruction.
+     * 
+     * @return the bytecode offset of the jump target.
+     */
+    public int getTarget() {
+        if (kind == LABELW_INSN) {
+            return u - code + cn.readInt(u + 1);
+        }
+        return u - code + cn.readShort(u + 1);
+    }
+
+    /**
+     * Returns the owner of the field or method of the current field or method
+     * instruction.
+     * 
+     * @return the internal name of the field or method owner class.
+     */
+    public String getOwner() {
+        return cn.readClass(cn.getItem(cn.readUnsignedShort(u + 1)));
+    }
+
+    /**
+     * Returns the name of the field or method of the current field, method or
+     * INVOKEDYNAMIC instruction.
+     * 
+     * @return the name of the field or method.
+     */
+    public String getName() {
+        return cn.readUTF8(getNameAndType());
+    }
+
+    /**
+     * Returns the descriptor of the current field, method, INVOKEDYNAMIC, type
+     * or MULTIANEWARRAY instruction. For type instructions, this is the type
+     * operand (see {@link TypeInsnNode#desc}).
+     * 
+     * @return the descriptor or the type operand of the current instruction.
+     */
+    public String getDesc() {
+        if (type == AbstractInsnNode.TYPE_INSN
+                || type == AbstractInsnNode.MULTIANEWARRAY_INSN) {
+            return cn.readClass(u + 1);
+        }
+        return cn.readUTF8(getNameAndType() + 2);
+    }
+
+    /**
+     * Returns the number of dimensions of the current MULTIANEWARRAY
+     * instruction.
+     * 
+     * @return the number of dimensions of the array to allocate.
+     */
+    public int getDimensions() {
+        return cn.readByte(u + 3);
+    }
+
+    /**
+     * Returns the constant loaded by the current LDC instruction.
+     * 
+     * @return the constant to be loaded on the stack (see
+     *         {@link LdcInsnNode#cst}).
+     */
+    public Object getConstant() {
+        if (kind == LDC_INSN) {
+            return cn.readConst(cn.readByte(u + 1));
+        }
+        return cn.readConst(cn.readUnsignedShort(u + 1));
+    }
+
+    /**
+     * Returns the default target of the current switch instruction.
+     * 
+     * @return the bytecode offset of the default target.
+     */
+    public int getDefault() {
+        return u - code + cn.readInt(getSwitchData());
+    }
+
+    /**
+     * Returns the keys of the current switch instruction.
+     * 
+     * @return the keys of the current switch instruction, in the order they
+     *         appear in the class file (i.e. in increasing order).
+     */
+    public int[] getKeys() {
+        int p = getSwitchData();
+        int[] keys;
+        if (kind == TABL_INSN) {
+            int min = cn.readInt(p + 4);
+            keys = new int[cn.readInt(p + 8) - min + 1];
+            for (int i = 0; i < keys.length; ++i) {
+                keys[i] = min + i;
+            }
+        } else {
+            keys = new int[cn.readInt(p + 4)];
+            for (int i = 0; i < keys.length; ++i) {
+                keys[i] = cn.readInt(p + 8 + 8 * i);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Returns the targets of the current switch instruction.
+     * 
+     * @return the bytecode offsets of the targets of the current switch
+     *         instruction, for the keys returned by {@link #getKeys getKeys}.
+     */
+    public int[] getTargets() {
+        int p = getSwitchData();
+        int[] targets;
+        if (kind == TABL_INSN) {
+            targets = new int[cn.readInt(p + 8) - cn.readInt(p + 4) + 1];
+            for (int i = 0; i < targets.length; ++i) {
+                targets[i] = u - code + cn.readInt(p + 12 + 4 * i);
+            }
+        } else {
+            targets = new int[cn.readInt(p + 4)];
+            for (int i = 0; i < targets.length; ++i) {
+                targets[i] = u - code + cn.readInt(p + 12 + 8 * i);
+            }
+        }
+        return targets;
+    }
+
+    /**
+     * Returns the absolute offset of the NameAndType item of the current
+     * field, method or INVOKEDYNAMIC instruction.
+     * 
+     * @return the absolute offset of a NameAndType item.
+     */
+    private int getNameAndType() {
+        int item = cn.getItem(cn.readUnsignedShort(u + 1));
+        return cn.getItem(cn.readUnsignedShort(item + 2));
+    }
+
+    /**
+     * Returns the absolute offset of the data of the current switch
+     * instruction, after the padding bytes.
+     * 
+     * @return the absolute offset of the default target of the current switch
+     *         instruction.
+     */
+    private int getSwitchData() {
+        return u + 4 - ((u - code) & 3);
+    }
+}
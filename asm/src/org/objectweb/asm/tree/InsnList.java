@@ -29,6 +29,7 @@
  */
 package org.objectweb.asm.tree;
 
+import java.util.Arrays;
 import java.util.ListIterator;
 import java.util.NoSuchElementException;
 
@@ -36,7 +37,13 @@ import org.objectweb.asm.MethodVisitor;
 
 /**
  * A doubly linked list of {@link AbstractInsnNode} objects. <i>This
- * implementation is not thread safe</i>.
+ * implementation is not thread safe</i>. By default the indexes of the
+ * instructions are computed on demand, and are invalidated by any modification
+ * of the list. In indexed mode (see {@link #setIndexed setIndexed}) they are
+ * kept up to date in a gap buffer instead, so that {@link #get get},
+ * {@link #indexOf indexOf} and {@link #contains contains} run in constant time
+ * even if they are interleaved with modifications, and that modifications
+ * close to each other run in constant amortized time.
  */
 public class InsnList {
 
@@ -61,6 +68,26 @@ public class InsnList {
      */
     AbstractInsnNode[] cache;
 
+    /**
+     * The instructions of this list in indexed mode, or <tt>null</tt>. This
+     * array is a gap buffer: the instruction of index <tt>i</tt> is stored at
+     * position <tt>i</tt> if <tt>i &lt; gapStart</tt>, and at position
+     * <tt>i + gapEnd - gapStart</tt> otherwise. In indexed mode the
+     * {@link AbstractInsnNode#index index} field of each instruction is its
+     * position in this array.
+     */
+    private AbstractInsnNode[] buffer;
+
+    /**
+     * The start of the gap of {@link #buffer}, inclusive.
+     */
+    private int gapStart;
+
+    /**
+     * The end of the gap of {@link #buffer}, exclusive.
+     */
+    private int gapEnd;
+
     /**
      * Returns the number of instructions in this list.
      * 
@@ -106,6 +133,9 @@ public class InsnList {
         if (index < 0 || index >= size) {
             throw new IndexOutOfBoundsException();
         }
+        if (buffer != null) {
+            return buffer[index < gapStart ? index : index + gapEnd - gapStart];
+        }
         if (cache == null) {
             cache = toArray();
         }
@@ -114,14 +144,19 @@ public class InsnList {
 
     /**
      * Returns <tt>true</tt> if the given instruction belongs to this list. This
-     * method always scans the instructions of this list until it finds the
-     * given instruction or reaches the end of the list.
+     * method scans the instructions of this list until it finds the given
+     * instruction or reaches the end of the list, except in indexed mode, where
+     * it runs in constant time.
      * 
      * @param insn
      *            an instruction.
      * @return <tt>true</tt> if the given instruction belongs to this list.
      */
     public boolean contains(final AbstractInsnNode insn) {
+        if (buffer != null) {
+            int i = insn.index;
+            return i >= 0 && i < buffer.length && buffer[i] == insn;
+        }
         AbstractInsnNode i = first;
         while (i != null && i != insn) {
             i = i.next;
@@ -134,7 +169,7 @@ public class InsnList {
      * builds a cache of the instruction indexes to avoid scanning the whole
      * list each time it is called. Once the cache is built, this method run in
      * constant time. The cache is invalidated by all the methods that modify
-     * the list.
+     * the list, except in indexed mode.
      * 
      * @param insn
      *            an instruction <i>of this list</i>.
@@ -144,6 +179,10 @@ public class InsnList {
      *         instruction belongs to an instruction list or not.
      */
     public int indexOf(final AbstractInsnNode insn) {
+        if (buffer != null) {
+            int i = insn.index;
+            return i < gapStart ? i : i - (gapEnd - gapStart);
+        }
         if (cache == null) {
             cache = toArray();
         }
@@ -192,6 +231,11 @@ public class InsnList {
         int i = 0;
         AbstractInsnNode elem = first;
         AbstractInsnNode[] insns = new AbstractInsnNode[size];
+        if (buffer != null) {
+            System.arraycopy(buffer, 0, insns, 0, gapStart);
+            System.arraycopy(buffer, gapEnd, insns, gapStart, size - gapStart);
+            return insns;
+        }
         while (elem != null) {
             insns[i] = elem;
             elem.index = i++;
@@ -224,9 +268,13 @@ public class InsnList {
         } else {
             first = insn;
         }
-        if (cache != null) {
+        if (cache != null || buffer != null) {
             int index = location.index;
-            cache[index] = insn;
+            if (buffer != null) {
+                buffer[index] = insn;
+            } else {
+                cache[index] = insn;
+            }
             insn.index = index;
         } else {
             insn.index = 0; // insn now belongs to an InsnList
@@ -255,6 +303,9 @@ public class InsnList {
         last = insn;
         cache = null;
         insn.index = 0; // insn now belongs to an InsnList
+        if (buffer != null) {
+            insertInBuffer(size - 1, insn, 1);
+        }
     }
 
     /**
@@ -279,6 +330,9 @@ public class InsnList {
             last = insns.last;
         }
         cache = null;
+        if (buffer != null) {
+            insertInBuffer(size - insns.size, insns.first, insns.size);
+        }
         insns.removeAll(false);
     }
 
@@ -301,6 +355,9 @@ public class InsnList {
         first = insn;
         cache = null;
         insn.index = 0; // insn now belongs to an InsnList
+        if (buffer != null) {
+            insertInBuffer(0, insn, 1);
+        }
     }
 
     /**
@@ -325,6 +382,9 @@ public class InsnList {
             first = insns.first;
         }
         cache = null;
+        if (buffer != null) {
+            insertInBuffer(0, insns.first, insns.size);
+        }
         insns.removeAll(false);
     }
 
@@ -352,6 +412,9 @@ public class InsnList {
         insn.prev = location;
         cache = null;
         insn.index = 0; // insn now belongs to an InsnList
+        if (buffer != null) {
+            insertInBuffer(indexOf(location) + 1, insn, 1);
+        }
     }
 
     /**
@@ -381,6 +444,9 @@ public class InsnList {
         ilast.next = next;
         ifirst.prev = location;
         cache = null;
+        if (buffer != null) {
+            insertInBuffer(indexOf(location) + 1, ifirst, insns.size);
+        }
         insns.removeAll(false);
     }
 
@@ -408,6 +474,9 @@ public class InsnList {
         insn.prev = prev;
         cache = null;
         insn.index = 0; // insn now belongs to an InsnList
+        if (buffer != null) {
+            insertInBuffer(indexOf(location), insn, 1);
+        }
     }
 
     /**
@@ -438,6 +507,9 @@ public class InsnList {
         ilast.next = location;
         ifirst.prev = prev;
         cache = null;
+        if (buffer != null) {
+            insertInBuffer(indexOf(location), ifirst, insns.size);
+        }
         insns.removeAll(false);
     }
 
@@ -469,6 +541,9 @@ public class InsnList {
             }
         }
         cache = null;
+        if (buffer != null) {
+            removeFromBuffer(indexOf(insn));
+        }
         insn.index = -1; // insn no longer belongs to an InsnList
         insn.prev = null;
         insn.next = null;
@@ -496,6 +571,11 @@ public class InsnList {
         first = null;
         last = null;
         cache = null;
+        if (buffer != null) {
+            buffer = new AbstractInsnNode[buffer.length];
+            gapStart = 0;
+            gapEnd = buffer.length;
+        }
     }
 
     /**
@@ -505,6 +585,122 @@ public class InsnList {
         removeAll(false);
     }
 
+    /**
+     * Returns <tt>true</tt> if this list is in indexed mode.
+     * 
+     * @return <tt>true</tt> if this list is in indexed mode.
+     * @see #setIndexed setIndexed
+     */
+    public boolean isIndexed() {
+        return buffer != null;
+    }
+
+    /**
+     * Sets the indexed mode of this list. In this mode the instructions are
+     * also stored in a gap buffer, i.e. in an array with a gap at the position
+     * of the last modification. This makes {@link #get get},
+     * {@link #indexOf indexOf} and {@link #contains contains} run in constant
+     * time, whatever the modifications of the list. The cost of a modification
+     * is proportional to the distance between its position and the position
+     * of the previous modification, which is constant for transformations that
+     * modify the list sequentially (for instance from an iterator), but can be
+     * larger than in the default mode for transformations that modify the list
+     * at random positions.
+     * 
+     * @param indexed
+     *            <tt>true</tt> to switch to indexed mode, <tt>false</tt> to
+     *            switch to the default mode.
+     */
+    public void setIndexed(final boolean indexed) {
+        if (indexed && buffer == null) {
+            AbstractInsnNode[] insns = toArray();
+            buffer = new AbstractInsnNode[Math.max(16, 2 * size)];
+            System.arraycopy(insns, 0, buffer, 0, size);
+            gapStart = size;
+            gapEnd = buffer.length;
+            cache = null;
+        } else if (!indexed && buffer != null) {
+            buffer = null;
+            cache = null;
+        }
+    }
+
+    /**
+     * Moves the gap of {@link #buffer} to the given index, and updates the
+     * index of the moved instructions.
+     * 
+     * @param index
+     *            the new start of the gap.
+     */
+    private void moveGap(final int index) {
+        AbstractInsnNode[] buffer = this.buffer;
+        int gap = gapEnd - gapStart;
+        if (index < gapStart) {
+            int n = gapStart - index;
+            System.arraycopy(buffer, index, buffer, index + gap, n);
+            for (int i = index + gap; i < gapEnd; ++i) {
+                buffer[i].index = i;
+            }
+            Arrays.fill(buffer, index, index + Math.min(n, gap), null);
+        } else if (index > gapStart) {
+            int n = index - gapStart;
+            System.arraycopy(buffer, gapEnd, buffer, gapStart, n);
+            for (int i = gapStart; i < index; ++i) {
+                buffer[i].index = i;
+            }
+            Arrays.fill(buffer, Math.max(gapEnd, index), gapEnd + n, null);
+        } else {
+            return;
+        }
+        gapStart = index;
+        gapEnd = index + gap;
+    }
+
+    /**
+     * Inserts instructions in {@link #buffer}.
+     * 
+     * @param index
+     *            the index of the first inserted instruction in this list.
+     * @param insn
+     *            the first inserted instruction. The other inserted
+     *            instructions are its successors.
+     * @param n
+     *            the number of inserted instructions.
+     */
+    private void insertInBuffer(final int index, AbstractInsnNode insn,
+            final int n) {
+        moveGap(index);
+        if (gapEnd - gapStart < n) {
+            int length = buffer.length;
+            int newLength = Math.max(2 * length, length + n);
+            AbstractInsnNode[] newBuffer = new AbstractInsnNode[newLength];
+            int tail = length - gapEnd;
+            System.arraycopy(buffer, 0, newBuffer, 0, gapStart);
+            System.arraycopy(buffer, gapEnd, newBuffer, newLength - tail, tail);
+            for (int i = newLength - tail; i < newLength; ++i) {
+                newBuffer[i].index = i;
+            }
+            buffer = newBuffer;
+            gapEnd = newLength - tail;
+        }
+        for (int i = 0; i < n; ++i) {
+            buffer[gapStart] = insn;
+            insn.index = gapStart++;
+            insn = insn.next;
+        }
+    }
+
+    /**
+     * Removes an instruction from {@link #buffer}.
+     * 
+     * @param index
+     *            the index of the removed instruction in this list.
+     */
+    private void removeFromBuffer(final int index) {
+        moveGap(index);
+        buffer[gapEnd++] = null;
+    }
+
     /**
      * Reset all labels in the instruction list. This method should be called
      * before reusing same instructions list between several
@@ -571,20 +767,14 @@ public class InsnList {
             if (next == null) {
                 return size();
             }
-            if (cache == null) {
-                cache = toArray();
-            }
-            return next.index;
+            return indexOf(next);
         }
 
         public int previousIndex() {
             if (prev == null) {
                 return -1;
             }
-            if (cache == null) {
-                cache = toArray();
-            }
-            return prev.index;
+            return indexOf(prev);
         }
 
         public void add(Object o) {
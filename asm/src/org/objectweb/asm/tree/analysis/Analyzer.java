@@ -58,8 +58,50 @@ import org.objectweb.asm.tree.VarInsnNode;
  */
 public class Analyzer<V extends Value> implements Opcodes {
 
+    /**
+     * Flag to share the local variables of the computed frames between
+     * consecutive instructions, as long as they are not modified. This reduces
+     * the memory used by the frames of methods with many local variables and
+     * instructions. The frames must be created with {@link #newFrame(Frame)},
+     * or with the {@link Frame#Frame(Frame)} constructor, for this flag to take
+     * effect.
+     * 
+     * @see #Analyzer(Interpreter, int)
+     */
+    public static final int COPY_ON_WRITE = 1;
+
+    /**
+     * Flag to store the computed frames only at the beginning of the basic
+     * blocks, i.e. at jump targets, at exception handlers and after the
+     * instructions that do not fall through to the next one. The frames of the
+     * other instructions are then <tt>null</tt> in the array returned by
+     * {@link #analyze analyze} and {@link #getFrames getFrames}, and are
+     * recomputed on demand by {@link #getFrame getFrame}. This reduces the
+     * memory used by the frames of large methods, which then depends on the
+     * number of basic blocks instead of the number of instructions. This flag
+     * is ignored for methods containing JSR instructions.
+     * 
+     * @see #Analyzer(Interpreter, int)
+     */
+    public static final int SPARSE_FRAMES = 2;
+
+    /**
+     * Flag to process the instructions that must be (re)analyzed in reverse
+     * postorder of the control flow graph, instead of in last in first out
+     * order. With this order the predecessors of an instruction are analyzed
+     * before it, except for back edges, which generally reduces the number of
+     * times each instruction is analyzed before a fix point is reached, in
+     * methods with many loops. The computed frames are the same in both cases.
+     * 
+     * @see #Analyzer(Interpreter, int)
+     * @see #endAnalysis endAnalysis
+     */
+    public static final int REVERSE_POSTORDER = 4;
+
     private final Interpreter<V> interpreter;
 
+    private final int flags;
+
     private int n;
 
     private InsnList insns;
@@ -68,6 +110,8 @@ public class Analyzer<V extends Value> implements Opcodes {
 
     private Frame<V>[] frames;
 
+    private boolean[] entries;
+
     private Subroutine[] subroutines;
 
     private boolean[] queued;
@@ -76,6 +120,10 @@ public class Analyzer<V extends Value> implements Opcodes {
 
     private int top;
 
+    private int[] postorder;
+
+    private int merges;
+
     /**
      * Constructs a new {@link Analyzer}.
      * 
@@ -84,7 +132,23 @@ public class Analyzer<V extends Value> implements Opcodes {
      *            bytecode instructions.
      */
     public Analyzer(final Interpreter<V> interpreter) {
+        this(interpreter, 0);
+    }
+
+    /**
+     * Constructs a new {@link Analyzer}.
+     * 
+     * @param interpreter
+     *            the interpreter to be used to symbolically interpret the
+     *            bytecode instructions.
+     * @param flags
+     *            option flags that can be used to modify the default behavior
+     *            of this class. See {@link #COPY_ON_WRITE},
+     *            {@link #SPARSE_FRAMES}, {@link #REVERSE_POSTORDER}.
+     */
+    public Analyzer(final Interpreter<V> interpreter, final int flags) {
         this.interpreter = interpreter;
+        this.flags = flags;
     }
 
     /**
@@ -98,12 +162,15 @@ public class Analyzer<V extends Value> implements Opcodes {
      *         instruction of the method. The size of the returned array is
      *         equal to the number of instructions (and labels) of the method. A
      *         given frame is <tt>null</tt> if and only if the corresponding
-     *         instruction cannot be reached (dead code).
+     *         instruction cannot be reached (dead code), or if it is not at
+     *         the beginning of a basic block with the {@link #SPARSE_FRAMES}
+     *         option.
      * @throws AnalyzerException
      *             if a problem occurs during the analysis.
      */
     public Frame<V>[] analyze(final String owner, final MethodNode m)
             throws AnalyzerException {
+        entries = null;
         if ((m.access & (ACC_ABSTRACT | ACC_NATIVE)) != 0) {
             frames = (Frame<V>[]) new Frame<?>[0];
             return frames;
@@ -116,6 +183,8 @@ public class Analyzer<V extends Value> implements Opcodes {
         queued = new boolean[n];
         queue = new int[n];
         top = 0;
+        postorder = null;
+        merges = 0;
 
         // computes exception handlers for each instruction
         for (int i = 0; i < m.tryCatchBlocks.size(); ++i) {
@@ -154,9 +223,23 @@ public class Analyzer<V extends Value> implements Opcodes {
             }
         }
 
+        // computes the beginning of the basic blocks, if needed
+        if ((flags & SPARSE_FRAMES) != 0 && subroutineHeads.isEmpty()) {
+            findEntries(m);
+        }
+
+        // computes the reverse postorder of the instructions, if needed
+        if ((flags & REVERSE_POSTORDER) != 0) {
+            findPostorder();
+        }
+
         // initializes the data structures for the control flow analysis
         Frame<V> current = newFrame(m.maxLocals, m.maxStack);
         Frame<V> handler = newFrame(m.maxLocals, m.maxStack);
+        Frame<V> next = newFrame(m.maxLocals, m.maxStack);
+        current.copyOnWrite = (flags & COPY_ON_WRITE) != 0;
+        handler.copyOnWrite = (flags & COPY_ON_WRITE) != 0;
+        next.copyOnWrite = (flags & COPY_ON_WRITE) != 0;
         current.setReturn(interpreter.newValue(Type.getReturnType(m.desc)));
         Type[] args = Type.getArgumentTypes(m.desc);
         int local = 0;
@@ -178,11 +261,25 @@ public class Analyzer<V extends Value> implements Opcodes {
         init(owner, m);
 
         // control flow analysis
-        while (top > 0) {
-            int insn = queue[--top];
-            Frame<V> f = frames[insn];
-            Subroutine subroutine = subroutines[insn];
-            queued[insn] = false;
+        int iterations = 0;
+        int nextInsn = -1;
+        while (top > 0 || nextInsn != -1) {
+            ++iterations;
+            int insn;
+            Frame<V> f;
+            Subroutine subroutine;
+            if (nextInsn != -1) {
+                // continues the current basic block (only with SPARSE_FRAMES)
+                insn = nextInsn;
+                f = next.init(current);
+                subroutine = null;
+                nextInsn = -1;
+            } else {
+                insn = poll();
+                f = frames[insn];
+                subroutine = subroutines[insn];
+                queued[insn] = false;
+            }
 
             AbstractInsnNode insnNode = null;
             try {
@@ -193,7 +290,12 @@ public class Analyzer<V extends Value> implements Opcodes {
                 if (insnType == AbstractInsnNode.LABEL
                         || insnType == AbstractInsnNode.LINE
                         || insnType == AbstractInsnNode.FRAME) {
-                    merge(insn + 1, f, subroutine);
+                    if (isInBlock(insn + 1)) {
+                        current.init(f);
+                        nextInsn = insn + 1;
+                    } else {
+                        merge(insn + 1, f, subroutine);
+                    }
                     newControlFlowEdge(insn, insn + 1);
                 } else {
                     current.init(f).execute(insnNode, interpreter);
@@ -265,7 +367,11 @@ public class Analyzer<V extends Value> implements Opcodes {
                                 subroutine.access[var] = true;
                             }
                         }
-                        merge(insn + 1, current, subroutine);
+                        if (isInBlock(insn + 1)) {
+                            nextInsn = insn + 1;
+                        } else {
+                            merge(insn + 1, current, subroutine);
+                        }
                         newControlFlowEdge(insn, insn + 1);
                     }
                 }
@@ -298,9 +404,196 @@ public class Analyzer<V extends Value> implements Opcodes {
             }
         }
 
+        endAnalysis(m, iterations, merges);
         return frames;
     }
 
+    /**
+     * Computes the postorder number of each instruction in the control flow
+     * graph, in {@link #postorder}, with an iterative depth first search.
+     * Instructions that cannot be reached have a -1 postorder number.
+     */
+    private void findPostorder() {
+        postorder = new int[n];
+        for (int i = 0; i < n; ++i) {
+            postorder[i] = -1;
+        }
+        // stack of instructions to visit, or of ~insn for the instructions
+        // whose successors have all been visited
+        int[] stack = new int[16];
+        int size = 0;
+        int count = 0;
+        stack[size++] = 0;
+        while (size > 0) {
+            int insn = stack[--size];
+            if (insn < 0) {
+                postorder[~insn] = count++;
+                continue;
+            }
+            if (insn >= n || postorder[insn] != -1) {
+                continue;
+            }
+            // -2 marks the instructions that are being visited
+            postorder[insn] = -2;
+            AbstractInsnNode node = insns.get(insn);
+            List<TryCatchBlockNode> insnHandlers = handlers[insn];
+            int max = size + 3;
+            if (insnHandlers != null) {
+                max += insnHandlers.size();
+            }
+            if (node instanceof TableSwitchInsnNode) {
+                max += ((TableSwitchInsnNode) node).labels.size();
+            } else if (node instanceof LookupSwitchInsnNode) {
+                max += ((LookupSwitchInsnNode) node).labels.size();
+            }
+            if (max > stack.length) {
+                int[] newStack = new int[Math.max(2 * stack.length, max)];
+                System.arraycopy(stack, 0, newStack, 0, size);
+                stack = newStack;
+            }
+            stack[size++] = ~insn;
+            if (insnHandlers != null) {
+                for (int i = insnHandlers.size() - 1; i >= 0; --i) {
+                    stack[size++] = insns.indexOf(insnHandlers.get(i).handler);
+                }
+            }
+            int opcode = node.getOpcode();
+            if (node instanceof JumpInsnNode) {
+                if (opcode != GOTO) {
+                    stack[size++] = insn + 1;
+                }
+                stack[size++] = insns.indexOf(((JumpInsnNode) node).label);
+            } else if (node instanceof TableSwitchInsnNode) {
+                TableSwitchInsnNode tsnode = (TableSwitchInsnNode) node;
+                for (int i = tsnode.labels.size() - 1; i >= 0; --i) {
+                    stack[size++] = insns.indexOf(tsnode.labels.get(i));
+                }
+                stack[size++] = insns.indexOf(tsnode.dflt);
+            } else if (node instanceof LookupSwitchInsnNode) {
+                LookupSwitchInsnNode lsnode = (LookupSwitchInsnNode) node;
+                for (int i = lsnode.labels.size() - 1; i >= 0; --i) {
+                    stack[size++] = insns.indexOf(lsnode.labels.get(i));
+                }
+                stack[size++] = insns.indexOf(lsnode.dflt);
+            } else if (opcode != RET && opcode != ATHROW
+                    && (opcode < IRETURN || opcode > RETURN)) {
+                stack[size++] = insn + 1;
+            }
+        }
+    }
+
+    /**
+     * Adds the given instruction to the instructions that must be analyzed.
+     * With the {@link #REVERSE_POSTORDER} option, {@link #queue} is a binary
+     * heap whose root is the instruction with the largest postorder number.
+     * Otherwise it is a stack.
+     * 
+     * @param insn
+     *            an instruction index.
+     */
+    private void offer(final int insn) {
+        queued[insn] = true;
+        int i = top++;
+        if (postorder != null) {
+            int key = postorder[insn];
+            while (i > 0) {
+                int parent = (i - 1) >> 1;
+                if (postorder[queue[parent]] >= key) {
+                    break;
+                }
+                queue[i] = queue[parent];
+                i = parent;
+            }
+        }
+        queue[i] = insn;
+    }
+
+    /**
+     * Removes and returns the next instruction that must be analyzed.
+     * 
+     * @return the index of the next instruction that must be analyzed.
+     */
+    private int poll() {
+        int insn = queue[0];
+        int last = queue[--top];
+        if (postorder == null) {
+            return last;
+        }
+        int key = postorder[last];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= top) {
+                break;
+            }
+            if (child + 1 < top
+                    && postorder[queue[child + 1]] > postorder[queue[child]]) {
+                ++child;
+            }
+            if (postorder[queue[child]] <= key) {
+                break;
+            }
+            queue[i] = queue[child];
+            i = child;
+        }
+        queue[i] = last;
+        return insn;
+    }
+
+    /**
+     * Computes the instructions that begin a basic block, in {@link #entries}.
+     * 
+     * @param m
+     *            the method to be analyzed.
+     */
+    private void findEntries(final MethodNode m) {
+        entries = new boolean[n];
+        entries[0] = true;
+        for (int i = 0; i < m.tryCatchBlocks.size(); ++i) {
+            entries[insns.indexOf(m.tryCatchBlocks.get(i).handler)] = true;
+        }
+        for (int i = 0; i < n; ++i) {
+            AbstractInsnNode node = insns.get(i);
+            if (node instanceof JumpInsnNode) {
+                entries[insns.indexOf(((JumpInsnNode) node).label)] = true;
+            } else if (node instanceof TableSwitchInsnNode) {
+                TableSwitchInsnNode tsnode = (TableSwitchInsnNode) node;
+                entries[insns.indexOf(tsnode.dflt)] = true;
+                for (int j = 0; j < tsnode.labels.size(); ++j) {
+                    entries[insns.indexOf(tsnode.labels.get(j))] = true;
+                }
+            } else if (node instanceof LookupSwitchInsnNode) {
+                LookupSwitchInsnNode lsnode = (LookupSwitchInsnNode) node;
+                entries[insns.indexOf(lsnode.dflt)] = true;
+                for (int j = 0; j < lsnode.labels.size(); ++j) {
+                    entries[insns.indexOf(lsnode.labels.get(j))] = true;
+                }
+            } else {
+                int opcode = node.getOpcode();
+                if (opcode != ATHROW && (opcode < IRETURN || opcode > RETURN)) {
+                    continue;
+                }
+            }
+            if (i + 1 < n) {
+                entries[i + 1] = true;
+            }
+        }
+    }
+
+    /**
+     * Returns <tt>true</tt> if the given instruction is in the same basic
+     * block as the previous one, and if its frame must therefore not be stored
+     * (only with the {@link #SPARSE_FRAMES} option).
+     * 
+     * @param insn
+     *            an instruction index.
+     * @return <tt>true</tt> if the frame of the given instruction must not be
+     *         stored.
+     */
+    private boolean isInBlock(final int insn) {
+        return entries != null && insn < n && !entries[insn];
+    }
+
     private void findSubroutine(int insn, final Subroutine sub,
             final List<AbstractInsnNode> calls) throws AnalyzerException {
         while (true) {
@@ -382,6 +675,43 @@ public class Analyzer<V extends Value> implements Opcodes {
         return frames;
     }
 
+    /**
+     * Returns the symbolic stack frame of the given instruction of the last
+     * recently analyzed method. With the {@link #SPARSE_FRAMES} option, the
+     * frames of the instructions which do not begin a basic block are not
+     * stored, and are recomputed by this method, from the frame at the
+     * beginning of their basic block. The recomputed frames are not cached.
+     * 
+     * @param insn
+     *            the index of an instruction of the last recently analyzed
+     *            method.
+     * @return the symbolic state of the execution stack frame at this
+     *         instruction, or <tt>null</tt> if this instruction cannot be
+     *         reached.
+     * @throws AnalyzerException
+     *             if a problem occurs while the frame is recomputed.
+     */
+    public Frame<V> getFrame(final int insn) throws AnalyzerException {
+        if (entries == null || frames[insn] != null) {
+            return frames[insn];
+        }
+        int entry = insn;
+        while (!entries[entry]) {
+            --entry;
+        }
+        if (frames[entry] == null) {
+            return null;
+        }
+        Frame<V> f = newFrame(frames[entry]);
+        for (int i = entry; i < insn; ++i) {
+            AbstractInsnNode insnNode = insns.get(i);
+            if (insnNode.getOpcode() >= 0) {
+                f.execute(insnNode, interpreter);
+            }
+        }
+        return f;
+    }
+
     /**
      * Returns the exception handlers for the given instruction.
      * 
@@ -409,6 +739,27 @@ public class Analyzer<V extends Value> implements Opcodes {
     protected void init(String owner, MethodNode m) throws AnalyzerException {
     }
 
+    /**
+     * Called at the end of the analysis of a method, with statistics about
+     * this analysis. The default implementation of this method does nothing.
+     * It can be overridden in order to compare the cost of the analysis with
+     * different options (see {@link #REVERSE_POSTORDER}).
+     * 
+     * @param m
+     *            the analyzed method.
+     * @param iterations
+     *            the number of times an instruction has been analyzed. This
+     *            number is larger than the number of reachable instructions if
+     *            some instructions must be analyzed several times to reach a
+     *            fix point.
+     * @param merges
+     *            the number of times a frame has been merged into an existing
+     *            frame.
+     */
+    protected void endAnalysis(final MethodNode m, final int iterations,
+            final int merges) {
+    }
+
     /**
      * Constructs a new frame with the given size.
      * 
@@ -504,6 +855,7 @@ public class Analyzer<V extends Value> implements Opcodes {
             changes = true;
         } else {
             changes = oldFrame.merge(frame, interpreter);
+            ++merges;
         }
 
         if (oldSubroutine == null) {
@@ -517,8 +869,7 @@ public class Analyzer<V extends Value> implements Opcodes {
             }
         }
         if (changes && !queued[insn]) {
-            queued[insn] = true;
-            queue[top++] = insn;
+            offer(insn);
         }
     }
 
@@ -536,14 +887,14 @@ public class Analyzer<V extends Value> implements Opcodes {
             changes = true;
         } else {
             changes = oldFrame.merge(afterRET, interpreter);
+            ++merges;
         }
 
         if (oldSubroutine != null && subroutineBeforeJSR != null) {
             changes |= oldSubroutine.merge(subroutineBeforeJSR);
         }
         if (changes && !queued[insn]) {
-            queued[insn] = true;
-            queue[top++] = insn;
+            offer(insn);
         }
     }
 }
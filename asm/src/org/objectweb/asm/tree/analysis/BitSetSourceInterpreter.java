@@ -0,0 +1,216 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.tree.analysis;
+
+import java.util.Arrays;
+
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.InsnList;
+
+/**
+ * A {@link SourceInterpreter} whose values are sets of instruction indexes,
+ * represented with bit sets. The merge of two values is a word-wise OR of their
+ * bit sets, and the resulting values are interned, so that merging values
+ * whose union has already been computed does not allocate new objects. The
+ * values with a single source instruction are also created once per
+ * instruction. This makes this interpreter faster than
+ * {@link SourceInterpreter} for large methods, where values often have more
+ * than two sources. Its values are {@link SourceValue} objects, whose
+ * {@link SourceValue#insns insns} set is immutable. An instance of this class
+ * can only be used to analyze the method whose instructions are given to its
+ * constructor, and this method must not be modified during the analysis.
+ */
+public class BitSetSourceInterpreter extends SourceInterpreter {
+
+    /**
+     * The instructions of the analyzed method.
+     */
+    private final InsnList insns;
+
+    /**
+     * The number of words of the bit sets.
+     */
+    private final int words;
+
+    /**
+     * The values without source instruction, indexed by size - 1.
+     */
+    private final SourceValue[] empty;
+
+    /**
+     * The values with a single source instruction, indexed by 3 * the index of
+     * this instruction + size (the size is 0 for the result of a method which
+     * returns void).
+     */
+    private final SourceValue[] singletons;
+
+    /**
+     * The interned values with several source instructions, in an open
+     * addressing hash table.
+     */
+    private SourceValue[] table;
+
+    /**
+     * The number of values in {@link #table}.
+     */
+    private int tableSize;
+
+    /**
+     * A bit set used to compute the union of two bit sets.
+     */
+    private long[] union;
+
+    /**
+     * Constructs a new {@link BitSetSourceInterpreter}. <i>Subclasses must not
+     * use this constructor</i>. Instead, they must use the
+     * {@link #BitSetSourceInterpreter(int, InsnList)} version.
+     * 
+     * @param insns
+     *            the instructions of the method to be analyzed.
+     */
+    public BitSetSourceInterpreter(final InsnList insns) {
+        this(ASM4, insns);
+    }
+
+    /**
+     * Constructs a new {@link BitSetSourceInterpreter}.
+     * 
+     * @param api
+     *            the ASM API version supported by this interpreter. Must be
+     *            {@link #ASM4}.
+     * @param insns
+     *            the instructions of the method to be analyzed.
+     */
+    protected BitSetSourceInterpreter(final int api, final InsnList insns) {
+        super(api);
+        this.insns = insns;
+        this.words = (insns.size() + 63) >> 6;
+        this.empty = new SourceValue[2];
+        this.singletons = new SourceValue[3 * insns.size()];
+        this.table = new SourceValue[64];
+        this.union = new long[words];
+    }
+
+    @Override
+    public SourceValue newValue(final Type type) {
+        if (type == Type.VOID_TYPE) {
+            return null;
+        }
+        int size = type == null ? 1 : type.getSize();
+        SourceValue v = empty[size - 1];
+        if (v == null) {
+            v = new SourceValue(size, new InsnBitSet(insns, new long[words]));
+            empty[size - 1] = v;
+        }
+        return v;
+    }
+
+    @Override
+    protected SourceValue newValue(final int size, final AbstractInsnNode insn) {
+        int index = insns.indexOf(insn);
+        SourceValue v = singletons[3 * index + size];
+        if (v == null) {
+            long[] bits = new long[words];
+            bits[index >> 6] = 1L << index;
+            v = new SourceValue(size, new InsnBitSet(insns, bits));
+            singletons[3 * index + size] = v;
+        }
+        return v;
+    }
+
+    @Override
+    public SourceValue merge(final SourceValue d, final SourceValue w) {
+        if (!(d.insns instanceof InsnBitSet && w.insns instanceof InsnBitSet)) {
+            return super.merge(d, w);
+        }
+        long[] b1 = ((InsnBitSet) d.insns).bits;
+        long[] b2 = ((InsnBitSet) w.insns).bits;
+        int size = Math.min(d.size, w.size);
+        boolean inD = true;
+        boolean inW = true;
+        long[] union = this.union;
+        for (int i = 0; i < words; ++i) {
+            long word = b1[i] | b2[i];
+            inD &= word == b1[i];
+            inW &= word == b2[i];
+            union[i] = word;
+        }
+        if (inD && d.size == size) {
+            return d;
+        }
+        if (inW && w.size == size) {
+            return w;
+        }
+        return intern(size, union);
+    }
+
+    /**
+     * Returns the interned value with the given size and bit set.
+     * 
+     * @param size
+     *            the size of the value.
+     * @param bits
+     *            the bit set of the value. This array is copied if a new value
+     *            must be created.
+     * @return a value with the given size and bit set.
+     */
+    private SourceValue intern(final int size, final long[] bits) {
+        int hash = Arrays.hashCode(bits);
+        int mask = table.length - 1;
+        int i = (hash ^ size) & mask;
+        SourceValue v;
+        while ((v = table[i]) != null) {
+            InsnBitSet s = (InsnBitSet) v.insns;
+            if (v.size == size && s.hash == hash && Arrays.equals(s.bits, bits)) {
+                return v;
+            }
+            i = (i + 1) & mask;
+        }
+        v = new SourceValue(size, new InsnBitSet(insns, bits.clone()));
+        table[i] = v;
+        if (++tableSize > table.length >> 1) {
+            SourceValue[] newTable = new SourceValue[table.length << 1];
+            mask = newTable.length - 1;
+            for (int j = 0; j < table.length; ++j) {
+                SourceValue u = table[j];
+                if (u != null) {
+                    int k = (((InsnBitSet) u.insns).hash ^ u.size) & mask;
+                    while (newTable[k] != null) {
+                        k = (k + 1) & mask;
+                    }
+                    newTable[k] = u;
+                }
+            }
+            table = newTable;
+        }
+        return v;
+    }
+}
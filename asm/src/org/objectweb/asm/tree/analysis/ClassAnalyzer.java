@@ -0,0 +1,253 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.tree.analysis;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/**
+ * A driver to analyze all the methods of one or more classes concurrently,
+ * with an {@link Analyzer} per method. Since analyzers and interpreters are
+ * not thread safe, a new {@link Interpreter} and a new {@link Analyzer} are
+ * created for each method, and are confined to the thread which analyzes this
+ * method. The methods are analyzed by the tasks of an {@link ExecutorService}
+ * (for instance a fixed thread pool with one thread per processor, or a fork
+ * join pool). At most {@link #window} methods are submitted to this executor
+ * and not yet analyzed at any given time. The class and method nodes must not
+ * be modified during their analysis.
+ * 
+ * @param <V>
+ *            type of the Value used for the analysis.
+ */
+public abstract class ClassAnalyzer<V extends Value> {
+
+    /**
+     * The executor used to analyze the methods.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * The maximum number of methods whose analysis may be pending at any given
+     * time.
+     */
+    protected final int window;
+
+    /**
+     * Constructs a new {@link ClassAnalyzer}, with at most four pending
+     * methods per available processor.
+     * 
+     * @param executor
+     *            the executor to be used to analyze the methods. This executor
+     *            is not shut down by this class.
+     */
+    public ClassAnalyzer(final ExecutorService executor) {
+        this(executor, 4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a new {@link ClassAnalyzer}.
+     * 
+     * @param executor
+     *            the executor to be used to analyze the methods. This executor
+     *            is not shut down by this class.
+     * @param window
+     *            the maximum number of methods whose analysis may be pending
+     *            at any given time. Must be greater than or equal to 1.
+     */
+    public ClassAnalyzer(final ExecutorService executor, final int window) {
+        if (window < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.executor = executor;
+        this.window = window;
+    }
+
+    /**
+     * Analyzes all the methods of the given class.
+     * 
+     * @param cn
+     *            the class to be analyzed.
+     * @return the errors found during the analysis, in the order of the methods
+     *         in the class. Each error is an {@link AnalyzerException} whose
+     *         message identifies the erroneous method, and whose cause is the
+     *         exception thrown by its analyzer.
+     * @throws InterruptedException
+     *             if the current thread is interrupted while waiting for the
+     *             analysis.
+     */
+    public List<AnalyzerException> analyze(final ClassNode cn)
+            throws InterruptedException {
+        return analyze(Collections.singletonList(cn));
+    }
+
+    /**
+     * Analyzes all the methods of the given classes.
+     * 
+     * @param classes
+     *            the classes to be analyzed.
+     * @return the errors found during the analysis, in the order of the classes
+     *         and of their methods. Each error is an {@link AnalyzerException}
+     *         whose message identifies the erroneous method, and whose cause
+     *         is the exception thrown by its analyzer.
+     * @throws InterruptedException
+     *             if the current thread is interrupted while waiting for the
+     *             analysis.
+     */
+    public List<AnalyzerException> analyze(
+            final Collection<? extends ClassNode> classes)
+            throws InterruptedException {
+        LinkedList<Future<AnalyzerException>> pending;
+        pending = new LinkedList<Future<AnalyzerException>>();
+        List<AnalyzerException> errors = new ArrayList<AnalyzerException>();
+        try {
+            for (final ClassNode cn : classes) {
+                for (int i = 0; i < cn.methods.size(); ++i) {
+                    final MethodNode mn = cn.methods.get(i);
+                    if (pending.size() >= window) {
+                        get(pending.removeFirst(), errors);
+                    }
+                    pending.add(executor
+                            .submit(new Callable<AnalyzerException>() {
+                                public AnalyzerException call() {
+                                    return analyze(cn, mn);
+                                }
+                            }));
+                }
+            }
+            while (!pending.isEmpty()) {
+                get(pending.removeFirst(), errors);
+            }
+        } finally {
+            for (Future<AnalyzerException> task : pending) {
+                task.cancel(true);
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * Waits for the analysis of a method, and adds its error, if any, to the
+     * given list.
+     * 
+     * @param task
+     *            the task analyzing the method.
+     * @param errors
+     *            the errors found so far.
+     * @throws InterruptedException
+     *             if the current thread is interrupted while waiting for the
+     *             analysis.
+     */
+    private static void get(final Future<AnalyzerException> task,
+            final List<AnalyzerException> errors) throws InterruptedException {
+        try {
+            AnalyzerException e = task.get();
+            if (e != null) {
+                errors.add(e);
+            }
+        } catch (ExecutionException e) {
+            // analyze(cn, mn) only lets errors through
+            throw (Error) e.getCause();
+        }
+    }
+
+    /**
+     * Analyzes the given method. This method is called concurrently by the
+     * tasks of the executor.
+     * 
+     * @param cn
+     *            the class to which the method belongs.
+     * @param mn
+     *            the method to be analyzed.
+     * @return the error found during the analysis, or <tt>null</tt> if there
+     *         is no error.
+     */
+    private AnalyzerException analyze(final ClassNode cn, final MethodNode mn) {
+        try {
+            Analyzer<V> a = newAnalyzer(newInterpreter(cn));
+            analyzed(cn, mn, a.analyze(cn.name, mn));
+            return null;
+        } catch (Exception e) {
+            return new AnalyzerException(null, cn.name + '.' + mn.name
+                    + mn.desc + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Creates a new interpreter to analyze a method of the given class. This
+     * method is called once per method, concurrently, and must return a new
+     * interpreter at each call.
+     * 
+     * @param cn
+     *            the class whose method must be analyzed.
+     * @return a new interpreter to analyze a method of the given class.
+     */
+    protected abstract Interpreter<V> newInterpreter(final ClassNode cn);
+
+    /**
+     * Creates a new analyzer. This method is called once per method,
+     * concurrently. The default implementation returns a new {@link Analyzer}.
+     * 
+     * @param interpreter
+     *            the interpreter to be used by the analyzer.
+     * @return a new analyzer using the given interpreter.
+     */
+    protected Analyzer<V> newAnalyzer(final Interpreter<V> interpreter) {
+        return new Analyzer<V>(interpreter);
+    }
+
+    /**
+     * Called after a method has been successfully analyzed. This method is
+     * called concurrently, by the thread which analyzed the method. The
+     * default implementation does nothing.
+     * 
+     * @param cn
+     *            the class to which the method belongs.
+     * @param mn
+     *            the analyzed method.
+     * @param frames
+     *            the frames computed by the analyzer for this method (see
+     *            {@link Analyzer#analyze}).
+     * @throws AnalyzerException
+     *             if the method must be reported as erroneous.
+     */
+    protected void analyzed(final ClassNode cn, final MethodNode mn,
+            final Frame<V>[] frames) throws AnalyzerException {
+    }
+}
@@ -61,10 +61,16 @@ public class Frame<V extends Value> {
     private V returnValue;
 
     /**
-     * The local variables and operand stack of this frame.
+     * The local variables of this frame. In copy-on-write mode, this array can
+     * be shared with other frames (see {@link #sharedLocals}).
      */
     private V[] values;
 
+    /**
+     * The operand stack of this frame.
+     */
+    private V[] stack;
+
     /**
      * The number of local variables of this frame.
      */
@@ -75,6 +81,20 @@ public class Frame<V extends Value> {
      */
     private int top;
 
+    /**
+     * If this frame is in copy-on-write mode. In this mode the copies of this
+     * frame share their local variables with it, until one of them modifies
+     * them. This mode, which is inherited by the copies of this frame, is set
+     * by the {@link Analyzer}.
+     */
+    boolean copyOnWrite;
+
+    /**
+     * If {@link #values} may be shared with other frames, and must therefore
+     * be copied before being modified.
+     */
+    private boolean sharedLocals;
+
     /**
      * Constructs a new frame with the given size.
      * 
@@ -84,10 +104,22 @@ public class Frame<V extends Value> {
      *            the maximum stack size of the frame.
      */
     public Frame(final int nLocals, final int nStack) {
-        this.values = (V[]) new Value[nLocals + nStack];
+        this.values = newValues(nLocals);
+        this.stack = newValues(nStack);
         this.locals = nLocals;
     }
 
+    /**
+     * Creates a new array of values.
+     * 
+     * @param n
+     *            the size of the array.
+     * @return a new array of n values.
+     */
+    private V[] newValues(final int n) {
+        return (V[]) new Value[n];
+    }
+
     /**
      * Constructs a new frame that is identical to the given frame.
      * 
@@ -95,7 +127,9 @@ public class Frame<V extends Value> {
      *            a frame.
      */
     public Frame(final Frame<? extends V> src) {
-        this(src.locals, src.values.length - src.locals);
+        this(src.copyOnWrite ? 0 : src.locals, src.stack.length);
+        locals = src.locals;
+        copyOnWrite = src.copyOnWrite;
         init(src);
     }
 
@@ -108,11 +142,33 @@ public class Frame<V extends Value> {
      */
     public Frame<V> init(final Frame<? extends V> src) {
         returnValue = src.returnValue;
-        System.arraycopy(src.values, 0, values, 0, values.length);
+        if (copyOnWrite && src.locals == locals) {
+            values = src.values;
+            sharedLocals = true;
+            src.sharedLocals = true;
+        } else {
+            if (sharedLocals) {
+                values = newValues(locals);
+                sharedLocals = false;
+            }
+            System.arraycopy(src.values, 0, values, 0, locals);
+        }
+        System.arraycopy(src.stack, 0, stack, 0, src.top);
         top = src.top;
         return this;
     }
 
+    /**
+     * Copies the local variables of this frame if they are shared with other
+     * frames. This method must be called before modifying {@link #values}.
+     */
+    private void copyLocals() {
+        if (sharedLocals) {
+            values = values.clone();
+            sharedLocals = false;
+        }
+    }
+
     /**
      * Sets the expected return type of the analyzed method.
      * 
@@ -166,7 +222,10 @@ public class Frame<V extends Value> {
             throw new IndexOutOfBoundsException(
                     "Trying to access an inexistant local variable " + i);
         }
-        values[i] = value;
+        if (values[i] != value) {
+            copyLocals();
+            values[i] = value;
+        }
     }
 
     /**
@@ -189,7 +248,7 @@ public class Frame<V extends Value> {
      *             if the operand stack slot does not exist.
      */
     public V getStack(final int i) throws IndexOutOfBoundsException {
-        return values[i + locals];
+        return stack[i];
     }
 
     /**
@@ -211,7 +270,7 @@ public class Frame<V extends Value> {
             throw new IndexOutOfBoundsException(
                     "Cannot pop operand off an empty stack.");
         }
-        return values[--top + locals];
+        return stack[--top];
     }
 
     /**
@@ -223,11 +282,11 @@ public class Frame<V extends Value> {
      *             if the operand stack is full.
      */
     public void push(final V value) throws IndexOutOfBoundsException {
-        if (top + locals >= values.length) {
+        if (top >= stack.length) {
             throw new IndexOutOfBoundsException(
                     "Insufficient maximum stack size.");
         }
-        values[top++ + locals] = value;
+        stack[top++] = value;
     }
 
     public void execute(final AbstractInsnNode insn,
@@ -677,10 +736,20 @@ public class Frame<V extends Value> {
             throw new AnalyzerException(null, "Incompatible stack heights");
         }
         boolean changes = false;
-        for (int i = 0; i < locals + top; ++i) {
-            V v = interpreter.merge(values[i], frame.values[i]);
-            if (!v.equals(values[i])) {
-                values[i] = v;
+        if (values != frame.values) {
+            for (int i = 0; i < locals; ++i) {
+                V v = interpreter.merge(values[i], frame.values[i]);
+                if (!v.equals(values[i])) {
+                    copyLocals();
+                    values[i] = v;
+                    changes = true;
+                }
+            }
+        }
+        for (int i = 0; i < top; ++i) {
+            V v = interpreter.merge(stack[i], frame.stack[i]);
+            if (!v.equals(stack[i])) {
+                stack[i] = v;
                 changes = true;
             }
         }
@@ -702,6 +771,7 @@ public class Frame<V extends Value> {
         boolean changes = false;
         for (int i = 0; i < locals; ++i) {
             if (!access[i] && !values[i].equals(frame.values[i])) {
+                copyLocals();
                 values[i] = frame.values[i];
                 changes = true;
             }
@@ -0,0 +1,163 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.tree.analysis;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.InsnList;
+
+/**
+ * An immutable set of instructions of an {@link InsnList}, represented with a
+ * bit set of instruction indexes.
+ */
+class InsnBitSet extends AbstractSet<AbstractInsnNode> {
+
+    /**
+     * The instructions whose indexes are stored in this set.
+     */
+    final InsnList insns;
+
+    /**
+     * The bits of this set. The bit <tt>i</tt> is set if the instruction of
+     * index <tt>i</tt> is in this set.
+     */
+    final long[] bits;
+
+    /**
+     * A hash code of {@link #bits}.
+     */
+    final int hash;
+
+    /**
+     * The number of elements of this set.
+     */
+    private final int size;
+
+    InsnBitSet(final InsnList insns, final long[] bits) {
+        this.insns = insns;
+        this.bits = bits;
+        this.hash = Arrays.hashCode(bits);
+        int size = 0;
+        for (int i = 0; i < bits.length; ++i) {
+            size += Long.bitCount(bits[i]);
+        }
+        this.size = size;
+    }
+
+    /**
+     * Returns the index of the first bit set at or after the given index.
+     * 
+     * @param index
+     *            a bit index.
+     * @return the index of the first bit set at or after <tt>index</tt>, or
+     *         -1 if there is no such bit.
+     */
+    int nextSetBit(final int index) {
+        int i = index >> 6;
+        if (i >= bits.length) {
+            return -1;
+        }
+        long word = bits[i] & (-1L << index);
+        while (word == 0) {
+            if (++i == bits.length) {
+                return -1;
+            }
+            word = bits[i];
+        }
+        return (i << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    // -------------------------------------------------------------------------
+    // Implementation of inherited abstract methods
+    // -------------------------------------------------------------------------
+
+    @Override
+    public Iterator<AbstractInsnNode> iterator() {
+        return new Iterator<AbstractInsnNode>() {
+
+            private int next = nextSetBit(0);
+
+            public boolean hasNext() {
+                return next != -1;
+            }
+
+            public AbstractInsnNode next() {
+                if (next == -1) {
+                    throw new NoSuchElementException();
+                }
+                AbstractInsnNode insn = insns.get(next);
+                next = nextSetBit(next + 1);
+                return insn;
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    // -------------------------------------------------------------------------
+    // Optimized methods
+    // -------------------------------------------------------------------------
+
+    @Override
+    public boolean contains(final Object o) {
+        if (!(o instanceof AbstractInsnNode)) {
+            return false;
+        }
+        AbstractInsnNode insn = (AbstractInsnNode) o;
+        int index = insns.indexOf(insn);
+        if (index < 0 || index >= insns.size() || insns.get(index) != insn) {
+            return false;
+        }
+        return (bits[index >> 6] & (1L << index)) != 0;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (o instanceof InsnBitSet && ((InsnBitSet) o).insns == insns) {
+            InsnBitSet s = (InsnBitSet) o;
+            return hash == s.hash && Arrays.equals(bits, s.bits);
+        }
+        return super.equals(o);
+    }
+}
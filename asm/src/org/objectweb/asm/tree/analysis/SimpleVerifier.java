@@ -31,6 +31,7 @@ package org.objectweb.asm.tree.analysis;
 
 import java.util.List;
 
+import org.objectweb.asm.ClassHierarchy;
 import org.objectweb.asm.Type;
 
 /**
@@ -68,6 +69,12 @@ public class SimpleVerifier extends BasicVerifier {
      */
     private ClassLoader loader = getClass().getClassLoader();
 
+    /**
+     * The class hierarchy to use for referenced classes, or <tt>null</tt> to
+     * load them with {@link #loader}.
+     */
+    private ClassHierarchy hierarchy;
+
     /**
      * Constructs a new {@link SimpleVerifier}.
      */
@@ -133,6 +140,20 @@ public class SimpleVerifier extends BasicVerifier {
         this.loader = loader;
     }
 
+    /**
+     * Set the {@link ClassHierarchy} which will be used to get information
+     * about referenced classes, instead of loading them. A class hierarchy can
+     * be shared between several verifiers, used concurrently, in order to
+     * verify many classes in parallel.
+     * 
+     * @param hierarchy
+     *            a class hierarchy to use, or <tt>null</tt> to load referenced
+     *            classes with the class loader of this verifier.
+     */
+    public void setClassHierarchy(final ClassHierarchy hierarchy) {
+        this.hierarchy = hierarchy;
+    }
+
     @Override
     public BasicValue newValue(final Type type) {
         if (type == null) {
@@ -259,6 +280,10 @@ public class SimpleVerifier extends BasicVerifier {
         if (currentClass != null && t.equals(currentClass)) {
             return isInterface;
         }
+        if (hierarchy != null) {
+            return t.getSort() == Type.OBJECT
+                    && hierarchy.isInterface(t.getInternalName());
+        }
         return getClass(t).isInterface();
     }
 
@@ -266,6 +291,13 @@ public class SimpleVerifier extends BasicVerifier {
         if (currentClass != null && t.equals(currentClass)) {
             return currentSuperClass;
         }
+        if (hierarchy != null) {
+            if (t.getSort() == Type.ARRAY) {
+                return Type.getObjectType("java/lang/Object");
+            }
+            String s = hierarchy.getSuperClass(t.getInternalName());
+            return s == null ? null : Type.getObjectType(s);
+        }
         Class<?> c = getClass(t).getSuperclass();
         return c == null ? null : Type.getType(c);
     }
@@ -299,6 +331,9 @@ public class SimpleVerifier extends BasicVerifier {
             }
             return false;
         }
+        if (hierarchy != null) {
+            return isAssignableFromHierarchy(t, u);
+        }
         Class<?> tc = getClass(t);
         if (tc.isInterface()) {
             tc = Object.class;
@@ -306,6 +341,48 @@ public class SimpleVerifier extends BasicVerifier {
         return tc.isAssignableFrom(getClass(u));
     }
 
+    /**
+     * Implements {@link #isAssignableFrom} with {@link #hierarchy}, with the
+     * same semantics as the implementation based on {@link Class} objects.
+     */
+    private boolean isAssignableFromHierarchy(final Type t, final Type u) {
+        if (t.equals(u)) {
+            return true;
+        }
+        if (t.getSort() == Type.ARRAY) {
+            if (u.getSort() != Type.ARRAY) {
+                return false;
+            }
+            Type te = Type.getType(t.getDescriptor().substring(1));
+            Type ue = Type.getType(u.getDescriptor().substring(1));
+            if (te.getSort() < Type.ARRAY || ue.getSort() < Type.ARRAY) {
+                return false;
+            }
+            if (te.getSort() == Type.OBJECT
+                    && hierarchy.isInterface(te.getInternalName())) {
+                // interface element types are handled exactly
+                String ten = te.getInternalName();
+                if (ue.getSort() == Type.ARRAY) {
+                    // arrays only implement Cloneable and Serializable
+                    return "java/lang/Cloneable".equals(ten)
+                            || "java/io/Serializable".equals(ten);
+                }
+                return hierarchy.isAssignableFrom(ten, ue.getInternalName());
+            }
+            return isAssignableFromHierarchy(te, ue);
+        }
+        String tn = t.getInternalName();
+        if (hierarchy.isInterface(tn)) {
+            // interfaces are handled like java.lang.Object, as in the
+            // implementation based on Class objects
+            return true;
+        }
+        if (u.getSort() == Type.ARRAY) {
+            return "java/lang/Object".equals(tn);
+        }
+        return hierarchy.isAssignableFrom(tn, u.getInternalName());
+    }
+
     protected Class<?> getClass(final Type t) {
         try {
             if (t.getSort() == Type.ARRAY) {
@@ -65,6 +65,21 @@ public class SourceInterpreter extends Interpreter<SourceValue> implements
         return new SourceValue(type == null ? 1 : type.getSize());
     }
 
+    /**
+     * Creates a new value produced by the given instruction. This method is
+     * used by all the operations of this interpreter.
+     * 
+     * @param size
+     *            the size of the value.
+     * @param insn
+     *            the instruction that produces the value.
+     * @return a value of the given size, whose only source is the given
+     *         instruction.
+     */
+    protected SourceValue newValue(final int size, final AbstractInsnNode insn) {
+        return new SourceValue(size, insn);
+    }
+
     @Override
     public SourceValue newOperation(final AbstractInsnNode insn) {
         int size;
@@ -85,13 +100,13 @@ public class SourceInterpreter extends Interpreter<SourceValue> implements
         default:
             size = 1;
         }
-        return new SourceValue(size, insn);
+        return newValue(size, insn);
     }
 
     @Override
     public SourceValue copyOperation(final AbstractInsnNode insn,
             final SourceValue value) {
-        return new SourceValue(value.getSize(), insn);
+        return newValue(value.getSize(), insn);
     }
 
     @Override
@@ -115,7 +130,7 @@ public class SourceInterpreter extends Interpreter<SourceValue> implements
         default:
             size = 1;
         }
-        return new SourceValue(size, insn);
+        return newValue(size, insn);
     }
 
     @Override
@@ -146,14 +161,14 @@ public class SourceInterpreter extends Interpreter<SourceValue> implements
         default:
             size = 1;
         }
-        return new SourceValue(size, insn);
+        return newValue(size, insn);
     }
 
     @Override
     public SourceValue ternaryOperation(final AbstractInsnNode insn,
             final SourceValue value1, final SourceValue value2,
             final SourceValue value3) {
-        return new SourceValue(1, insn);
+        return newValue(1, insn);
     }
 
     @Override
@@ -168,7 +183,7 @@ public class SourceInterpreter extends Interpreter<SourceValue> implements
                     : ((MethodInsnNode) insn).desc;
             size = Type.getReturnType(desc).getSize();
         }
-        return new SourceValue(size, insn);
+        return newValue(size, insn);
     }
 
     @Override
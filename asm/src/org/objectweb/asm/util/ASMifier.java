@@ -148,7 +148,7 @@ public class ASMifier extends Printer {
             cr = new ClassReader(args[i]);
         }
         cr.accept(new TraceClassVisitor(null, new ASMifier(), new PrintWriter(
-                System.out)), flags);
+                System.out), true), flags);
     }
 
     // ------------------------------------------------------------------------
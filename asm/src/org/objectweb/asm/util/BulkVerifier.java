@@ -0,0 +1,833 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.util;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.PrintWriter;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.objectweb.asm.ClassHierarchy;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.analysis.Analyzer;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.objectweb.asm.tree.analysis.BasicValue;
+import org.objectweb.asm.tree.analysis.SimpleVerifier;
+
+/**
+ * Verifies all the classes of a set of jar files, directories and class files,
+ * with the same checks as {@link CheckClassAdapter#verify(ClassReader,
+ * boolean, PrintWriter) CheckClassAdapter.verify}, but in parallel. The
+ * headers of all the classes are read first, in order to build a
+ * {@link ClassHierarchy} which is shared by all the verifiers (the classes
+ * which are not part of the verified files are loaded with a class loader).
+ * The classes are then verified by several threads, and a {@link Result} is
+ * returned for each class.
+ * 
+ * <p>
+ * The SHA-1 digests of the valid classes can be saved in a cache file, with
+ * a digest of the headers of all the verified classes. When the same files are
+ * verified again with this cache, the classes whose digest is in the cache
+ * are not verified again, provided the headers of the verified classes have
+ * not changed. The headers of the classes loaded with the class loader during
+ * the verification are also taken into account in this digest, and the names
+ * of these classes are saved in the cache file so that they can be loaded
+ * again before the digest is compared. The cache is not used at all if a
+ * class hierarchy is set with {@link #setClassHierarchy setClassHierarchy},
+ * since the content of this hierarchy is not known.
+ */
+public class BulkVerifier {
+
+    /**
+     * The number of threads used to verify the classes.
+     */
+    private final int threads;
+
+    /**
+     * The class hierarchy to use, or <tt>null</tt> to use a class hierarchy
+     * built from the verified classes and from {@link #loader}.
+     */
+    private ClassHierarchy hierarchy;
+
+    /**
+     * The loader used to load the classes which are not part of the verified
+     * files, if {@link #hierarchy} is <tt>null</tt>.
+     */
+    private ClassLoader loader = getClass().getClassLoader();
+
+    /**
+     * The digest of the class headers read from the cache file, or
+     * <tt>null</tt>.
+     */
+    private String cachedHeaderDigest;
+
+    /**
+     * The names of the classes loaded with {@link #loader} read from the cache
+     * file.
+     */
+    private String[] cachedLoadedClasses = new String[0];
+
+    /**
+     * The digests of the valid classes read from the cache file.
+     */
+    private Set<String> cachedDigests = Collections.emptySet();
+
+    /**
+     * The digest of the headers of the classes verified by the last call to
+     * {@link #verify verify}, or <tt>null</tt>.
+     */
+    private String headerDigest;
+
+    /**
+     * The names of the classes loaded with {@link #loader} during the last
+     * call to {@link #verify verify}.
+     */
+    private String[] loadedClasses = new String[0];
+
+    /**
+     * The digests of the valid classes found by the last call to
+     * {@link #verify verify}.
+     */
+    private Set<String> digests = Collections.emptySet();
+
+    /**
+     * Constructs a new {@link BulkVerifier} using one thread per available
+     * processor.
+     */
+    public BulkVerifier() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a new {@link BulkVerifier}.
+     * 
+     * @param threads
+     *            the number of threads used to verify the classes.
+     */
+    public BulkVerifier(final int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Verifies the given jar files, directories and class files, and prints
+     * the invalid classes to the standard output.
+     * 
+     * <p>
+     * Usage: BulkVerifier [-cache &lt;cache file&gt;] &lt;jar file, directory
+     * or class file&gt; ...
+     * 
+     * @param args
+     *            the command line arguments.
+     * 
+     * @throws Exception
+     *             if an IO exception occurs.
+     */
+    public static void main(final String[] args) throws Exception {
+        int i = 0;
+        File cache = null;
+        if (args.length > 1 && "-cache".equals(args[0])) {
+            cache = new File(args[1]);
+            i = 2;
+        }
+        if (i >= args.length) {
+            System.err.println("Verifies the given classes.");
+            System.err.println("Usage: BulkVerifier [-cache <cache file>] "
+                    + "<jar file, directory or class file> ...");
+            return;
+        }
+        File[] files = new File[args.length - i];
+        for (int j = 0; j < files.length; ++j) {
+            files[j] = new File(args[i + j]);
+        }
+        BulkVerifier verifier = new BulkVerifier();
+        if (cache != null && cache.exists()) {
+            verifier.readCache(cache);
+        }
+        List<Result> results = verifier.verify(files);
+        int skipped = 0;
+        int invalid = 0;
+        for (int j = 0; j < results.size(); ++j) {
+            Result r = results.get(j);
+            if (r.cached) {
+                ++skipped;
+            } else if (!r.isValid()) {
+                ++invalid;
+                System.out.print(r);
+            }
+        }
+        System.out.println(results.size() + " classes, " + skipped
+                + " unchanged, " + invalid + " invalid");
+        if (cache != null) {
+            verifier.writeCache(cache);
+        }
+    }
+
+    /**
+     * Sets the class hierarchy used to get information about the referenced
+     * classes. This class hierarchy must be thread safe. The cache is not used
+     * if a class hierarchy is set, since its content may change between two
+     * verifications.
+     * 
+     * @param hierarchy
+     *            a class hierarchy, or <tt>null</tt> to use a class hierarchy
+     *            built from the verified classes and from the class loader of
+     *            this verifier.
+     */
+    public void setClassHierarchy(final ClassHierarchy hierarchy) {
+        this.hierarchy = hierarchy;
+    }
+
+    /**
+     * Sets the class loader used to load the referenced classes which are not
+     * part of the verified files. Not used if a class hierarchy has been set
+     * with {@link #setClassHierarchy setClassHierarchy}. The headers of the
+     * classes loaded with this loader are part of the cache key.
+     * 
+     * @param loader
+     *            a class loader.
+     */
+    public void setClassLoader(final ClassLoader loader) {
+        this.loader = loader;
+    }
+
+    /**
+     * Reads a cache file written by {@link #writeCache writeCache}. The valid
+     * classes of this file are not verified again by the next calls to
+     * {@link #verify verify}, unless the headers of the verified classes, or
+     * of the classes loaded with the class loader, have changed.
+     * 
+     * @param file
+     *            a cache file.
+     * @throws IOException
+     *             if the cache file cannot be read.
+     */
+    public void readCache(final File file) throws IOException {
+        BufferedReader r = new BufferedReader(new FileReader(file));
+        try {
+            String header = r.readLine();
+            String loaded = r.readLine();
+            Set<String> set = new HashSet<String>();
+            String line;
+            while ((line = r.readLine()) != null) {
+                set.add(line);
+            }
+            cachedHeaderDigest = header;
+            if (loaded == null || loaded.length() == 0) {
+                cachedLoadedClasses = new String[0];
+            } else {
+                cachedLoadedClasses = loaded.split(" ");
+            }
+            cachedDigests = set;
+        } finally {
+            r.close();
+        }
+    }
+
+    /**
+     * Writes the digests of the valid classes found by the last call to
+     * {@link #verify verify} in a cache file. The first line contains the
+     * digest of the class headers (empty if a class hierarchy was set), the
+     * second line the names of the classes loaded with the class loader, and
+     * the next lines the digests of the valid classes.
+     * 
+     * @param file
+     *            a cache file.
+     * @throws IOException
+     *             if the cache file cannot be written.
+     */
+    public void writeCache(final File file) throws IOException {
+        PrintWriter pw = new PrintWriter(new FileWriter(file));
+        try {
+            pw.println(headerDigest == null ? "" : headerDigest);
+            for (int i = 0; i < loadedClasses.length; ++i) {
+                if (i > 0) {
+                    pw.print(' ');
+                }
+                pw.print(loadedClasses[i]);
+            }
+            pw.println();
+            synchronized (digests) {
+                Iterator<String> i = digests.iterator();
+                while (i.hasNext()) {
+                    pw.println(i.next());
+                }
+            }
+            if (pw.checkError()) {
+                throw new IOException("Cannot write " + file);
+            }
+        } finally {
+            pw.close();
+        }
+    }
+
+    /**
+     * Verifies all the classes contained in the given files.
+     * 
+     * @param files
+     *            jar files, directories or class files.
+     * @return the verification results, one per class, in the order in which
+     *         the classes appear in the given files.
+     * @throws IOException
+     *             if a file cannot be read.
+     */
+    public List<Result> verify(final File[] files) throws IOException {
+        // reads the class headers
+        final Map<String, ClassInfo> classes = new TreeMap<String, ClassInfo>();
+        ClassHandler headers = new ClassHandler() {
+            public void handle(final String source, final byte[] b) {
+                ClassReader cr;
+                try {
+                    cr = new ClassReader(b);
+                } catch (RuntimeException e) {
+                    // reported during the verification
+                    return;
+                }
+                String name = cr.getClassName();
+                if (!classes.containsKey(name)) {
+                    classes.put(name, new ClassInfo(cr.getSuperName(), cr
+                            .getInterfaces(),
+                            (cr.getAccess() & Opcodes.ACC_INTERFACE) != 0));
+                }
+            }
+        };
+        for (int i = 0; i < files.length; ++i) {
+            read(files[i], files[i].getPath(), headers);
+        }
+        // the content of a custom hierarchy is unknown, so the cache can only
+        // be used with a hierarchy built from the classes and from the loader
+        final Hierarchy hh = hierarchy != null ? null : new Hierarchy(classes,
+                loader);
+        final ClassHierarchy h = hierarchy != null ? hierarchy : hh;
+        final boolean useCache = hh != null && cachedHeaderDigest != null
+                && hh.preload(cachedLoadedClasses)
+                && cachedHeaderDigest.equals(getHeaderDigest(hh.getClasses()));
+        final Set<String> valid = Collections
+                .synchronizedSet(new HashSet<String>());
+
+        // verifies the classes in parallel
+        final List<Result> results = new ArrayList<Result>();
+        final LinkedList<Future<Result>> pending;
+        pending = new LinkedList<Future<Result>>();
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            ClassHandler verifier = new ClassHandler() {
+                public void handle(final String source, final byte[] b)
+                        throws IOException {
+                    pending.add(executor.submit(new Callable<Result>() {
+                        public Result call() {
+                            return verify(source, b, h, useCache, valid);
+                        }
+                    }));
+                    if (pending.size() >= 4 * threads) {
+                        results.add(get(pending.removeFirst()));
+                    }
+                }
+            };
+            for (int i = 0; i < files.length; ++i) {
+                read(files[i], files[i].getPath(), verifier);
+            }
+            while (!pending.isEmpty()) {
+                results.add(get(pending.removeFirst()));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        if (hh == null) {
+            headerDigest = null;
+            loadedClasses = new String[0];
+        } else {
+            Set<String> loaded = new TreeSet<String>(hh.loaded.keySet());
+            headerDigest = getHeaderDigest(hh.getClasses());
+            loadedClasses = loaded.toArray(new String[loaded.size()]);
+        }
+        digests = valid;
+        return results;
+    }
+
+    /**
+     * Verifies a class.
+     * 
+     * @param source
+     *            where the class comes from.
+     * @param b
+     *            the bytecode of the class.
+     * @param hierarchy
+     *            the class hierarchy to use.
+     * @param useCache
+     *            whether the valid classes of the cache file can be skipped.
+     * @param valid
+     *            where the digest of the class must be added if it is valid.
+     * @return the verification result.
+     */
+    private Result verify(final String source, final byte[] b,
+            final ClassHierarchy hierarchy, final boolean useCache,
+            final Set<String> valid) {
+        String digest = getDigest(b);
+        List<Failure> failures = new ArrayList<Failure>();
+        ClassNode cn = new ClassNode();
+        try {
+            ClassReader cr = new ClassReader(b);
+            if (useCache && cachedDigests.contains(digest)) {
+                valid.add(digest);
+                return new Result(source, cr.getClassName(), true, failures);
+            }
+            cr.accept(new CheckClassAdapter(cn, false), ClassReader.SKIP_DEBUG);
+        } catch (RuntimeException e) {
+            failures.add(new Failure(null, -1, e.toString()));
+            return new Result(source, cn.name, false, failures);
+        }
+
+        Type superType = cn.superName == null ? null : Type
+                .getObjectType(cn.superName);
+        List<Type> interfaces = new ArrayList<Type>();
+        for (int i = 0; i < cn.interfaces.size(); ++i) {
+            interfaces.add(Type.getObjectType(cn.interfaces.get(i)));
+        }
+        for (int i = 0; i < cn.methods.size(); ++i) {
+            MethodNode method = cn.methods.get(i);
+            SimpleVerifier verifier = new SimpleVerifier(Type
+                    .getObjectType(cn.name), superType, interfaces,
+                    (cn.access & Opcodes.ACC_INTERFACE) != 0);
+            verifier.setClassHierarchy(hierarchy);
+            Analyzer<BasicValue> a = new Analyzer<BasicValue>(verifier);
+            try {
+                a.analyze(cn.name, method);
+            } catch (AnalyzerException e) {
+                failures.add(new Failure(method.name + method.desc,
+                        e.node == null ? -1 : method.instructions
+                                .indexOf(e.node), e.getMessage()));
+            } catch (RuntimeException e) {
+                failures.add(new Failure(method.name + method.desc, -1, e
+                        .toString()));
+            }
+        }
+        if (failures.isEmpty()) {
+            valid.add(digest);
+        }
+        return new Result(source, cn.name, false, failures);
+    }
+
+    /**
+     * Reads the classes contained in a file, and passes them to a handler.
+     * 
+     * @param file
+     *            a jar file, a directory or a class file.
+     * @param source
+     *            the name of the file, used to identify its classes.
+     * @param handler
+     *            the handler to which the classes must be passed.
+     * @throws IOException
+     *             if the file cannot be read.
+     */
+    private static void read(final File file, final String source,
+            final ClassHandler handler) throws IOException {
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            Arrays.sort(children);
+            for (int i = 0; i < children.length; ++i) {
+                read(children[i], children[i].getPath(), handler);
+            }
+        } else if (file.getName().endsWith(".class")) {
+            InputStream is = new FileInputStream(file);
+            try {
+                handler.handle(source, readFully(is));
+            } finally {
+                is.close();
+            }
+        } else if (file.getName().endsWith(".jar")
+                || file.getName().endsWith(".zip")) {
+            ZipFile zip = new ZipFile(file);
+            try {
+                Enumeration<? extends ZipEntry> entries = zip.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry e = entries.nextElement();
+                    if (e.getName().endsWith(".class")) {
+                        InputStream is = zip.getInputStream(e);
+                        try {
+                            handler.handle(source + '!' + e.getName(),
+                                    readFully(is));
+                        } finally {
+                            is.close();
+                        }
+                    }
+                }
+            } finally {
+                zip.close();
+            }
+        }
+    }
+
+    private static byte[] readFully(final InputStream is) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        byte[] buf = new byte[4096];
+        int n;
+        while ((n = is.read(buf)) > 0) {
+            bos.write(buf, 0, n);
+        }
+        return bos.toByteArray();
+    }
+
+    private static Result get(final Future<Result> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Throwable t = e.getCause();
+            if (t instanceof RuntimeException) {
+                throw (RuntimeException) t;
+            }
+            if (t instanceof Error) {
+                throw (Error) t;
+            }
+            throw new RuntimeException(t);
+        }
+    }
+
+    /**
+     * Returns a digest of the given class headers.
+     * 
+     * @param classes
+     *            class headers, sorted by class name, including the headers of
+     *            the classes loaded with the class loader.
+     * @return a digest of the given class headers.
+     */
+    private static String getHeaderDigest(
+            final Map<String, ClassInfo> classes) {
+        StringBuffer buf = new StringBuffer();
+        Iterator<Map.Entry<String, ClassInfo>> i;
+        i = classes.entrySet().iterator();
+        while (i.hasNext()) {
+            Map.Entry<String, ClassInfo> e = i.next();
+            ClassInfo c = e.getValue();
+            buf.append(e.getKey()).append(' ').append(c.superName);
+            for (int j = 0; j < c.interfaces.length; ++j) {
+                buf.append(' ').append(c.interfaces[j]);
+            }
+            buf.append(c.isInterface ? " I\n" : " C\n");
+        }
+        try {
+            return getDigest(buf.toString().getBytes("UTF-8"));
+        } catch (IOException e) {
+            // cannot happen, UTF-8 is always supported
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Returns the SHA-1 digest of the given bytes, in hexadecimal.
+     * 
+     * @param b
+     *            some bytes.
+     * @return the SHA-1 digest of the given bytes, in hexadecimal.
+     */
+    private static String getDigest(final byte[] b) {
+        byte[] d;
+        try {
+            d = MessageDigest.getInstance("SHA-1").digest(b);
+        } catch (NoSuchAlgorithmException e) {
+            // cannot happen, SHA-1 is always supported
+            throw new RuntimeException(e);
+        }
+        StringBuffer buf = new StringBuffer(2 * d.length);
+        for (int i = 0; i < d.length; ++i) {
+            buf.append(Character.forDigit((d[i] >>> 4) & 0xF, 16));
+            buf.append(Character.forDigit(d[i] & 0xF, 16));
+        }
+        return buf.toString();
+    }
+
+    /**
+     * The verification result of a class.
+     */
+    public static class Result {
+
+        /**
+         * Where the class comes from: the path of a class file, or the path of
+         * a jar file followed by '!' and the name of the jar entry.
+         */
+        public final String source;
+
+        /**
+         * The internal name of the class, or <tt>null</tt> if the class could
+         * not be parsed.
+         */
+        public final String name;
+
+        /**
+         * <tt>true</tt> if the class was not verified because it was found
+         * valid in a previous verification.
+         */
+        public final boolean cached;
+
+        /**
+         * The problems found in the class. Empty if the class is valid.
+         */
+        public final List<Failure> failures;
+
+        public Result(final String source, final String name,
+                final boolean cached, final List<Failure> failures) {
+            this.source = source;
+            this.name = name;
+            this.cached = cached;
+            this.failures = failures;
+        }
+
+        /**
+         * Returns <tt>true</tt> if no problem was found in the class.
+         * 
+         * @return <tt>true</tt> if no problem was found in the class.
+         */
+        public boolean isValid() {
+            return failures.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            StringBuffer buf = new StringBuffer();
+            buf.append(source);
+            if (name != null) {
+                buf.append(" (").append(name).append(')');
+            }
+            buf.append(failures.isEmpty() ? " OK\n" : ":\n");
+            for (int i = 0; i < failures.size(); ++i) {
+                buf.append("  ").append(failures.get(i)).append('\n');
+            }
+            return buf.toString();
+        }
+    }
+
+    /**
+     * A problem found in a class.
+     */
+    public static class Failure {
+
+        /**
+         * The name and descriptor of the method where the problem was found,
+         * or <tt>null</tt> if the problem is not specific to a method.
+         */
+        public final String method;
+
+        /**
+         * The index of the instruction where the problem was found, or -1.
+         */
+        public final int insn;
+
+        /**
+         * A description of the problem.
+         */
+        public final String message;
+
+        public Failure(final String method, final int insn,
+                final String message) {
+            this.method = method;
+            this.insn = insn;
+            this.message = message;
+        }
+
+        @Override
+        public String toString() {
+            if (method == null) {
+                return message;
+            }
+            if (insn == -1) {
+                return method + ": " + message;
+            }
+            return method + " at instruction " + insn + ": " + message;
+        }
+    }
+
+    /**
+     * A callback for the classes read from the verified files.
+     */
+    private interface ClassHandler {
+
+        void handle(String source, byte[] b) throws IOException;
+    }
+
+    /**
+     * The super class, interfaces and kind of a class.
+     */
+    private static final class ClassInfo {
+
+        final String superName;
+
+        final String[] interfaces;
+
+        final boolean isInterface;
+
+        ClassInfo(final String superName, final String[] interfaces,
+                final boolean isInterface) {
+            this.superName = superName;
+            this.interfaces = interfaces;
+            this.isInterface = isInterface;
+        }
+    }
+
+    /**
+     * A {@link ClassHierarchy} built from the headers of the verified classes,
+     * and from a class loader for the other classes. The classes loaded with
+     * the class loader are cached.
+     */
+    private static final class Hierarchy extends ClassHierarchy {
+
+        private final Map<String, ClassInfo> classes;
+
+        private final Map<String, ClassInfo> loaded;
+
+        private final ClassLoader loader;
+
+        Hierarchy(final Map<String, ClassInfo> classes,
+                final ClassLoader loader) {
+            this.classes = classes;
+            this.loaded = new ConcurrentHashMap<String, ClassInfo>();
+            this.loader = loader;
+        }
+
+        /**
+         * Loads the given classes with the class loader.
+         * 
+         * @param types
+         *            internal names of classes.
+         * @return <tt>true</tt> if all the given classes have been loaded.
+         */
+        boolean preload(final String[] types) {
+            try {
+                for (int i = 0; i < types.length; ++i) {
+                    getClassInfo(types[i]);
+                }
+            } catch (RuntimeException e) {
+                return false;
+            } catch (LinkageError e) {
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Returns the headers of the verified classes and of the classes loaded
+         * so far with the class loader.
+         * 
+         * @return the known class headers, sorted by class name.
+         */
+        Map<String, ClassInfo> getClasses() {
+            Map<String, ClassInfo> all = new TreeMap<String, ClassInfo>(
+                    classes);
+            all.putAll(loaded);
+            return all;
+        }
+
+        @Override
+        public String getSuperClass(final String type) {
+            return getClassInfo(type).superName;
+        }
+
+        @Override
+        public String[] getInterfaces(final String type) {
+            return getClassInfo(type).interfaces;
+        }
+
+        @Override
+        public boolean isInterface(final String type) {
+            return getClassInfo(type).isInterface;
+        }
+
+        private ClassInfo getClassInfo(final String type) {
+            ClassInfo info = classes.get(type);
+            if (info == null) {
+                info = loaded.get(type);
+                if (info == null) {
+                    info = load(type);
+                    loaded.put(type, info);
+                }
+            }
+            return info;
+        }
+
+        private ClassInfo load(final String type) {
+            Class<?> c;
+            try {
+                c = Class.forName(type.replace('/', '.'), false, loader);
+            } catch (ClassNotFoundException e) {
+                throw new RuntimeException(e.toString());
+            }
+            Class<?>[] itfs = c.getInterfaces();
+            String[] interfaces = new String[itfs.length];
+            for (int i = 0; i < itfs.length; ++i) {
+                interfaces[i] = Type.getInternalName(itfs[i]);
+            }
+            String superName;
+            if (c.isInterface()) {
+                superName = "java/lang/Object";
+            } else if (c.getSuperclass() == null) {
+                superName = null;
+            } else {
+                superName = Type.getInternalName(c.getSuperclass());
+            }
+            return new ClassInfo(superName, interfaces, c.isInterface());
+        }
+    }
+}
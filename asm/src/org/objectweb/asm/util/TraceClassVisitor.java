@@ -92,6 +92,13 @@ public final class TraceClassVisitor extends ClassVisitor {
      */
     public final Printer p;
 
+    /**
+     * <tt>true</tt> if the text constructed by {@link #p p} must be printed
+     * and discarded before each field and method, instead of being printed at
+     * the end of the class.
+     */
+    private final boolean stream;
+
     /**
      * Constructs a new {@link TraceClassVisitor}.
      * 
@@ -130,9 +137,37 @@ public final class TraceClassVisitor extends ClassVisitor {
      */
     public TraceClassVisitor(final ClassVisitor cv, final Printer p,
             final PrintWriter pw) {
+        this(cv, p, pw, false);
+    }
+
+    /**
+     * Constructs a new {@link TraceClassVisitor}. In streaming mode, the text
+     * constructed by the printer is printed and removed from
+     * {@link Printer#getText()} before each field and method, and at the end
+     * of the class, so that at most one class member is kept in memory. This
+     * requires the fields and methods to be visited sequentially, one after
+     * the other, as done by {@link org.objectweb.asm.ClassReader}.
+     * 
+     * @param cv
+     *            the {@link ClassVisitor} to which this visitor delegates
+     *            calls. May be <tt>null</tt>.
+     * @param p
+     *            the object that actually converts visit events into text.
+     * @param pw
+     *            the print writer to be used to print the class. May be null if
+     *            you simply want to use the result via
+     *            {@link Printer#getText()}, instead of printing it.
+     * @param stream
+     *            <tt>true</tt> to print the text as the class members are
+     *            visited, or <tt>false</tt> to print it at the end of the
+     *            class. Ignored if <tt>pw</tt> is null.
+     */
+    public TraceClassVisitor(final ClassVisitor cv, final Printer p,
+            final PrintWriter pw, final boolean stream) {
         super(Opcodes.ASM4, cv);
         this.pw = pw;
         this.p = p;
+        this.stream = stream && pw != null;
     }
 
     @Override
@@ -181,6 +216,7 @@ public final class TraceClassVisitor extends ClassVisitor {
     @Override
     public FieldVisitor visitField(final int access, final String name,
             final String desc, final String signature, final Object value) {
+        flush();
         Printer p = this.p.visitField(access, name, desc, signature, value);
         FieldVisitor fv = cv == null ? null : cv.visitField(access, name, desc,
                 signature, value);
@@ -190,6 +226,7 @@ public final class TraceClassVisitor extends ClassVisitor {
     @Override
     public MethodVisitor visitMethod(final int access, final String name,
             final String desc, final String signature, final String[] exceptions) {
+        flush();
         Printer p = this.p.visitMethod(access, name, desc, signature,
                 exceptions);
         MethodVisitor mv = cv == null ? null : cv.visitMethod(access, name,
@@ -202,8 +239,22 @@ public final class TraceClassVisitor extends ClassVisitor {
         p.visitClassEnd();
         if (pw != null) {
             p.print(pw);
+            if (stream) {
+                p.text.clear();
+            }
             pw.flush();
         }
         super.visitEnd();
     }
+
+    /**
+     * In streaming mode, prints the text constructed so far and removes it
+     * from the printer.
+     */
+    private void flush() {
+        if (stream) {
+            p.print(pw);
+            p.text.clear();
+        }
+    }
 }
@@ -0,0 +1,180 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.VarInsnNode;
+import org.objectweb.asm.tree.analysis.Analyzer;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.objectweb.asm.tree.analysis.BasicInterpreter;
+import org.objectweb.asm.tree.analysis.BasicValue;
+import org.objectweb.asm.tree.analysis.BitSetSourceInterpreter;
+import org.objectweb.asm.tree.analysis.SimpleVerifier;
+import org.objectweb.asm.tree.analysis.SourceInterpreter;
+import org.objectweb.asm.tree.analysis.SourceValue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the time needed to analyze all the methods of the corpus, and a
+ * large generated method, with an {@link Analyzer}. The memory used by the
+ * frames of the large method is reported by the GC profiler.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AnalyzerBenchmark {
+
+    /**
+     * The interpreter used by the analyzer.
+     */
+    @Param({ "basic", "simple", "source", "bitset" })
+    public String interpreter;
+
+    /**
+     * The analyzer options: none, COPY_ON_WRITE, SPARSE_FRAMES,
+     * REVERSE_POSTORDER or all of them.
+     */
+    @Param({ "0", "1", "2", "4", "7" })
+    public int flags;
+
+    private List<ClassNode> classes;
+
+    private ClassNode largeClass;
+
+    @Setup(Level.Trial)
+    public void setUp(final Corpus corpus) {
+        classes = new ArrayList<ClassNode>();
+        for (int i = 0; i < corpus.classes.length; ++i) {
+            ClassNode cn = new ClassNode();
+            new ClassReader(corpus.classes[i]).accept(cn,
+                    ClassReader.SKIP_DEBUG);
+            classes.add(cn);
+        }
+        largeClass = new ClassNode();
+        largeClass.name = "C";
+        largeClass.superName = "java/lang/Object";
+        largeClass.methods.add(newLargeMethod(512, 8192));
+    }
+
+    /**
+     * Returns a static method which initializes the given number of int local
+     * variables, and then loads them the given number of times, storing a new
+     * value in one of them every 64 loads.
+     */
+    private static MethodNode newLargeMethod(final int nLocals,
+            final int nLoads) {
+        MethodNode mn = new MethodNode(Opcodes.ACC_STATIC, "m", "()V", null,
+                null);
+        for (int i = 0; i < nLocals; ++i) {
+            mn.instructions.add(new InsnNode(Opcodes.ICONST_0));
+            mn.instructions.add(new VarInsnNode(Opcodes.ISTORE, i));
+        }
+        for (int i = 0; i < nLoads; ++i) {
+            mn.instructions.add(new VarInsnNode(Opcodes.ILOAD, i % nLocals));
+            if (i % 64 == 0) {
+                mn.instructions.add(new VarInsnNode(Opcodes.ISTORE, i
+                        % nLocals));
+            } else {
+                mn.instructions.add(new InsnNode(Opcodes.POP));
+            }
+        }
+        mn.instructions.add(new InsnNode(Opcodes.RETURN));
+        mn.maxLocals = nLocals;
+        mn.maxStack = 1;
+        return mn;
+    }
+
+    @Benchmark
+    public void analyze(final Corpus corpus, final Blackhole bh) {
+        for (int i = 0; i < classes.size(); ++i) {
+            ClassNode cn = classes.get(i);
+            for (int j = 0; j < cn.methods.size(); ++j) {
+                MethodNode mn = cn.methods.get(j);
+                Analyzer<?> a = newAnalyzer(corpus, cn, mn);
+                try {
+                    bh.consume(a.analyze(cn.name, mn));
+                } catch (AnalyzerException e) {
+                    // some test cases are invalid on purpose
+                    bh.consume(e);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void analyzeLargeMethod(final Corpus corpus, final Blackhole bh)
+            throws AnalyzerException {
+        MethodNode mn = largeClass.methods.get(0);
+        Analyzer<?> a = newAnalyzer(corpus, largeClass, mn);
+        bh.consume(a.analyze(largeClass.name, mn));
+    }
+
+    private Analyzer<?> newAnalyzer(final Corpus corpus, final ClassNode cn,
+            final MethodNode mn) {
+        if ("basic".equals(interpreter)) {
+            return new Analyzer<BasicValue>(new BasicInterpreter(),
+                    flags);
+        } else if ("source".equals(interpreter)) {
+            return new Analyzer<SourceValue>(new SourceInterpreter(),
+                    flags);
+        } else if ("bitset".equals(interpreter)) {
+            return new Analyzer<SourceValue>(new BitSetSourceInterpreter(
+                    mn.instructions), flags);
+        }
+        List<Type> interfaces = new ArrayList<Type>();
+        for (int i = 0; i < cn.interfaces.size(); ++i) {
+            interfaces.add(Type.getObjectType(cn.interfaces.get(i)));
+        }
+        SimpleVerifier v = new SimpleVerifier(Type.getObjectType(cn.name),
+                cn.superName == null ? null : Type
+                        .getObjectType(cn.superName), interfaces,
+                (cn.access & Opcodes.ACC_INTERFACE) != 0);
+        v.setClassHierarchy(corpus.hierarchy);
+        return new Analyzer<BasicValue>(v, flags);
+    }
+}
@@ -0,0 +1,94 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the time needed to copy all the classes of the corpus with a
+ * {@link ClassReader} and a {@link ClassWriter}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ClassWriterBenchmark {
+
+    /**
+     * The class writer options: 0, COMPUTE_MAXS or COMPUTE_FRAMES.
+     */
+    @Param({ "0", "1", "2" })
+    public int flags;
+
+    /**
+     * Copies the classes through an adapter, so that all the constant pool
+     * items and all the methods are rebuilt.
+     */
+    @Benchmark
+    public void write(final Corpus corpus, final Blackhole bh) {
+        byte[][] classes = corpus.classes;
+        int readerFlags = (flags & ClassWriter.COMPUTE_FRAMES) != 0 ? ClassReader.SKIP_FRAMES
+                : 0;
+        for (int i = 0; i < classes.length; ++i) {
+            ClassReader cr = new ClassReader(classes[i]);
+            ClassWriter cw = corpus.newClassWriter(flags);
+            cr.accept(new ClassVisitor(Opcodes.ASM4, cw) {
+            }, readerFlags);
+            bh.consume(cw.toByteArray());
+        }
+    }
+
+    /**
+     * Copies the classes directly, which enables the constant pool and method
+     * copy optimizations of {@link ClassWriter#ClassWriter(ClassReader, int)}.
+     */
+    @Benchmark
+    public void copyPool(final Corpus corpus, final Blackhole bh) {
+        byte[][] classes = corpus.classes;
+        for (int i = 0; i < classes.length; ++i) {
+            ClassReader cr = new ClassReader(classes[i]);
+            ClassWriter cw = corpus.newClassWriter(cr, flags);
+            cr.accept(cw, 0);
+            bh.consume(cw.toByteArray());
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.bench;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.commons.ClassPathHierarchy;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * The classes used by the benchmarks. By default this corpus contains the
+ * classes generated from the checked-in test cases of the conformance tests
+ * (see org.objectweb.asm.test.cases.Generator). Another corpus can be
+ * specified with the <tt>asm.bench.corpus</tt> system property, which must be
+ * a list of directories or jar files, separated by the path separator.
+ */
+@State(Scope.Benchmark)
+public class Corpus {
+
+    /**
+     * The bytecode of the classes of this corpus.
+     */
+    public byte[][] classes;
+
+    /**
+     * A class hierarchy containing the classes of this corpus, used to compute
+     * stack map frames and to verify classes without loading them.
+     */
+    public ClassPathHierarchy hierarchy;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        String corpus = System.getProperty("asm.bench.corpus");
+        if (corpus == null) {
+            throw new IllegalStateException("asm.bench.corpus is not set");
+        }
+        String[] paths = corpus.split(File.pathSeparator);
+        File[] files = new File[paths.length];
+        List<byte[]> l = new ArrayList<byte[]>();
+        for (int i = 0; i < paths.length; ++i) {
+            files[i] = new File(paths[i]);
+            load(files[i], l);
+        }
+        if (l.isEmpty()) {
+            throw new IllegalStateException("empty corpus: " + corpus);
+        }
+        classes = l.toArray(new byte[l.size()][]);
+        hierarchy = new ClassPathHierarchy(files, getClass().getClassLoader());
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws IOException {
+        hierarchy.close();
+    }
+
+    /**
+     * Returns a new {@link ClassWriter} that uses the class hierarchy of this
+     * corpus.
+     */
+    public ClassWriter newClassWriter(final int flags) {
+        return new ClassWriter(flags, hierarchy);
+    }
+
+    /**
+     * Returns a new {@link ClassWriter} that copies the constant pool of the
+     * given class reader and uses the class hierarchy of this corpus.
+     */
+    public ClassWriter newClassWriter(final ClassReader cr, final int flags) {
+        return new ClassWriter(cr, flags, hierarchy);
+    }
+
+    private static void load(final File f, final List<byte[]> l)
+            throws IOException {
+        if (f.isDirectory()) {
+            File[] files = f.listFiles();
+            Arrays.sort(files);
+            for (int i = 0; i < files.length; ++i) {
+                load(files[i], l);
+            }
+        } else if (f.getName().endsWith(".class")) {
+            InputStream is = new FileInputStream(f);
+            try {
+                l.add(read(is));
+            } finally {
+                is.close();
+            }
+        } else if (f.getName().endsWith(".jar")) {
+            ZipFile zf = new ZipFile(f);
+            try {
+                Enumeration<? extends ZipEntry> e = zf.entries();
+                while (e.hasMoreElements()) {
+                    ZipEntry ze = e.nextElement();
+                    if (ze.getName().endsWith(".class")) {
+                        InputStream is = zf.getInputStream(ze);
+                        try {
+                            l.add(read(is));
+                        } finally {
+                            is.close();
+                        }
+                    }
+                }
+            } finally {
+                zf.close();
+            }
+        }
+    }
+
+    private static byte[] read(final InputStream is) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        int n;
+        while ((n = is.read(buf)) != -1) {
+            bos.write(buf, 0, n);
+        }
+        return bos.toByteArray();
+    }
+}
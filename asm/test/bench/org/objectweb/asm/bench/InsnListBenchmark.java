@@ -0,0 +1,114 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.VarInsnNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the time needed to transform a large {@link InsnList} with
+ * transformations that interleave modifications and index based accesses.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class InsnListBenchmark {
+
+    /**
+     * The number of instructions of the list.
+     */
+    @Param({ "60000" })
+    public int size;
+
+    /**
+     * If the list is in indexed mode.
+     */
+    @Param({ "false", "true" })
+    public boolean indexed;
+
+    private InsnList insns;
+
+    @Setup(Level.Invocation)
+    public void setUp() {
+        insns = new InsnList();
+        insns.setIndexed(indexed);
+        for (int i = 0; i < size; ++i) {
+            insns.add(new VarInsnNode(Opcodes.ILOAD, i % 16));
+        }
+    }
+
+    /**
+     * Inserts a NOP before every 8th instruction, and looks up the index of
+     * each inserted instruction.
+     */
+    @Benchmark
+    public int insertAndIndexOf() {
+        int sum = 0;
+        AbstractInsnNode insn = insns.getFirst();
+        int i = 0;
+        while (insn != null) {
+            if (i++ % 8 == 0) {
+                InsnNode nop = new InsnNode(Opcodes.NOP);
+                insns.insertBefore(insn, nop);
+                sum += insns.indexOf(nop);
+            }
+            insn = insn.getNext();
+        }
+        return sum;
+    }
+
+    /**
+     * Removes one instruction out of eight, and reads the instruction that
+     * follows each removed instruction by index.
+     */
+    @Benchmark
+    public int removeAndGet() {
+        int sum = 0;
+        for (int i = 0; i < insns.size(); i += 7) {
+            insns.remove(insns.get(i));
+            sum += insns.get(i).getOpcode();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,155 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.AnalyzerAdapter;
+import org.objectweb.asm.commons.LocalVariablesSorter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the time needed to parse the method descriptors of the corpus with
+ * {@link Type}, and to instrument the corpus with an {@link AnalyzerAdapter}
+ * and a {@link LocalVariablesSorter}, with and without the method descriptor
+ * cache of {@link Type}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TypeBenchmark {
+
+    /**
+     * The size of the method descriptor cache, 0 to disable it.
+     */
+    @Param({ "0", "4096" })
+    public int cacheSize;
+
+    /**
+     * The descriptors of the methods of the corpus, and of the methods they
+     * invoke, in the order in which they appear in the corpus.
+     */
+    private List<String> descriptors;
+
+    /**
+     * The classes of the corpus which can be analyzed by an
+     * {@link AnalyzerAdapter}, i.e. which do not contain JSR instructions.
+     */
+    private List<byte[]> classes;
+
+    @Setup(Level.Trial)
+    public void setUp(final Corpus corpus) {
+        descriptors = new ArrayList<String>();
+        classes = new ArrayList<byte[]>();
+        for (int i = 0; i < corpus.classes.length; ++i) {
+            ClassReader cr = new ClassReader(corpus.classes[i]);
+            cr.accept(new ClassVisitor(Opcodes.ASM4) {
+                @Override
+                public MethodVisitor visitMethod(final int access,
+                        final String name, final String desc,
+                        final String signature, final String[] exceptions) {
+                    descriptors.add(desc);
+                    return new MethodVisitor(Opcodes.ASM4) {
+                        @Override
+                        public void visitMethodInsn(final int opcode,
+                                final String owner, final String name,
+                                final String desc) {
+                            descriptors.add(desc);
+                        }
+                    };
+                }
+            }, ClassReader.SKIP_DEBUG);
+            if (cr.readShort(6) >= Opcodes.V1_6) {
+                classes.add(corpus.classes[i]);
+            }
+        }
+        Type.setMethodDescriptorCacheSize(cacheSize);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Type.setMethodDescriptorCacheSize(0);
+    }
+
+    @Benchmark
+    public void parseDescriptors(final Blackhole bh) {
+        for (int i = 0; i < descriptors.size(); ++i) {
+            String desc = descriptors.get(i);
+            bh.consume(Type.getArgumentTypes(desc));
+            bh.consume(Type.getReturnType(desc));
+            bh.consume(Type.getArgumentsAndReturnSizes(desc));
+        }
+    }
+
+    @Benchmark
+    public void instrument() {
+        for (int i = 0; i < classes.size(); ++i) {
+            new ClassReader(classes.get(i)).accept(new ClassVisitor(
+                    Opcodes.ASM4) {
+
+                private String owner;
+
+                @Override
+                public void visit(final int version, final int access,
+                        final String name, final String signature,
+                        final String superName, final String[] interfaces) {
+                    owner = name;
+                }
+
+                @Override
+                public MethodVisitor visitMethod(final int access,
+                        final String name, final String desc,
+                        final String signature, final String[] exceptions) {
+                    return new AnalyzerAdapter(owner, access, name, desc,
+                            new LocalVariablesSorter(access, desc,
+                                    new MethodVisitor(Opcodes.ASM4) {
+                                    }));
+                }
+            }, ClassReader.EXPAND_FRAMES);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm;
+
+import java.util.Arrays;
+
+import junit.framework.TestSuite;
+
+/**
+ * ClassReader and ClassWriter reset tests. The same reader and writers are
+ * reused for all the classes of the test suite.
+ */
+public class ClassWriterResetTest extends AbstractTest {
+
+    private static ClassReader cr;
+
+    private static ClassWriter cw1;
+
+    private static ClassWriter cw2;
+
+    private static ClassWriter cw3;
+
+    public static TestSuite suite() throws Exception {
+        return new ClassWriterResetTest().getSuite();
+    }
+
+    @Override
+    public void test() throws Exception {
+        ClassReader cr0 = new ClassReader(is);
+        byte[] b = cr0.b;
+        if (cr == null) {
+            cr = new ClassReader(b);
+            cw1 = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+            cw2 = new ClassWriter(0);
+            cw3 = new FramesClassWriter();
+        } else {
+            // reuses the arrays of the previous reader, with an offset
+            byte[] c = new byte[b.length + 1];
+            System.arraycopy(b, 0, c, 1, b.length);
+            cr = new ClassReader(c, 1, b.length, cr);
+            assertEquals(cr0.header + 1, cr.header);
+        }
+        assertEquals(cr0.getItemCount(), cr.getItemCount());
+
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cr0.accept(cw, 0);
+        cw1.reset();
+        cr.accept(cw1, 0);
+        assertTrue(Arrays.equals(cw.toByteArray(), cw1.toByteArray()));
+
+        cw = new ClassWriter(cr0, 0);
+        cr0.accept(cw, 0);
+        cw2.reset(cr);
+        cr.accept(cw2, 0);
+        assertTrue(Arrays.equals(cw.toByteArray(), cw2.toByteArray()));
+
+        if (cr0.readShort(6) >= Opcodes.V1_6) {
+            cw = new FramesClassWriter();
+            cr0.accept(cw, ClassReader.SKIP_FRAMES);
+            cw3.reset();
+            cr.accept(cw3, ClassReader.SKIP_FRAMES);
+            assertTrue(Arrays.equals(cw.toByteArray(), cw3.toByteArray()));
+        }
+    }
+
+    static class FramesClassWriter extends ClassWriter {
+
+        public FramesClassWriter() {
+            super(ClassWriter.COMPUTE_FRAMES);
+        }
+
+        @Override
+        protected String getCommonSuperClass(final String type1,
+                final String type2) {
+            return "java/lang/Object";
+        }
+    }
+}
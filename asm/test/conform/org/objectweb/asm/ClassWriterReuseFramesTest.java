@@ -0,0 +1,98 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm;
+
+import junit.framework.TestSuite;
+
+/**
+ * ClassWriter tests for the REUSE_FRAMES option.
+ */
+public class ClassWriterReuseFramesTest extends AbstractTest {
+
+    public static TestSuite suite() throws Exception {
+        return new ClassWriterReuseFramesTest().getSuite();
+    }
+
+    @Override
+    public void test() throws Exception {
+        ClassReader cr = new ClassReader(is);
+        if (cr.readShort(6) < Opcodes.V1_6) {
+            return;
+        }
+        // the code must be the same as with COMPUTE_FRAMES alone (in
+        // particular dead code must be replaced in the same way). The frames
+        // are not compared, since the reused frames can contain more general
+        // types than the computed ones (e.g. declared interface types)
+        ClassWriter cw1 = new ClassWriter(ClassWriter.COMPUTE_FRAMES) {
+            @Override
+            protected String getCommonSuperClass(final String type1,
+                    final String type2) {
+                return "java/lang/Object";
+            }
+        };
+        cr.accept(cw1, ClassReader.SKIP_FRAMES);
+        // the frames of unchanged methods must be reused, without computing
+        // any common super class
+        ClassWriter cw2 = new ClassWriter(ClassWriter.COMPUTE_FRAMES
+                | ClassWriter.REUSE_FRAMES) {
+            @Override
+            protected String getCommonSuperClass(final String type1,
+                    final String type2) {
+                throw new RuntimeException(type1 + " " + type2);
+            }
+        };
+        cr.accept(cw2, ClassReader.EXPAND_FRAMES);
+        assertEquals(new ClassReader(cw1.toByteArray()), new ClassReader(cw2
+                .toByteArray()), new RemoveFramesAdapter(),
+                new RemoveFramesAdapter());
+    }
+
+    static class RemoveFramesAdapter extends ClassVisitor {
+
+        public RemoveFramesAdapter() {
+            super(Opcodes.ASM4);
+        }
+
+        @Override
+        public MethodVisitor visitMethod(final int access, final String name,
+                final String desc, final String signature,
+                final String[] exceptions) {
+            MethodVisitor mv = super.visitMethod(access, name, desc,
+                    signature, exceptions);
+            return new MethodVisitor(Opcodes.ASM4, mv) {
+                @Override
+                public void visitFrame(final int type, final int nLocal,
+                        final Object[] local, final int nStack,
+                        final Object[] stack) {
+                }
+            };
+        }
+    }
+}
@@ -29,6 +29,8 @@
  */
 package org.objectweb.asm;
 
+import java.util.Arrays;
+
 import junit.framework.TestCase;
 
 /**
@@ -48,6 +50,154 @@ public class ClassWriterUnitTest extends TestCase {
         cw.newMethod("A", "m", "()V", false);
     }
 
+    public void testConstantPoolHashTable() {
+        ClassWriter cw = new ClassWriter(0);
+        int[] indexes = new int[5000];
+        for (int i = 0; i < indexes.length; ++i) {
+            indexes[i] = i % 2 == 0 ? cw.newConst(new Integer(i)) : cw
+                    .newClass("C" + i);
+        }
+        for (int i = 0; i < indexes.length; ++i) {
+            int index = i % 2 == 0 ? cw.newConst(new Integer(i)) : cw
+                    .newClass("C" + i);
+            assertEquals(indexes[i], index);
+        }
+        assertEquals(indexes[indexes.length - 1] + 1, cw.newUTF8("-"));
+    }
+
+    public void testReuseFrames() {
+        // the visited frame is compatible with the code: it is reused as is,
+        // without computing any common super class
+        Object[] frame = reuseFrames("java/lang/Object");
+        assertEquals(2, frame.length);
+        assertEquals(Opcodes.INTEGER, frame[0]);
+        assertEquals("java/lang/Object", frame[1]);
+    }
+
+    public void testReuseFramesConflict() {
+        // the visited frame is not compatible with the code: it is recomputed
+        Object[] frame = reuseFrames(Opcodes.INTEGER);
+        assertEquals(2, frame.length);
+        assertEquals(Opcodes.INTEGER, frame[0]);
+        assertEquals("java/lang/Object", frame[1]);
+    }
+
+    public void testResetAfterInvalidFrames() {
+        ClassWriter cw = new ClassWriter(0);
+        // the long forward jump invalidates the frames, which are recomputed
+        generateLongJump(cw);
+        cw.toByteArray();
+
+        // the option flags are restored: the maxs are not recomputed
+        cw.reset();
+        generateMaxs(cw);
+        ClassWriter cw0 = new ClassWriter(0);
+        generateMaxs(cw0);
+        assertTrue(Arrays.equals(cw0.toByteArray(), cw.toByteArray()));
+    }
+
+    private static void generateLongJump(final ClassWriter cw) {
+        cw.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC, "C", null,
+                "java/lang/Object", null);
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_STATIC, "m", "(Z)V",
+                null, null);
+        Label l = new Label();
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ILOAD, 0);
+        mv.visitJumpInsn(Opcodes.IFEQ, l);
+        for (int i = 0; i < 40000; ++i) {
+            mv.visitInsn(Opcodes.NOP);
+        }
+        mv.visitLabel(l);
+        mv.visitFrame(Opcodes.F_NEW, 1, new Object[] { Opcodes.INTEGER }, 0,
+                null);
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(1, 1);
+        mv.visitEnd();
+        cw.visitEnd();
+    }
+
+    private static void generateMaxs(final ClassWriter cw) {
+        cw.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC, "D", null,
+                "java/lang/Object", null);
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_STATIC, "m", "()V",
+                null, null);
+        mv.visitCode();
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(5, 5);
+        mv.visitEnd();
+        cw.visitEnd();
+    }
+
+    /**
+     * Generates a method whose join frame contains the given type for a local
+     * variable holding a String or an Integer, with the REUSE_FRAMES option,
+     * and returns the locals of this frame in the generated class.
+     */
+    private static Object[] reuseFrames(final Object type) {
+        final boolean trusted = type instanceof String;
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES
+                | ClassWriter.REUSE_FRAMES) {
+            @Override
+            protected String getCommonSuperClass(final String type1,
+                    final String type2) {
+                if (trusted) {
+                    throw new RuntimeException(type1 + " " + type2);
+                }
+                return "java/lang/Object";
+            }
+        };
+        cw.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC, "C", null,
+                "java/lang/Object", null);
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_STATIC, "m", "(Z)V",
+                null, null);
+        Label l1 = new Label();
+        Label l2 = new Label();
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ILOAD, 0);
+        mv.visitJumpInsn(Opcodes.IFEQ, l1);
+        mv.visitLdcInsn("s");
+        mv.visitVarInsn(Opcodes.ASTORE, 1);
+        mv.visitJumpInsn(Opcodes.GOTO, l2);
+        mv.visitLabel(l1);
+        mv.visitFrame(Opcodes.F_NEW, 1, new Object[] { Opcodes.INTEGER }, 0,
+                null);
+        mv.visitInsn(Opcodes.ICONST_0);
+        mv.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/Integer",
+                "valueOf", "(I)Ljava/lang/Integer;");
+        mv.visitVarInsn(Opcodes.ASTORE, 1);
+        mv.visitLabel(l2);
+        mv.visitFrame(Opcodes.F_NEW, 2, new Object[] { Opcodes.INTEGER, type },
+                0, null);
+        mv.visitVarInsn(Opcodes.ALOAD, 1);
+        mv.visitInsn(Opcodes.POP);
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        cw.visitEnd();
+
+        final Object[][] frames = new Object[2][];
+        new ClassReader(cw.toByteArray()).accept(new ClassVisitor(
+                Opcodes.ASM4) {
+            @Override
+            public MethodVisitor visitMethod(final int access,
+                    final String name, final String desc,
+                    final String signature, final String[] exceptions) {
+                return new MethodVisitor(Opcodes.ASM4) {
+                    @Override
+                    public void visitFrame(final int type, final int nLocal,
+                            final Object[] local, final int nStack,
+                            final Object[] stack) {
+                        Object[] locals = new Object[nLocal];
+                        System.arraycopy(local, 0, locals, 0, nLocal);
+                        frames[frames[0] == null ? 0 : 1] = locals;
+                    }
+                };
+            }
+        }, ClassReader.EXPAND_FRAMES);
+        return frames[1];
+    }
+
     public void testIllegalNewConstArgument() {
         ClassWriter cw = new ClassWriter(0);
         try {
@@ -0,0 +1,120 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm;
+
+import junit.framework.TestCase;
+
+/**
+ * StringCache unit tests.
+ */
+public class StringCacheUnitTest extends TestCase {
+
+    private static byte[] generate(final String name, final String field) {
+        ClassWriter cw = new ClassWriter(0);
+        cw.visit(Opcodes.V1_5, Opcodes.ACC_PUBLIC, name, null,
+                "java/lang/Object", null);
+        cw.visitField(Opcodes.ACC_PUBLIC, field, "I", null, null).visitEnd();
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static String getField(final ClassReader cr) {
+        final String[] field = new String[1];
+        cr.accept(new ClassVisitor(Opcodes.ASM4) {
+            @Override
+            public FieldVisitor visitField(final int access,
+                    final String name, final String desc,
+                    final String signature, final Object value) {
+                field[0] = name;
+                return null;
+            }
+        }, 0);
+        return field[0];
+    }
+
+    public void testSharedStrings() {
+        StringCache cache = new StringCache();
+        ClassReader cr1 = new ClassReader(generate("pkg/A", "f"));
+        ClassReader cr2 = new ClassReader(generate("pkg/B", "f"));
+        cr1.setStringCache(cache);
+        cr2.setStringCache(cache);
+        assertSame(cr1.getSuperName(), cr2.getSuperName());
+        assertSame(getField(cr1), getField(cr2));
+        assertEquals("pkg/A", cr1.getClassName());
+        assertEquals("pkg/B", cr2.getClassName());
+        // without cache
+        ClassReader cr3 = new ClassReader(generate("pkg/C", "f"));
+        assertNotSame(cr1.getSuperName(), cr3.getSuperName());
+        assertEquals(cr1.getSuperName(), cr3.getSuperName());
+    }
+
+    public void testSharedNonAsciiStrings() {
+        StringCache cache = new StringCache();
+        String name = "\u00e9t\u00e9\u0000\u20ac";
+        ClassReader cr1 = new ClassReader(generate("pkg/A", name));
+        ClassReader cr2 = new ClassReader(generate("pkg/B", name));
+        cr1.setStringCache(cache);
+        cr2.setStringCache(cache);
+        String s1 = getField(cr1);
+        assertEquals(name, s1);
+        assertSame(s1, getField(cr2));
+    }
+
+    public void testCollisions() {
+        StringCache cache = new StringCache(1);
+        String[] names = { "f", "g", "\u00e9t\u00e9", "\u20ac", "\u0000",
+                "\u00e9t\u00e9\u20ac" };
+        for (int i = 0; i < 2 * names.length; ++i) {
+            String name = names[i % names.length];
+            ClassReader cr = new ClassReader(generate("pkg/A", name));
+            cr.setStringCache(cache);
+            assertEquals(name, getField(cr));
+        }
+    }
+
+    public void testLongStrings() {
+        StringBuffer sb = new StringBuffer();
+        for (int i = 0; i < 300; ++i) {
+            sb.append((char) ('a' + i % 26));
+        }
+        String name = sb.toString();
+        StringCache cache = new StringCache();
+        ClassReader cr1 = new ClassReader(generate("pkg/A", name));
+        ClassReader cr2 = new ClassReader(generate("pkg/B", name));
+        cr1.setStringCache(cache);
+        cr2.setStringCache(cache);
+        String s1 = getField(cr1);
+        String s2 = getField(cr2);
+        assertEquals(name, s1);
+        assertEquals(name, s2);
+        // strings longer than 256 bytes are not cached
+        assertNotSame(s1, s2);
+    }
+}
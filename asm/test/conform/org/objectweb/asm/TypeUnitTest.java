@@ -110,4 +110,39 @@ public class TypeUnitTest extends TestCase implements Opcodes {
         assertEquals(t2.getClassName(), t1.getClassName());
         assertEquals(t2.getDescriptor(), t1.getDescriptor());
     }
+
+    public void testMethodDescriptorCache() {
+        String[] descs = { "()V", "(IJ)D", "([[JLjava/lang/Object;Z)[I",
+                "(Ljava/lang/String;[D)Ljava/lang/String;", "(DDD)J" };
+        Type[][] args = new Type[descs.length][];
+        Type[] returns = new Type[descs.length];
+        int[] sizes = new int[descs.length];
+        for (int i = 0; i < descs.length; ++i) {
+            args[i] = Type.getArgumentTypes(descs[i]);
+            returns[i] = Type.getReturnType(descs[i]);
+            sizes[i] = Type.getArgumentsAndReturnSizes(descs[i]);
+        }
+        // a small cache, to test collisions
+        Type.setMethodDescriptorCacheSize(3);
+        try {
+            for (int n = 0; n < 3; ++n) {
+                for (int i = 0; i < descs.length; ++i) {
+                    Type[] a = Type.getArgumentTypes(descs[i]);
+                    assertTrue(Arrays.equals(args[i], a));
+                    // the returned array must be a copy
+                    if (a.length > 0) {
+                        a[0] = null;
+                    }
+                    assertEquals(returns[i], Type.getReturnType(descs[i]));
+                    assertEquals(sizes[i], Type
+                            .getArgumentsAndReturnSizes(descs[i]));
+                    Type t = Type.getMethodType(descs[i]);
+                    assertEquals(descs[i], t.getDescriptor());
+                    assertTrue(Arrays.equals(args[i], t.getArgumentTypes()));
+                }
+            }
+        } finally {
+            Type.setMethodDescriptorCacheSize(0);
+        }
+    }
 }
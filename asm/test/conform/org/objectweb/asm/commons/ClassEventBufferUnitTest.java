@@ -0,0 +1,140 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.commons;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * ClassEventBuffer unit tests.
+ */
+public class ClassEventBufferUnitTest extends TestCase {
+
+    public void testNullFrameArrays() {
+        ClassEventBuffer buffer = new ClassEventBuffer();
+        buffer.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC, "C", null,
+                "java/lang/Object", null);
+        MethodVisitor mv = buffer.visitMethod(Opcodes.ACC_STATIC, "m", "()V",
+                null, null);
+        mv.visitCode();
+        mv.visitFrame(Opcodes.F_CHOP, 1, null, 0, null);
+        mv.visitFrame(Opcodes.F_SAME1, 0, null, 1,
+                new Object[] { Opcodes.INTEGER });
+        mv.visitEnd();
+        buffer.visitEnd();
+
+        final List<Object[]> frames = new ArrayList<Object[]>();
+        buffer.accept(new ClassVisitor(Opcodes.ASM4) {
+            @Override
+            public MethodVisitor visitMethod(final int access,
+                    final String name, final String desc,
+                    final String signature, final String[] exceptions) {
+                return new MethodVisitor(Opcodes.ASM4) {
+                    @Override
+                    public void visitFrame(final int type, final int nLocal,
+                            final Object[] local, final int nStack,
+                            final Object[] stack) {
+                        frames.add(new Object[] { new Integer(type),
+                                new Integer(nLocal), local,
+                                new Integer(nStack), stack });
+                    }
+                };
+            }
+        });
+        assertEquals(2, frames.size());
+        Object[] f = frames.get(0);
+        assertEquals(new Integer(Opcodes.F_CHOP), f[0]);
+        assertEquals(new Integer(1), f[1]);
+        assertNull(f[2]);
+        assertEquals(new Integer(0), f[3]);
+        assertNull(f[4]);
+        f = frames.get(1);
+        assertEquals(new Integer(Opcodes.F_SAME1), f[0]);
+        assertNull(f[2]);
+        assertEquals(new Integer(1), f[3]);
+        assertEquals(new Integer(Opcodes.INTEGER), ((Object[]) f[4])[0]);
+    }
+
+    public void testLabelsPerMethod() {
+        ClassEventBuffer buffer = new ClassEventBuffer();
+        buffer.visit(Opcodes.V1_5, Opcodes.ACC_PUBLIC, "C", null,
+                "java/lang/Object", null);
+        for (int i = 0; i < 3; ++i) {
+            MethodVisitor mv = buffer.visitMethod(Opcodes.ACC_STATIC, "m"
+                    + i, "()V", null, null);
+            mv.visitCode();
+            // the first method uses more labels than the next ones
+            for (int j = 0; j < (i == 0 ? 3 : 1); ++j) {
+                Label l = new Label();
+                mv.visitJumpInsn(Opcodes.GOTO, l);
+                mv.visitLabel(l);
+            }
+            mv.visitInsn(Opcodes.RETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+        buffer.visitEnd();
+
+        final List<Label> jumps = new ArrayList<Label>();
+        final List<Label> labels = new ArrayList<Label>();
+        buffer.accept(new ClassVisitor(Opcodes.ASM4) {
+            @Override
+            public MethodVisitor visitMethod(final int access,
+                    final String name, final String desc,
+                    final String signature, final String[] exceptions) {
+                return new MethodVisitor(Opcodes.ASM4) {
+                    @Override
+                    public void visitJumpInsn(final int opcode,
+                            final Label label) {
+                        jumps.add(label);
+                    }
+
+                    @Override
+                    public void visitLabel(final Label label) {
+                        labels.add(label);
+                    }
+                };
+            }
+        });
+        assertEquals(5, labels.size());
+        assertEquals(labels, jumps);
+        // each replayed method gets its own labels
+        for (int i = 0; i < labels.size(); ++i) {
+            assertEquals(i, labels.indexOf(labels.get(i)));
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.commons;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * ClassHeaderReader unit tests.
+ */
+public class ClassHeaderReaderUnitTest extends TestCase {
+
+    private static byte[] generate() {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V1_7, Opcodes.ACC_PUBLIC + Opcodes.ACC_SUPER,
+                "pkg/C\u00e9\u4e2d", null, "pkg/Super", new String[] {
+                        "pkg/I1", "pkg/I2" });
+        // adds constant pool items of all sizes before the header
+        cw.visitField(Opcodes.ACC_PRIVATE, "l", "J", null, new Long(3))
+                .visitEnd();
+        cw.visitField(Opcodes.ACC_PRIVATE, "d", "D", null, new Double(3))
+                .visitEnd();
+        cw.visitField(Opcodes.ACC_PRIVATE, "i", "I", null, new Integer(3))
+                .visitEnd();
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "m", "()V",
+                null, null);
+        mv.visitCode();
+        mv.visitLdcInsn("m");
+        mv.visitFieldInsn(Opcodes.GETSTATIC, "pkg/D", "f", "I");
+        Handle h = new Handle(Opcodes.H_INVOKESTATIC, "pkg/D", "bsm",
+                "()Ljava/lang/Object;");
+        mv.visitLdcInsn(h);
+        mv.visitInvokeDynamicInsn("n", "()V", h);
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    public void testHeader() {
+        byte[] b = generate();
+        ClassReader cr = new ClassReader(b);
+        ClassHeaderReader hr = new ClassHeaderReader(b);
+        assertEquals(cr.header, hr.header);
+        assertEquals(cr.getAccess(), hr.getAccess());
+        assertEquals("pkg/C\u00e9\u4e2d", hr.getClassName());
+        assertEquals("pkg/Super", hr.getSuperName());
+        assertEquals(Arrays.asList(cr.getInterfaces()), Arrays.asList(hr
+                .getInterfaces()));
+    }
+
+    public void testOffset() {
+        byte[] b = generate();
+        byte[] c = new byte[b.length + 10];
+        System.arraycopy(b, 0, c, 5, b.length);
+        ClassHeaderReader hr = new ClassHeaderReader(c, 5, b.length);
+        assertEquals(new ClassReader(b).header + 5, hr.header);
+        assertEquals("pkg/C\u00e9\u4e2d", hr.getClassName());
+    }
+
+    public void testStream() throws IOException {
+        ClassHeaderReader hr = new ClassHeaderReader(new ByteArrayInputStream(
+                generate()));
+        assertEquals("pkg/Super", hr.getSuperName());
+        assertEquals(2, hr.getInterfaces().length);
+    }
+
+    public void testObject() {
+        ClassWriter cw = new ClassWriter(0);
+        cw.visit(Opcodes.V1_5, Opcodes.ACC_PUBLIC, "java/lang/Object", null,
+                null, null);
+        cw.visitEnd();
+        ClassHeaderReader hr = new ClassHeaderReader(cw.toByteArray());
+        assertNull(hr.getSuperName());
+        assertEquals(0, hr.getInterfaces().length);
+    }
+
+    public void testIllegalVersion() {
+        byte[] b = generate();
+        b[6] = 1;
+        try {
+            new ClassHeaderReader(b);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+}
@@ -0,0 +1,227 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.commons;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import junit.framework.TestCase;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.commons.ClassIndex.Member;
+
+/**
+ * ClassIndex and ClassIndexBuilder unit tests.
+ */
+public class ClassIndexUnitTest extends TestCase {
+
+    private File dir;
+
+    private File jar;
+
+    private File file;
+
+    private static byte[] generate(final String name, final String superName,
+            final String[] interfaces, final String field, final String owner,
+            final String method) {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC, name, null, superName,
+                interfaces);
+        if (field != null) {
+            cw.visitField(Opcodes.ACC_PUBLIC, field, "I", null, null)
+                    .visitEnd();
+        }
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "m", "()V",
+                null, null);
+        mv.visitCode();
+        if (owner != null) {
+            mv.visitTypeInsn(Opcodes.NEW, owner);
+            mv.visitInsn(Opcodes.DUP);
+            mv.visitMethodInsn(Opcodes.INVOKESPECIAL, owner, "<init>", "()V");
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, owner, method, "()V");
+        }
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static void write(final File f, final byte[] b)
+            throws IOException {
+        f.getParentFile().mkdirs();
+        OutputStream os = new FileOutputStream(f);
+        try {
+            os.write(b);
+        } finally {
+            os.close();
+        }
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = File.createTempFile("index", "");
+        dir.delete();
+        jar = new File(dir.getPath() + ".jar");
+        file = new File(dir.getPath() + ".idx");
+        ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(jar));
+        zos.putNextEntry(new ZipEntry("pkg/A.class"));
+        zos.write(generate("pkg/A", "pkg/B", null, "f", "pkg/C", "m"));
+        zos.putNextEntry(new ZipEntry("pkg/B.class"));
+        zos.write(generate("pkg/B", "java/lang/Object", null, null, "pkg/C",
+                "m"));
+        zos.putNextEntry(new ZipEntry("README"));
+        zos.close();
+        write(new File(dir, "pkg/C.class"), generate("pkg/C", "pkg/B",
+                new String[] { "pkg/I" }, "g", null, null));
+        // a duplicate class, which must be ignored
+        write(new File(dir, "pkg/D/A.class"), generate("pkg/A",
+                "java/lang/Object", null, null, null, null));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        new File(dir, "pkg/C.class").delete();
+        new File(dir, "pkg/D/A.class").delete();
+        new File(dir, "pkg/D").delete();
+        new File(dir, "pkg").delete();
+        dir.delete();
+        jar.delete();
+        file.delete();
+    }
+
+    private ClassIndex build(final int threads) throws IOException {
+        ClassIndexBuilder builder = new ClassIndexBuilder(threads);
+        builder.add(jar);
+        builder.add(dir);
+        return builder.build();
+    }
+
+    private static void check(final ClassIndex index) {
+        assertEquals(3, index.getClassCount());
+        assertEquals("pkg/A", index.getClassName(0));
+        assertEquals("pkg/C", index.getClassName(2));
+        assertTrue(index.contains("pkg/B"));
+        assertFalse(index.contains("pkg/I"));
+        assertFalse(index.contains("java/lang/Object"));
+
+        assertEquals(Opcodes.ACC_PUBLIC, index.getAccess("pkg/A"));
+        assertEquals(-1, index.getAccess("pkg/I"));
+        assertEquals("pkg/B", index.getSuperName("pkg/A"));
+        assertEquals("java/lang/Object", index.getSuperName("pkg/B"));
+        assertNull(index.getSuperName("pkg/I"));
+        assertEquals(0, index.getInterfaces("pkg/A").length);
+        assertEquals("pkg/I", index.getInterfaces("pkg/C")[0]);
+        assertNull(index.getInterfaces("pkg/I"));
+
+        assertEquals(Arrays.asList(new Member[] { new Member(
+                Opcodes.ACC_PUBLIC, "pkg/A", "f", "I") }), index
+                .getFields("pkg/A"));
+        assertEquals(0, index.getFields("pkg/B").size());
+        assertEquals(Arrays.asList(new Member[] { new Member(
+                Opcodes.ACC_PUBLIC, "pkg/C", "m", "()V") }), index
+                .getMethods("pkg/C"));
+        assertEquals(0, index.getMethods("pkg/I").size());
+
+        assertEquals(Arrays.asList(new String[] { "pkg/A", "pkg/C" }), index
+                .getSubclasses("pkg/B"));
+        assertEquals(0, index.getSubclasses("pkg/A").size());
+        // the sub types of types which are not indexed are also recorded
+        assertEquals(Arrays.asList(new String[] { "pkg/C" }), index
+                .getSubclasses("pkg/I"));
+        assertEquals(Arrays.asList(new String[] { "pkg/B" }), index
+                .getSubclasses("java/lang/Object"));
+        assertEquals(0, index.getSubclasses("pkg/X").size());
+
+        List<String> callers = index.getReferencingClasses("pkg/C", "m",
+                "()V");
+        assertEquals(Arrays.asList(new String[] { "pkg/A", "pkg/B" }),
+                callers);
+        assertEquals(0, index.getReferencingClasses("pkg/C", "n", "()V")
+                .size());
+        assertEquals(0, index.getReferencingClasses("pkg/C", "m", "(I)V")
+                .size());
+        assertEquals(Arrays.asList(new String[] { "pkg/A", "pkg/B" }), index
+                .getReferencingClasses("pkg/C"));
+        assertEquals(Arrays.asList(new String[] { "pkg/B" }), index
+                .getReferencingClasses("java/lang/Object"));
+        assertEquals(0, index.getReferencingClasses("pkg/A").size());
+        assertEquals(0, index.getReferencingClasses("pkg/X").size());
+    }
+
+    public void testBuild() throws IOException {
+        check(build(1));
+        check(build(4));
+    }
+
+    public void testWriteAndLoad() throws IOException {
+        ClassIndexBuilder builder = new ClassIndexBuilder(2);
+        builder.add(jar);
+        builder.add(dir);
+        builder.write(file);
+        check(ClassIndex.load(file));
+    }
+
+    public void testAddBytes() {
+        ClassIndexBuilder builder = new ClassIndexBuilder();
+        builder.add(generate("pkg/A", "java/lang/Object", null, null, "pkg/B",
+                "m"));
+        ClassIndex index = builder.build();
+        assertEquals(1, index.getClassCount());
+        assertEquals(Arrays.asList(new String[] { "pkg/A" }), index
+                .getReferencingClasses("pkg/B", "m", "()V"));
+    }
+
+    public void testInvalidIndex() {
+        try {
+            new ClassIndex(java.nio.ByteBuffer.allocate(28));
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    public void testInvalidClass() throws IOException {
+        write(new File(dir, "pkg/D/A.class"), new byte[] { 1, 2, 3 });
+        ClassIndexBuilder builder = new ClassIndexBuilder(2);
+        try {
+            builder.add(dir);
+            fail();
+        } catch (IOException e) {
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.commons;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import junit.framework.TestCase;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FrameNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/**
+ * ClassPathHierarchy unit tests.
+ */
+public class ClassPathHierarchyUnitTest extends TestCase {
+
+    private File dir;
+
+    private File jar;
+
+    private ClassPathHierarchy hierarchy;
+
+    private static byte[] generate(final int access, final String name,
+            final String superName, final String[] interfaces) {
+        ClassWriter cw = new ClassWriter(0);
+        cw.visit(Opcodes.V1_6, access, name, null, superName, interfaces);
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static void write(final File f, final byte[] b)
+            throws IOException {
+        f.getParentFile().mkdirs();
+        OutputStream os = new FileOutputStream(f);
+        try {
+            os.write(b);
+        } finally {
+            os.close();
+        }
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = File.createTempFile("hierarchy", "");
+        dir.delete();
+        jar = new File(dir.getPath() + ".jar");
+        ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(jar));
+        zos.putNextEntry(new ZipEntry("pkg/A.class"));
+        zos.write(generate(Opcodes.ACC_PUBLIC, "pkg/A", "pkg/B", null));
+        zos.putNextEntry(new ZipEntry("pkg/B.class"));
+        zos.write(generate(Opcodes.ACC_PUBLIC, "pkg/B", "java/lang/Object",
+                null));
+        zos.close();
+        write(new File(dir, "pkg/C.class"), generate(Opcodes.ACC_PUBLIC,
+                "pkg/C", "pkg/B", new String[] { "pkg/I" }));
+        write(new File(dir, "pkg/I.class"), generate(Opcodes.ACC_PUBLIC
+                + Opcodes.ACC_INTERFACE + Opcodes.ACC_ABSTRACT, "pkg/I",
+                "java/lang/Object", null));
+        hierarchy = new ClassPathHierarchy(new File[] { jar, dir },
+                getClass().getClassLoader());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        hierarchy.close();
+        new File(dir, "pkg/C.class").delete();
+        new File(dir, "pkg/I.class").delete();
+        new File(dir, "pkg").delete();
+        dir.delete();
+        jar.delete();
+    }
+
+    public void testHierarchy() {
+        assertEquals("pkg/B", hierarchy.getSuperClass("pkg/A"));
+        assertEquals(0, hierarchy.getInterfaces("pkg/A").length);
+        assertEquals("pkg/I", hierarchy.getInterfaces("pkg/C")[0]);
+        assertTrue(hierarchy.isInterface("pkg/I"));
+        assertFalse(hierarchy.isInterface("pkg/C"));
+    }
+
+    public void testIsAssignableFrom() {
+        assertTrue(hierarchy.isAssignableFrom("pkg/B", "pkg/A"));
+        assertFalse(hierarchy.isAssignableFrom("pkg/A", "pkg/B"));
+        assertTrue(hierarchy.isAssignableFrom("pkg/I", "pkg/C"));
+        assertFalse(hierarchy.isAssignableFrom("pkg/I", "pkg/A"));
+        assertTrue(hierarchy.isAssignableFrom("java/lang/Object", "pkg/I"));
+    }
+
+    public void testGetCommonSuperClass() {
+        assertEquals("pkg/B", hierarchy.getCommonSuperClass("pkg/A", "pkg/C"));
+        assertEquals("pkg/B", hierarchy.getCommonSuperClass("pkg/A", "pkg/B"));
+        assertEquals("java/lang/Object",
+                hierarchy.getCommonSuperClass("pkg/A", "pkg/I"));
+    }
+
+    public void testClassNotFound() {
+        try {
+            hierarchy.getSuperClass("pkg/D");
+            fail();
+        } catch (RuntimeException e) {
+        }
+        hierarchy.addClass(new ClassReader(generate(Opcodes.ACC_PUBLIC,
+                "pkg/D", "pkg/C", null)));
+        assertEquals("pkg/C", hierarchy.getSuperClass("pkg/D"));
+    }
+
+    public void testComputeFrames() {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES,
+                hierarchy);
+        cw.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC, "pkg/E", null,
+                "java/lang/Object", null);
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_STATIC, "m",
+                "(ZLpkg/A;Lpkg/C;)Ljava/lang/Object;", null, null);
+        mv.visitCode();
+        Label l0 = new Label();
+        Label l1 = new Label();
+        mv.visitVarInsn(Opcodes.ILOAD, 0);
+        mv.visitJumpInsn(Opcodes.IFEQ, l0);
+        mv.visitVarInsn(Opcodes.ALOAD, 1);
+        mv.visitJumpInsn(Opcodes.GOTO, l1);
+        mv.visitLabel(l0);
+        mv.visitVarInsn(Opcodes.ALOAD, 2);
+        mv.visitLabel(l1);
+        mv.visitInsn(Opcodes.ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        cw.visitEnd();
+
+        ClassNode cn = new ClassNode();
+        new ClassReader(cw.toByteArray()).accept(cn, 0);
+        MethodNode mn = (MethodNode) cn.methods.get(0);
+        FrameNode last = null;
+        for (int i = 0; i < mn.instructions.size(); ++i) {
+            AbstractInsnNode insn = mn.instructions.get(i);
+            if (insn instanceof FrameNode) {
+                last = (FrameNode) insn;
+            }
+        }
+        assertEquals("pkg/B", last.stack.get(0));
+    }
+}
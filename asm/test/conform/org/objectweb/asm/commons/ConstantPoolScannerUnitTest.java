@@ -0,0 +1,136 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.commons;
+
+import java.util.BitSet;
+
+import junit.framework.TestCase;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * ConstantPoolScanner unit tests.
+ */
+public class ConstantPoolScannerUnitTest extends TestCase {
+
+    private ClassReader cr;
+
+    @Override
+    protected void setUp() throws Exception {
+        ClassWriter cw = new ClassWriter(0);
+        cw.visit(Opcodes.V1_5, Opcodes.ACC_PUBLIC, "pkg/A", null,
+                "java/lang/Object", null);
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "m", "()V",
+                null, null);
+        mv.visitCode();
+        mv.visitLdcInsn(new Long(1));
+        mv.visitInsn(Opcodes.POP2);
+        mv.visitLdcInsn("\u00e9t\u00e9 \u20ac");
+        mv.visitInsn(Opcodes.POP);
+        mv.visitFieldInsn(Opcodes.GETSTATIC, "java/lang/System", "out",
+                "Ljava/io/PrintStream;");
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/io/PrintStream",
+                "println", "()V");
+        mv.visitMethodInsn(Opcodes.INVOKEINTERFACE, "java/util/List", "size",
+                "()I");
+        mv.visitTypeInsn(Opcodes.NEW, "com/foo/Bar");
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(2, 1);
+        mv.visitEnd();
+        cw.visitEnd();
+        cr = new ClassReader(cw.toByteArray());
+    }
+
+    public void testNoPattern() {
+        ConstantPoolScanner scanner = new ConstantPoolScanner();
+        assertFalse(scanner.matches(cr));
+        assertTrue(scanner.scan(cr).isEmpty());
+    }
+
+    public void testClass() {
+        ConstantPoolScanner scanner = new ConstantPoolScanner();
+        assertEquals(0, scanner.addClass("java/lang/Object"));
+        assertEquals(1, scanner.addClass("java/lang/String"));
+        assertEquals(2, scanner.addClass("com/foo/*"));
+        assertEquals(3, scanner.addClass("com/bar/*"));
+        assertEquals(4, scanner.addClass("\u00e9t\u00e9 \u20ac"));
+        BitSet hits = scanner.scan(cr);
+        assertTrue(hits.get(0));
+        assertFalse(hits.get(1));
+        assertTrue(hits.get(2));
+        assertFalse(hits.get(3));
+        // a string constant, not a class
+        assertFalse(hits.get(4));
+        assertTrue(scanner.matches(cr));
+    }
+
+    public void testField() {
+        ConstantPoolScanner scanner = new ConstantPoolScanner();
+        scanner.addField("java/lang/System", "out", "Ljava/io/PrintStream;");
+        scanner.addField("java/lang/System", "err", null);
+        scanner.addField("java/lang/System", null, null);
+        scanner.addField("java/*", "out", null);
+        // a method, not a field
+        scanner.addField("java/io/PrintStream", "println", "()V");
+        BitSet hits = scanner.scan(cr);
+        assertEquals("{0, 2, 3}", hits.toString());
+    }
+
+    public void testMethod() {
+        ConstantPoolScanner scanner = new ConstantPoolScanner();
+        scanner.addMethod("java/io/PrintStream", "println", "()V");
+        scanner.addMethod("java/io/PrintStream", "println", "(I)V");
+        scanner.addMethod("java/util/List", "size", null);
+        scanner.addMethod("java/util/*", null, "()I");
+        scanner.addMethod("java/util/*", null, "()V");
+        // a field, not a method
+        scanner.addMethod("java/lang/System", "out", null);
+        BitSet hits = scanner.scan(cr);
+        assertEquals("{0, 2, 3}", hits.toString());
+    }
+
+    public void testNoMatch() {
+        ConstantPoolScanner scanner = new ConstantPoolScanner();
+        for (int i = 0; i < 1000; ++i) {
+            scanner.addMethod("pkg/C" + i, "m", "()V");
+            scanner.addField("pkg/C" + i, "f", null);
+            scanner.addClass("pkg/D" + i);
+        }
+        assertFalse(scanner.matches(cr));
+        scanner.addMethod("java/lang/Object", "<init>", "()V");
+        assertFalse(scanner.matches(cr));
+        scanner.addClass("pkg/A");
+        assertTrue(scanner.matches(cr));
+        assertEquals("{3001}", scanner.scan(cr).toString());
+    }
+}
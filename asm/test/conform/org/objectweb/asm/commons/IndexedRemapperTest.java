@@ -0,0 +1,104 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.commons;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestSuite;
+
+import org.objectweb.asm.AbstractTest;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * IndexedRemapper tests.
+ */
+public class IndexedRemapperTest extends AbstractTest {
+
+    public static TestSuite suite() throws Exception {
+        return new IndexedRemapperTest().getSuite();
+    }
+
+    @Override
+    public void test() throws Exception {
+        ClassReader cr = new ClassReader(is);
+        final Map<String, String> mapping = new HashMap<String, String>();
+        cr.accept(new ClassVisitor(Opcodes.ASM4) {
+
+            private String owner;
+
+            @Override
+            public void visit(final int version, final int access,
+                    final String name, final String signature,
+                    final String superName, final String[] interfaces) {
+                owner = name;
+                mapping.put(name, name + "$R");
+                if (superName != null) {
+                    mapping.put(superName, superName + "$R");
+                }
+            }
+
+            @Override
+            public FieldVisitor visitField(final int access,
+                    final String name, final String desc,
+                    final String signature, final Object value) {
+                mapping.put(owner + '.' + name, name + "$F");
+                return null;
+            }
+
+            @Override
+            public MethodVisitor visitMethod(final int access,
+                    final String name, final String desc,
+                    final String signature, final String[] exceptions) {
+                if (name.charAt(0) != '<' && name.length() % 2 == 0) {
+                    mapping.put(owner + '.' + name + desc, name + "$M");
+                }
+                return null;
+            }
+        }, 0);
+
+        ClassWriter cw1 = new ClassWriter(0);
+        cr.accept(new RemappingClassAdapter(cw1, new SimpleRemapper(mapping)),
+                ClassReader.EXPAND_FRAMES);
+        Remapper remapper = new IndexedRemapper(mapping);
+        for (int i = 0; i < 2; ++i) {
+            ClassWriter cw2 = new ClassWriter(0);
+            cr.accept(new RemappingClassAdapter(cw2, remapper),
+                    ClassReader.EXPAND_FRAMES);
+            assertEquals(new ClassReader(cw1.toByteArray()), new ClassReader(
+                    cw2.toByteArray()));
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.commons;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import junit.framework.TestCase;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+
+/**
+ * JarTransformer unit tests.
+ */
+public class JarTransformerUnitTest extends TestCase {
+
+    private static byte[] generate(final String name) {
+        ClassWriter cw = new ClassWriter(0);
+        cw.visit(Opcodes.V1_5, Opcodes.ACC_PUBLIC, name, null,
+                "java/lang/Object", null);
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static byte[] zip(final int n) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ZipOutputStream zos = new ZipOutputStream(bos);
+        zos.putNextEntry(new ZipEntry("META-INF/"));
+        zos.closeEntry();
+        zos.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+        zos.write("Manifest-Version: 1.0\n".getBytes());
+        zos.closeEntry();
+        for (int i = 0; i < n; ++i) {
+            zos.putNextEntry(new ZipEntry("pkg/C" + i + ".class"));
+            zos.write(generate("pkg/C" + i));
+            zos.closeEntry();
+        }
+        zos.close();
+        return bos.toByteArray();
+    }
+
+    private static List<Object> unzip(final byte[] b) throws IOException {
+        List<Object> entries = new ArrayList<Object>();
+        ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(b));
+        ZipEntry ze;
+        while ((ze = zis.getNextEntry()) != null) {
+            entries.add(ze.getName());
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            byte[] buf = new byte[1024];
+            int n;
+            while ((n = zis.read(buf)) != -1) {
+                bos.write(buf, 0, n);
+            }
+            entries.add(bos.toByteArray());
+        }
+        return entries;
+    }
+
+    public void testTransform() throws IOException {
+        JarTransformer t = new JarTransformer(0, 0, 3, 2) {
+            @Override
+            protected ClassVisitor getClassVisitor(final ClassVisitor cv) {
+                return new ClassVisitor(Opcodes.ASM4, cv) {
+                    @Override
+                    public void visitEnd() {
+                        FieldVisitor fv = cv.visitField(Opcodes.ACC_PUBLIC,
+                                "f", "I", null, null);
+                        fv.visitEnd();
+                        cv.visitEnd();
+                    }
+                };
+            }
+        };
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        t.transform(new ByteArrayInputStream(zip(50)), out);
+        List<Object> entries = unzip(out.toByteArray());
+        assertEquals(2 * 52, entries.size());
+        assertEquals("META-INF/", entries.get(0));
+        assertEquals("META-INF/MANIFEST.MF", entries.get(2));
+        assertEquals("Manifest-Version: 1.0\n", new String(
+                (byte[]) entries.get(3)));
+        for (int i = 0; i < 50; ++i) {
+            assertEquals("pkg/C" + i + ".class", entries.get(4 + 2 * i));
+            ClassNode cn = new ClassNode();
+            new ClassReader((byte[]) entries.get(5 + 2 * i)).accept(cn, 0);
+            assertEquals("pkg/C" + i, cn.name);
+            assertEquals(1, cn.fields.size());
+        }
+    }
+
+    public void testTransformFailure() throws IOException {
+        JarTransformer t = new JarTransformer(0, 0, 2) {
+            @Override
+            protected ClassVisitor getClassVisitor(final ClassVisitor cv) {
+                return new ClassVisitor(Opcodes.ASM4, cv) {
+                    @Override
+                    public void visit(final int version, final int access,
+                            final String name, final String signature,
+                            final String superName, final String[] interfaces) {
+                        if (name.equals("pkg/C7")) {
+                            throw new IllegalStateException(name);
+                        }
+                        super.visit(version, access, name, signature,
+                                superName, interfaces);
+                    }
+                };
+            }
+        };
+        try {
+            t.transform(new ByteArrayInputStream(zip(10)),
+                    new ByteArrayOutputStream());
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("pkg/C7", e.getMessage());
+        }
+    }
+
+    public void testIllegalArguments() {
+        try {
+            new JarTransformer(0, 0, 0);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+}
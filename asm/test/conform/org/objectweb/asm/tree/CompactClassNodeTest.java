@@ -0,0 +1,211 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.tree;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import junit.framework.TestSuite;
+
+import org.objectweb.asm.AbstractTest;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+
+/**
+ * CompactClassNode and InsnCursor tests.
+ */
+public class CompactClassNodeTest extends AbstractTest {
+
+    public static TestSuite suite() throws Exception {
+        return new CompactClassNodeTest().getSuite();
+    }
+
+    @Override
+    public void test() throws Exception {
+        ClassReader cr = new ClassReader(is);
+        byte[] b = cr.b;
+        // small chunks, to test classes stored in dedicated buffers
+        CompactClassNode ccn = new CompactClassPool(4096, true).add(b);
+
+        final Map<Label, Integer> offsets;
+        offsets = new IdentityHashMap<Label, Integer>();
+        cr = new ClassReader(b) {
+            @Override
+            protected Label readLabel(final int offset, final Label[] labels) {
+                Label label = super.readLabel(offset, labels);
+                offsets.put(label, new Integer(offset));
+                return label;
+            }
+        };
+        final Map<LabelNode, Label> labels;
+        labels = new IdentityHashMap<LabelNode, Label>();
+        ClassNode cn = new ClassNode() {
+            @Override
+            public MethodVisitor visitMethod(final int access,
+                    final String name, final String desc,
+                    final String signature, final String[] exceptions) {
+                MethodNode mn = new MethodNode(access, name, desc, signature,
+                        exceptions) {
+                    @Override
+                    protected LabelNode getLabelNode(final Label l) {
+                        LabelNode label = super.getLabelNode(l);
+                        labels.put(label, l);
+                        return label;
+                    }
+                };
+                methods.add(mn);
+                return mn;
+            }
+        };
+        cr.accept(cn, 0);
+
+        assertEquals(cn.version, ccn.getVersion());
+        assertEquals(cn.access, ccn.getAccess());
+        assertEquals(cn.name, ccn.getName());
+        assertEquals(cn.superName, ccn.getSuperName());
+        assertEquals(cn.interfaces, Arrays.asList(ccn.getInterfaces()));
+        assertEquals(cn.methods.size(), ccn.getMethodCount());
+        for (int i = 0; i < cn.methods.size(); ++i) {
+            MethodNode mn = cn.methods.get(i);
+            assertEquals(mn.access, ccn.getMethodAccess(i));
+            assertEquals(mn.name, ccn.getMethodName(i));
+            assertEquals(mn.desc, ccn.getMethodDesc(i));
+            assertEquals(mn.instructions.size(), ccn.getMethodNode(i, 0)
+                    .instructions.size());
+            InsnCursor c = ccn.getInstructions(i);
+            if (c == null) {
+                assertEquals(0, mn.instructions.size());
+                continue;
+            }
+            for (int j = 0; j < mn.instructions.size(); ++j) {
+                AbstractInsnNode insn = mn.instructions.get(j);
+                int type = insn.getType();
+                if (type == AbstractInsnNode.LABEL
+                        || type == AbstractInsnNode.FRAME
+                        || type == AbstractInsnNode.LINE) {
+                    continue;
+                }
+                assertTrue(c.next());
+                assertEquals(insn.getOpcode(), c.getOpcode());
+                assertEquals(type, c.getType());
+                switch (type) {
+                case AbstractInsnNode.INT_INSN:
+                    assertEquals(((IntInsnNode) insn).operand, c.getOperand());
+                    break;
+                case AbstractInsnNode.VAR_INSN:
+                    assertEquals(((VarInsnNode) insn).var, c.getVar());
+                    break;
+                case AbstractInsnNode.TYPE_INSN:
+                    assertEquals(((TypeInsnNode) insn).desc, c.getDesc());
+                    break;
+                case AbstractInsnNode.FIELD_INSN: {
+                    FieldInsnNode fi = (FieldInsnNode) insn;
+                    assertEquals(fi.owner, c.getOwner());
+                    assertEquals(fi.name, c.getName());
+                    assertEquals(fi.desc, c.getDesc());
+                    break;
+                }
+                case AbstractInsnNode.METHOD_INSN: {
+                    MethodInsnNode mi = (MethodInsnNode) insn;
+                    assertEquals(mi.owner, c.getOwner());
+                    assertEquals(mi.name, c.getName());
+                    assertEquals(mi.desc, c.getDesc());
+                    break;
+                }
+                case AbstractInsnNode.INVOKE_DYNAMIC_INSN: {
+                    InvokeDynamicInsnNode ii = (InvokeDynamicInsnNode) insn;
+                    assertEquals(ii.name, c.getName());
+                    assertEquals(ii.desc, c.getDesc());
+                    break;
+                }
+                case AbstractInsnNode.JUMP_INSN:
+                    assertEquals(getOffset(((JumpInsnNode) insn).label,
+                            labels, offsets), c.getTarget());
+                    break;
+                case AbstractInsnNode.LDC_INSN:
+                    assertEquals(((LdcInsnNode) insn).cst, c.getConstant());
+                    break;
+                case AbstractInsnNode.IINC_INSN:
+                    assertEquals(((IincInsnNode) insn).var, c.getVar());
+                    assertEquals(((IincInsnNode) insn).incr, c.getIncrement());
+                    break;
+                case AbstractInsnNode.TABLESWITCH_INSN: {
+                    TableSwitchInsnNode ti = (TableSwitchInsnNode) insn;
+                    assertEquals(getOffset(ti.dflt, labels, offsets), c
+                            .getDefault());
+                    int[] keys = c.getKeys();
+                    int[] targets = c.getTargets();
+                    assertEquals(ti.labels.size(), keys.length);
+                    for (int k = 0; k < keys.length; ++k) {
+                        assertEquals(ti.min + k, keys[k]);
+                        assertEquals(getOffset(ti.labels.get(k), labels,
+                                offsets), targets[k]);
+                    }
+                    break;
+                }
+                case AbstractInsnNode.LOOKUPSWITCH_INSN: {
+                    LookupSwitchInsnNode li = (LookupSwitchInsnNode) insn;
+                    assertEquals(getOffset(li.dflt, labels, offsets), c
+                            .getDefault());
+                    int[] keys = c.getKeys();
+                    int[] targets = c.getTargets();
+                    assertEquals(li.keys.size(), keys.length);
+                    for (int k = 0; k < keys.length; ++k) {
+                        assertEquals(li.keys.get(k).intValue(), keys[k]);
+                        assertEquals(getOffset(li.labels.get(k), labels,
+                                offsets), targets[k]);
+                    }
+                    break;
+                }
+                case AbstractInsnNode.MULTIANEWARRAY_INSN:
+                    assertEquals(((MultiANewArrayInsnNode) insn).desc, c
+                            .getDesc());
+                    assertEquals(((MultiANewArrayInsnNode) insn).dims, c
+                            .getDimensions());
+                    break;
+                }
+            }
+            assertFalse(c.next());
+        }
+
+        ClassWriter cw = new ClassWriter(0);
+        ccn.accept(cw, 0);
+        assertEquals(new ClassReader(b), new ClassReader(cw.toByteArray()));
+    }
+
+    private static int getOffset(final LabelNode label,
+            final Map<LabelNode, Label> labels,
+            final Map<Label, Integer> offsets) {
+        return offsets.get(labels.get(label)).intValue();
+    }
+}
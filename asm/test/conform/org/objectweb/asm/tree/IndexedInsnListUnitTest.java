@@ -0,0 +1,138 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.tree;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Random;
+
+/**
+ * InsnList unit tests in indexed mode.
+ */
+public class IndexedInsnListUnitTest extends InsnListUnitTest {
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        l1.setIndexed(true);
+        l2.setIndexed(true);
+    }
+
+    public void testSetIndexed() {
+        assertTrue(l2.isIndexed());
+        l2.setIndexed(false);
+        assertFalse(l2.isIndexed());
+        assertEquals(1, l2.indexOf(in2));
+        l2.setIndexed(true);
+        assertEquals(in2, l2.get(1));
+        assertEquals(1, l2.indexOf(in2));
+    }
+
+    public void testRandomModifications() {
+        Random random = new Random(0);
+        List<AbstractInsnNode> expected = new ArrayList<AbstractInsnNode>();
+        for (int i = 0; i < 5000; ++i) {
+            int size = expected.size();
+            int index = random.nextInt(size + 1);
+            InsnNode insn = new InsnNode(0);
+            switch (random.nextInt(8)) {
+            case 0:
+                l1.add(insn);
+                expected.add(insn);
+                break;
+            case 1:
+                l1.insert(insn);
+                expected.add(0, insn);
+                break;
+            case 2:
+                if (index < size) {
+                    l1.insert(expected.get(index), insn);
+                    expected.add(index + 1, insn);
+                }
+                break;
+            case 3:
+                if (index < size) {
+                    l1.insertBefore(expected.get(index), insn);
+                    expected.add(index, insn);
+                }
+                break;
+            case 4:
+                if (index < size) {
+                    l1.remove(expected.remove(index));
+                }
+                break;
+            case 5:
+                if (index < size) {
+                    l1.set(expected.get(index), insn);
+                    expected.set(index, insn);
+                }
+                break;
+            case 6:
+                InsnList insns = new InsnList();
+                insns.add(insn);
+                insns.add(new InsnNode(1));
+                if (index < size) {
+                    expected.add(index, insns.getLast());
+                    expected.add(index, insn);
+                    l1.insertBefore(expected.get(index + 2), insns);
+                } else {
+                    expected.add(insn);
+                    expected.add(insns.getLast());
+                    l1.add(insns);
+                }
+                break;
+            default:
+                ListIterator<AbstractInsnNode> it = l1.iterator(index);
+                if (it.hasNext()) {
+                    assertEquals(index, it.nextIndex());
+                    assertSame(expected.get(index), it.next());
+                }
+                break;
+            }
+            assertEquals(expected.size(), l1.size());
+            if (expected.size() > 0) {
+                int j = random.nextInt(expected.size());
+                assertSame(expected.get(j), l1.get(j));
+                assertEquals(j, l1.indexOf(expected.get(j)));
+                assertTrue(l1.contains(expected.get(j)));
+            }
+        }
+        AbstractInsnNode[] insns = l1.toArray();
+        AbstractInsnNode insn = l1.getFirst();
+        for (int i = 0; i < insns.length; ++i) {
+            assertSame(expected.get(i), insns[i]);
+            assertSame(expected.get(i), insn);
+            assertEquals(i, l1.indexOf(insn));
+            insn = insn.getNext();
+        }
+        assertNull(insn);
+    }
+}
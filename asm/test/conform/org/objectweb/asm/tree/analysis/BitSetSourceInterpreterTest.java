@@ -0,0 +1,94 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.tree.analysis;
+
+import java.util.HashSet;
+import java.util.List;
+
+import junit.framework.TestSuite;
+
+import org.objectweb.asm.AbstractTest;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/**
+ * BitSetSourceInterpreter tests.
+ */
+public class BitSetSourceInterpreterTest extends AbstractTest {
+
+    public static TestSuite suite() throws Exception {
+        return new BitSetSourceInterpreterTest().getSuite();
+    }
+
+    @Override
+    public void test() throws Exception {
+        ClassReader cr = new ClassReader(is);
+        ClassNode cn = new ClassNode();
+        cr.accept(cn, 0);
+        List<MethodNode> methods = cn.methods;
+        for (int i = 0; i < methods.size(); ++i) {
+            MethodNode method = methods.get(i);
+            Frame<SourceValue>[] expected = new Analyzer<SourceValue>(
+                    new SourceInterpreter()).analyze(cn.name, method);
+            Frame<SourceValue>[] frames = new Analyzer<SourceValue>(
+                    new BitSetSourceInterpreter(method.instructions)).analyze(
+                    cn.name, method);
+            assertEquals(expected.length, frames.length);
+            for (int j = 0; j < frames.length; ++j) {
+                assertEquals(expected[j], frames[j]);
+            }
+        }
+    }
+
+    private static void assertEquals(final Frame<SourceValue> expected,
+            final Frame<SourceValue> frame) {
+        if (expected == null) {
+            assertNull(frame);
+            return;
+        }
+        assertEquals(expected.getLocals(), frame.getLocals());
+        for (int i = 0; i < expected.getLocals(); ++i) {
+            assertEquals(expected.getLocal(i), frame.getLocal(i));
+        }
+        assertEquals(expected.getStackSize(), frame.getStackSize());
+        for (int i = 0; i < expected.getStackSize(); ++i) {
+            assertEquals(expected.getStack(i), frame.getStack(i));
+        }
+    }
+
+    private static void assertEquals(final SourceValue expected,
+            final SourceValue value) {
+        assertEquals(expected.size, value.size);
+        assertEquals(expected.insns.size(), value.insns.size());
+        assertEquals(new HashSet<Object>(expected.insns), value.insns);
+        assertTrue(value.insns.containsAll(expected.insns));
+    }
+}
@@ -0,0 +1,70 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.tree.analysis;
+
+import junit.framework.TestCase;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/**
+ * BitSetSourceInterpreter unit tests.
+ */
+public class BitSetSourceInterpreterUnitTest extends TestCase implements
+        Opcodes {
+
+    public void testVoidCallAtOffsetZero() throws AnalyzerException {
+        MethodNode mn = new MethodNode(ACC_STATIC, "m", "()V", null, null);
+        mn.visitMethodInsn(INVOKESTATIC, "C", "n", "()V");
+        mn.visitInsn(RETURN);
+        mn.visitMaxs(0, 0);
+        new Analyzer<SourceValue>(new BitSetSourceInterpreter(
+                mn.instructions)).analyze("C", mn);
+    }
+
+    public void testVoidCallAfterLongValue() {
+        MethodNode mn = new MethodNode(ACC_STATIC, "m", "()V", null, null);
+        mn.visitInsn(LCONST_0);
+        mn.visitMethodInsn(INVOKESTATIC, "C", "n", "()V");
+        AbstractInsnNode insn0 = mn.instructions.get(0);
+        AbstractInsnNode insn1 = mn.instructions.get(1);
+        BitSetSourceInterpreter interpreter = new BitSetSourceInterpreter(
+                mn.instructions);
+        SourceValue v = interpreter.newValue(0, insn1);
+        assertEquals(0, v.size);
+        assertTrue(v.insns.contains(insn1));
+        v = interpreter.newValue(2, insn0);
+        assertEquals(2, v.size);
+        assertTrue(v.insns.contains(insn0));
+        assertFalse(v.insns.contains(insn1));
+        assertSame(v, interpreter.newValue(2, insn0));
+    }
+}
@@ -0,0 +1,171 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.tree.analysis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/**
+ * ClassAnalyzer unit tests.
+ */
+public class ClassAnalyzerUnitTest extends TestCase {
+
+    private ExecutorService executor;
+
+    @Override
+    protected void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @Override
+    protected void tearDown() {
+        executor.shutdown();
+    }
+
+    private static ClassNode getClassNode(final Class<?> c) throws Exception {
+        ClassNode cn = new ClassNode();
+        new ClassReader(c.getName()).accept(cn, 0);
+        return cn;
+    }
+
+    public void testAnalyze() throws Exception {
+        final AtomicInteger count = new AtomicInteger();
+        ClassAnalyzer<BasicValue> ca = new ClassAnalyzer<BasicValue>(executor) {
+            @Override
+            protected Interpreter<BasicValue> newInterpreter(final ClassNode cn) {
+                return new BasicVerifier();
+            }
+
+            @Override
+            protected void analyzed(final ClassNode cn, final MethodNode mn,
+                    final Frame<BasicValue>[] frames) {
+                assertEquals(mn.instructions.size(), frames.length);
+                count.incrementAndGet();
+            }
+        };
+        List<ClassNode> classes = new ArrayList<ClassNode>();
+        classes.add(getClassNode(Analyzer.class));
+        classes.add(getClassNode(Frame.class));
+        classes.add(getClassNode(SimpleVerifier.class));
+        int methods = 0;
+        for (int i = 0; i < classes.size(); ++i) {
+            methods += classes.get(i).methods.size();
+        }
+        assertTrue(ca.analyze(classes).isEmpty());
+        assertEquals(methods, count.get());
+    }
+
+    public void testAnalyzeWindow() throws Exception {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger max = new AtomicInteger();
+        ClassAnalyzer<BasicValue> ca = new ClassAnalyzer<BasicValue>(executor,
+                1) {
+            @Override
+            protected Interpreter<BasicValue> newInterpreter(final ClassNode cn) {
+                int n = running.incrementAndGet();
+                if (n > max.get()) {
+                    max.set(n);
+                }
+                return new BasicVerifier();
+            }
+
+            @Override
+            protected void analyzed(final ClassNode cn, final MethodNode mn,
+                    final Frame<BasicValue>[] frames) {
+                running.decrementAndGet();
+            }
+        };
+        assertTrue(ca.analyze(getClassNode(Frame.class)).isEmpty());
+        assertEquals(1, max.get());
+    }
+
+    public void testIllegalWindow() {
+        try {
+            new ClassAnalyzer<BasicValue>(executor, 0) {
+                @Override
+                protected Interpreter<BasicValue> newInterpreter(
+                        final ClassNode cn) {
+                    return new BasicVerifier();
+                }
+            };
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    public void testAnalyzeErrors() throws Exception {
+        ClassNode cn = getClassNode(Frame.class);
+        MethodNode m1 = cn.methods.get(1);
+        MethodNode m2 = cn.methods.get(cn.methods.size() - 1);
+        m1.instructions.insert(new InsnNode(Opcodes.POP));
+        m2.instructions.insert(new InsnNode(Opcodes.POP));
+        ClassAnalyzer<BasicValue> ca = new ClassAnalyzer<BasicValue>(executor) {
+            @Override
+            protected Interpreter<BasicValue> newInterpreter(final ClassNode cn) {
+                return new BasicVerifier();
+            }
+        };
+        List<AnalyzerException> errors = ca.analyze(cn);
+        assertEquals(2, errors.size());
+        assertTrue(errors.get(0).getMessage().startsWith(
+                cn.name + '.' + m1.name + m1.desc + ": "));
+        assertTrue(errors.get(1).getMessage().startsWith(
+                cn.name + '.' + m2.name + m2.desc + ": "));
+        assertTrue(errors.get(0).getCause() instanceof AnalyzerException);
+    }
+
+    public void testAnalyzeReportedErrors() throws Exception {
+        ClassNode cn = getClassNode(Frame.class);
+        ClassAnalyzer<BasicValue> ca = new ClassAnalyzer<BasicValue>(executor) {
+            @Override
+            protected Interpreter<BasicValue> newInterpreter(final ClassNode cn) {
+                return new BasicInterpreter();
+            }
+
+            @Override
+            protected void analyzed(final ClassNode cn, final MethodNode mn,
+                    final Frame<BasicValue>[] frames) throws AnalyzerException {
+                throw new AnalyzerException(null, "error");
+            }
+        };
+        assertEquals(cn.methods.size(), ca.analyze(cn).size());
+    }
+}
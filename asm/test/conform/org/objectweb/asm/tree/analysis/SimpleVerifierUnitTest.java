@@ -29,8 +29,12 @@
  */
 package org.objectweb.asm.tree.analysis;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import junit.framework.TestCase;
 
+import org.objectweb.asm.ClassHierarchy;
 import org.objectweb.asm.Label;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
@@ -443,6 +447,102 @@ public class SimpleVerifierUnitTest extends TestCase implements Opcodes {
         }
     }
 
+    public void testClassHierarchy() throws AnalyzerException {
+        final Map<String, String> supers = new HashMap<String, String>();
+        supers.put("pkg/A", "pkg/B");
+        supers.put("pkg/B", "java/lang/Object");
+        supers.put("pkg/C", "pkg/B");
+        supers.put("pkg/I", "java/lang/Object");
+        SimpleVerifier v = new SimpleVerifier();
+        v.setClassHierarchy(new ClassHierarchy() {
+            @Override
+            public String getSuperClass(final String type) {
+                if (!supers.containsKey(type)) {
+                    throw new RuntimeException(type);
+                }
+                return supers.get(type);
+            }
+
+            @Override
+            public String[] getInterfaces(final String type) {
+                return "pkg/C".equals(type) ? new String[] { "pkg/I" }
+                        : new String[0];
+            }
+
+            @Override
+            public boolean isInterface(final String type) {
+                return "pkg/I".equals(type);
+            }
+        });
+        a = new Analyzer<BasicValue>(v);
+        mn = new MethodNode(ACC_STATIC, "m", "(ZLpkg/A;Lpkg/C;)V", null,
+                null);
+        Label l0 = new Label();
+        Label l1 = new Label();
+        mn.visitVarInsn(ILOAD, 0);
+        mn.visitJumpInsn(IFEQ, l0);
+        mn.visitVarInsn(ALOAD, 1);
+        mn.visitJumpInsn(GOTO, l1);
+        mn.visitLabel(l0);
+        mn.visitVarInsn(ALOAD, 2);
+        mn.visitLabel(l1);
+        mn.visitFieldInsn(PUTSTATIC, "pkg/D", "f", "Lpkg/B;");
+        mn.visitVarInsn(ALOAD, 2);
+        mn.visitMethodInsn(INVOKEINTERFACE, "pkg/I", "m", "()V");
+        mn.visitInsn(ICONST_1);
+        mn.visitTypeInsn(ANEWARRAY, "pkg/C");
+        mn.visitFieldInsn(PUTSTATIC, "pkg/D", "g", "[Lpkg/B;");
+        assertValid();
+
+        Frame<?> f = a.getFrames()[mn.instructions.indexOf(mn.instructions
+                .get(6))];
+        assertEquals("Lpkg/B;", f.getStack(0).toString());
+        assertTrue(v.isAssignableFrom(Type.getType("[Lpkg/I;"),
+                Type.getType("[Lpkg/C;")));
+        assertFalse(v.isAssignableFrom(Type.getType("[Lpkg/I;"),
+                Type.getType("[Lpkg/A;")));
+        assertFalse(v.isAssignableFrom(Type.getType("[I"),
+                Type.getType("[J")));
+        assertTrue(v.isAssignableFrom(Type.getType("Ljava/lang/Object;"),
+                Type.getType("[[I")));
+    }
+
+    public void testClassHierarchyArrays() {
+        SimpleVerifier v = new SimpleVerifier();
+        v.setClassHierarchy(new ClassHierarchy() {
+            @Override
+            public String getSuperClass(final String type) {
+                return "java/lang/Object".equals(type) ? null
+                        : "java/lang/Object";
+            }
+
+            @Override
+            public String[] getInterfaces(final String type) {
+                return new String[0];
+            }
+
+            @Override
+            public boolean isInterface(final String type) {
+                return !"java/lang/Object".equals(type)
+                        && !"java/lang/String".equals(type);
+            }
+        });
+        // same results as the implementation based on Class objects
+        SimpleVerifier w = new SimpleVerifier();
+        String[][] cases = { { "[Ljava/io/Serializable;", "[[I" },
+                { "[Ljava/io/Serializable;", "[[Ljava/lang/String;" },
+                { "[Ljava/lang/Cloneable;", "[[I" },
+                { "[[Ljava/lang/Cloneable;", "[[[J" },
+                { "[Ljava/lang/Runnable;", "[[I" } };
+        boolean[] expected = { true, true, true, true, false };
+        for (int i = 0; i < cases.length; ++i) {
+            Type t = Type.getType(cases[i][0]);
+            Type u = Type.getType(cases[i][1]);
+            assertEquals(cases[i][0], expected[i], w.isAssignableFrom(t, u));
+            assertEquals(cases[i][0], expected[i], v.isAssignableFrom(t, u));
+        }
+    }
+
     /**
      * Dummy method to avoid a FindBugs warning.
      */
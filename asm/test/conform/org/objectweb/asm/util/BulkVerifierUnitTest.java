@@ -0,0 +1,266 @@
+/***
+ * ASM: a very small and fast Java bytecode manipulation framework
+ * Copyright (c) 2000-2011 INRIA, France Telecom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.objectweb.asm.util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import junit.framework.TestCase;
+
+import org.objectweb.asm.ClassHierarchy;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.util.BulkVerifier.Failure;
+import org.objectweb.asm.util.BulkVerifier.Result;
+
+/**
+ * BulkVerifier unit tests.
+ */
+public class BulkVerifierUnitTest extends TestCase implements Opcodes {
+
+    private File jar;
+
+    private File cache;
+
+    @Override
+    protected void setUp() throws Exception {
+        jar = File.createTempFile("classes", ".jar");
+        cache = File.createTempFile("cache", ".txt");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        jar.delete();
+        cache.delete();
+    }
+
+    public void testVerify() throws Exception {
+        writeJar(false);
+        BulkVerifier verifier = new BulkVerifier(2);
+        List<Result> results = verifier.verify(new File[] { jar });
+        assertEquals(3, results.size());
+        assertEquals("pkg/A", results.get(0).name);
+        assertEquals(jar.getPath() + "!pkg/A.class", results.get(0).source);
+        assertTrue(results.get(0).isValid());
+        // valid only if the hierarchy contains the classes of the jar
+        assertEquals("pkg/B", results.get(1).name);
+        assertTrue(results.get(1).toString(), results.get(1).isValid());
+        assertEquals("pkg/C", results.get(2).name);
+        assertFalse(results.get(2).isValid());
+        Failure f = results.get(2).failures.get(0);
+        assertEquals("m()V", f.method);
+        assertEquals(1, f.insn);
+        assertFalse(results.get(2).cached);
+    }
+
+    public void testCache() throws Exception {
+        writeJar(false);
+        BulkVerifier verifier = new BulkVerifier(2);
+        verifier.verify(new File[] { jar });
+        verifier.writeCache(cache);
+
+        // the valid classes are not verified again
+        verifier = new BulkVerifier(2);
+        verifier.readCache(cache);
+        List<Result> results = verifier.verify(new File[] { jar });
+        assertTrue(results.get(0).cached);
+        assertTrue(results.get(1).cached);
+        assertFalse(results.get(2).cached);
+        assertFalse(results.get(2).isValid());
+
+        // unless the class headers have changed
+        writeJar(true);
+        verifier = new BulkVerifier(2);
+        verifier.readCache(cache);
+        results = verifier.verify(new File[] { jar });
+        assertEquals(4, results.size());
+        for (int i = 0; i < results.size(); ++i) {
+            assertFalse(results.get(i).cached);
+        }
+    }
+
+    public void testCacheWithLoadedClasses() throws Exception {
+        writeJar(false);
+        BulkVerifier verifier = new BulkVerifier(2);
+        verifier.verify(new File[] { jar });
+        verifier.writeCache(cache);
+        List<String> lines = readCache();
+        assertTrue(lines.get(1).length() > 0);
+
+        // the cache is not used if a loaded class cannot be loaded anymore
+        lines.set(1, lines.get(1) + " pkg/Missing");
+        writeCache(lines);
+        verifier = new BulkVerifier(2);
+        verifier.readCache(cache);
+        List<Result> results = verifier.verify(new File[] { jar });
+        for (int i = 0; i < results.size(); ++i) {
+            assertFalse(results.get(i).cached);
+        }
+    }
+
+    public void testCacheWithClassHierarchy() throws Exception {
+        writeJar(false);
+        BulkVerifier verifier = new BulkVerifier(2);
+        verifier.verify(new File[] { jar });
+        verifier.writeCache(cache);
+
+        // the cache is not used with a custom class hierarchy
+        verifier = new BulkVerifier(2);
+        verifier.setClassHierarchy(new ClassHierarchy() {
+            @Override
+            public String getSuperClass(final String type) {
+                return "pkg/B".equals(type) ? "pkg/A" : "java/lang/Object";
+            }
+
+            @Override
+            public String[] getInterfaces(final String type) {
+                return new String[0];
+            }
+
+            @Override
+            public boolean isInterface(final String type) {
+                return "java/lang/CharSequence".equals(type);
+            }
+        });
+        verifier.readCache(cache);
+        List<Result> results = verifier.verify(new File[] { jar });
+        for (int i = 0; i < results.size(); ++i) {
+            assertFalse(results.get(i).cached);
+        }
+        assertTrue(results.get(1).isValid());
+
+        // and the cache written with a custom class hierarchy is never used
+        verifier.writeCache(cache);
+        verifier = new BulkVerifier(2);
+        verifier.readCache(cache);
+        results = verifier.verify(new File[] { jar });
+        for (int i = 0; i < results.size(); ++i) {
+            assertFalse(results.get(i).cached);
+        }
+    }
+
+    private List<String> readCache() throws IOException {
+        List<String> lines = new ArrayList<String>();
+        BufferedReader r = new BufferedReader(new FileReader(cache));
+        try {
+            String line;
+            while ((line = r.readLine()) != null) {
+                lines.add(line);
+            }
+        } finally {
+            r.close();
+        }
+        return lines;
+    }
+
+    private void writeCache(final List<String> lines) throws IOException {
+        PrintWriter pw = new PrintWriter(new FileWriter(cache));
+        try {
+            for (int i = 0; i < lines.size(); ++i) {
+                pw.println(lines.get(i));
+            }
+        } finally {
+            pw.close();
+        }
+    }
+
+    private void writeJar(final boolean extraClass) throws IOException {
+        ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(jar));
+        try {
+            addClass(zos, "pkg/A", "java/lang/Object", false);
+            addClass(zos, "pkg/B", "pkg/A", false);
+            addClass(zos, "pkg/C", "java/lang/Object", true);
+            if (extraClass) {
+                addClass(zos, "pkg/D", "java/lang/Object", false);
+            }
+        } finally {
+            zos.close();
+        }
+    }
+
+    private static void addClass(final ZipOutputStream zos, final String name,
+            final String superName, final boolean invalid) throws IOException {
+        ClassWriter cw = new ClassWriter(0);
+        cw.visit(V1_5, ACC_PUBLIC, name, null, superName, null);
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null,
+                null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKESPECIAL, superName, "<init>", "()V");
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(1, 1);
+        mv.visitEnd();
+        mv = cw.visitMethod(ACC_PUBLIC, "m", "()V", null, null);
+        mv.visitCode();
+        if (invalid) {
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitVarInsn(ISTORE, 1);
+        }
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(1, 2);
+        mv.visitEnd();
+        // requires the class loader to get the hierarchy of String
+        mv = cw.visitMethod(ACC_PUBLIC, "n", "()Ljava/lang/CharSequence;",
+                null, null);
+        mv.visitCode();
+        mv.visitLdcInsn("");
+        mv.visitInsn(ARETURN);
+        mv.visitMaxs(1, 1);
+        mv.visitEnd();
+        // returns a new instance of this class as a pkg/A
+        mv = cw.visitMethod(ACC_PUBLIC + ACC_STATIC, "n", "()Lpkg/A;", null,
+                null);
+        mv.visitCode();
+        if (name.equals("pkg/B")) {
+            mv.visitTypeInsn(NEW, name);
+            mv.visitInsn(DUP);
+            mv.visitMethodInsn(INVOKESPECIAL, name, "<init>", "()V");
+        } else {
+            mv.visitInsn(ACONST_NULL);
+        }
+        mv.visitInsn(ARETURN);
+        mv.visitMaxs(2, 0);
+        mv.visitEnd();
+        cw.visitEnd();
+        zos.putNextEntry(new ZipEntry(name + ".class"));
+        zos.write(cw.toByteArray());
+        zos.closeEntry();
+    }
+}
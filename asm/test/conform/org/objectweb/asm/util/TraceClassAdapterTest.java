@@ -61,5 +61,19 @@ public class TraceClassAdapterTest extends AbstractTest {
                 new CharArrayWriter()));
         cr.accept(cv, new Attribute[] { new Comment(), new CodeComment() }, 0);
         assertEquals(cr, new ClassReader(cw.toByteArray()));
+
+        // the streaming mode must produce the same text
+        for (int i = 0; i < 2; ++i) {
+            CharArrayWriter expected = new CharArrayWriter();
+            CharArrayWriter actual = new CharArrayWriter();
+            cr.accept(new TraceClassVisitor(null, i == 0 ? new Textifier()
+                    : new ASMifier(), new PrintWriter(expected)), 0);
+            TraceClassVisitor tcv = new TraceClassVisitor(null,
+                    i == 0 ? new Textifier() : new ASMifier(), new PrintWriter(
+                            actual), true);
+            cr.accept(tcv, 0);
+            assertEquals(expected.toString(), actual.toString());
+            assertTrue(tcv.p.getText().isEmpty());
+        }
     }
 }